@@ -0,0 +1,164 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vatplanner.dataformats.vatsimpublic.parser.DataFile;
+import org.vatplanner.dataformats.vatsimpublic.parser.DataFileParserFactory;
+import org.vatplanner.dataformats.vatsimpublic.parser.Parser;
+
+import de.energiequant.vatsim.compatibility.legacyproxy.AppConstants;
+import de.energiequant.vatsim.compatibility.legacyproxy.Configuration;
+import de.energiequant.vatsim.compatibility.legacyproxy.Main;
+import de.energiequant.vatsim.compatibility.legacyproxy.fetching.OnlineTransceiversFileFetcher;
+import de.energiequant.vatsim.compatibility.legacyproxy.fetching.UpstreamClient;
+import de.energiequant.vatsim.compatibility.legacyproxy.server.stationlocator.StationLocator.Strategy;
+
+/**
+ * Measures the conversion of JSON data files to legacy data files as performed
+ * for {@link JsonToLegacyDataFileProxy}: parsing the JSON v3 data file,
+ * injecting station locations, serializing to the legacy format (optionally
+ * recoded for the UTF-8 quirk) and encoding the snapshot including compressed
+ * variants.
+ * <p>
+ * Data files are read from <code>src/jmh/resources</code> and resemble upstream
+ * data files at night (<code>small</code>), on a regular evening
+ * (<code>typical</code>) and during a large event (<code>peak</code>). Recorded
+ * data files can be measured by passing a path instead, e.g.
+ * <code>-p dataFile=/tmp/vatsim-data.json</code> (may be gzip compressed if
+ * the name ends in <code>.gz</code>).
+ * </p>
+ * <p>
+ * Stations are only located through the included VAT-Spy data as online
+ * transceivers would need to be fetched from upstream. Just like during
+ * regular operation, station locations are cached after the first conversion.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DataFileConversionBenchmark {
+    @Param({"small", "typical", "peak"})
+    public String dataFile;
+
+    @Param({"false", "true"})
+    public boolean quirkUtf8;
+
+    private String json;
+    private Parser<DataFile> parser;
+    private LegacyDataFileSnapshotter snapshotter;
+    private DataFile parsedDataFile;
+    private File configFile;
+    private UpstreamClient upstreamClient;
+
+    private static final String RESOURCE_DIRECTORY = "datafiles/";
+    private static final String RESOURCE_EXTENSION = ".json.gz";
+    private static final String GZIP_EXTENSION = ".gz";
+
+    @Setup
+    public void setup() throws Exception {
+        json = load(dataFile);
+
+        // an empty configuration file applies all defaults
+        configFile = File.createTempFile("benchmark", ".properties");
+        Configuration config = new Configuration(configFile, Main.getDisclaimerState());
+        config.setStationLocatorStrategy(Strategy.ONLY_VATSPY);
+        config.setQuirkLegacyDataFileUtf8Enabled(quirkUtf8);
+
+        // never started, only required to set up the station locator
+        upstreamClient = new UpstreamClient();
+        OnlineTransceiversFileFetcher onlineTransceiversFileFetcher = new OnlineTransceiversFileFetcher(
+            () -> null,
+            () -> Duration.ofMinutes(1),
+            Duration.ofMinutes(1),
+            Duration.ofMinutes(1),
+            upstreamClient
+        );
+
+        parser = new DataFileParserFactory().createDataFileParser(AppConstants.UPSTREAM_DATA_FILE_FORMAT);
+        snapshotter = new LegacyDataFileSnapshotter(config, onlineTransceiversFileFetcher);
+
+        // converting once warms up the station locator cache and provides an injected data file to encode
+        parsedDataFile = parser.deserialize(json);
+        snapshotter.onDataFile(parsedDataFile);
+    }
+
+    @TearDown
+    public void tearDown() {
+        snapshotter.close();
+        upstreamClient.close();
+        configFile.delete();
+    }
+
+    private String load(String name) throws IOException {
+        InputStream is = getClass().getResourceAsStream(RESOURCE_DIRECTORY + name + RESOURCE_EXTENSION);
+        if (is != null) {
+            return readGzip(is);
+        }
+
+        File file = new File(name);
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("Data file is neither included nor a readable file: " + name);
+        }
+
+        return name.endsWith(GZIP_EXTENSION)
+            ? readGzip(new FileInputStream(file))
+            : read(new FileInputStream(file));
+    }
+
+    private static String readGzip(InputStream is) throws IOException {
+        return read(new GZIPInputStream(is));
+    }
+
+    private static String read(InputStream is) throws IOException {
+        try (InputStream closeable = is) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = closeable.read(buffer)) >= 0) {
+                baos.write(buffer, 0, read);
+            }
+
+            // upstream serves data files in UTF-8
+            return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    public DataFile parse() {
+        return parser.deserialize(json);
+    }
+
+    @Benchmark
+    public ChunkedContent encode() {
+        return snapshotter.encode(parsedDataFile);
+    }
+
+    @Benchmark
+    public EncodedDocument convert() {
+        snapshotter.onDataFile(parser.deserialize(json));
+        return snapshotter.requestSnapshot(Duration.ofMinutes(1)).getNow(null);
+    }
+}
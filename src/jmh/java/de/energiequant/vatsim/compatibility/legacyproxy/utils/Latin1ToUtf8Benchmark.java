@@ -0,0 +1,156 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.energiequant.vatsim.compatibility.legacyproxy.server.ChunkedOutputStream;
+
+/**
+ * Compares recoding a legacy data file from Latin-1 to UTF-8 (as needed for the
+ * UTF-8 quirk) by the previous String round-trip and a presized byte array
+ * against the byte-level {@link Latin1ToUtf8OutputStream}.
+ * <p>
+ * The data file is generated to resemble a legacy data file during a busy
+ * event: mostly ASCII with a few names and remarks containing non-ASCII
+ * characters.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Latin1ToUtf8Benchmark {
+    @Param({"1500"})
+    public int numClients;
+
+    @Param({"0.05"})
+    public double nonAsciiRatio;
+
+    private byte[] latin1;
+
+    private static final String[] ASCII_NAMES = {"John Smith", "Max Mustermann", "Jane Doe", "Erik Larsen"};
+    private static final String[] NON_ASCII_NAMES = {"Jürgen Müller", "François Lefèvre", "Åsa Öberg", "José Núñez"};
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1234);
+        StringBuilder sb = new StringBuilder();
+        sb.append("; generated for benchmark\n!GENERAL:\nVERSION = 8\nCONNECTED CLIENTS = ").append(numClients).append("\n!CLIENTS:\n");
+
+        for (int i = 0; i < numClients; i++) {
+            boolean isNonAscii = random.nextDouble() < nonAsciiRatio;
+            String name = isNonAscii
+                ? NON_ASCII_NAMES[random.nextInt(NON_ASCII_NAMES.length)]
+                : ASCII_NAMES[random.nextInt(ASCII_NAMES.length)];
+
+            sb.append("ABC").append(i)
+              .append(':').append(1000000 + i)
+              .append(':').append(name).append(' ').append(String.format(Locale.ROOT, "%04d", i))
+              .append(":PILOT::").append(String.format(Locale.ROOT, "%.5f", random.nextDouble() * 180.0 - 90.0))
+              .append(':').append(String.format(Locale.ROOT, "%.5f", random.nextDouble() * 360.0 - 180.0))
+              .append(':').append(random.nextInt(40000))
+              .append(':').append(random.nextInt(500))
+              .append(":H/B738/L:450:EDDF:FL360:KJFK:SERVER:100:1:2000:::::::::::::I:1200:1200:7:30:8:0:EGLL:")
+              .append(isNonAscii ? "PBN/A1B1C1D1 DOF/210612 RMK/Grüße à tous" : "PBN/A1B1C1D1 DOF/210612 RMK/TCAS")
+              .append(":TOBAK DCT OBOKA UZ29 SOMVA:0:0:0:0:::20210612102030:270:29.92:1013:\n");
+        }
+
+        latin1 = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Discards all data; only counts written bytes so the work cannot be
+     * eliminated.
+     */
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    @Benchmark
+    public byte[] stringRoundTrip() {
+        // implementation used before the byte-level transcoder
+        String s = new String(latin1, StandardCharsets.ISO_8859_1);
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(CharBuffer.wrap(s));
+        int offset = buffer.arrayOffset();
+        return Arrays.copyOfRange(buffer.array(), offset, offset + buffer.limit());
+    }
+
+    @Benchmark
+    public byte[] recodePresized() {
+        // single pass into an array presized to the exact length required
+        int numHighBytes = 0;
+        for (byte b : latin1) {
+            if (b < 0) {
+                numHighBytes++;
+            }
+        }
+
+        if (numHighBytes == 0) {
+            return latin1;
+        }
+
+        byte[] utf8 = new byte[latin1.length + numHighBytes];
+        int j = 0;
+        for (byte b : latin1) {
+            if (b >= 0) {
+                utf8[j++] = b;
+            } else {
+                int value = b & 0xFF;
+                utf8[j++] = (byte) (0xC0 | (value >> 6));
+                utf8[j++] = (byte) (0x80 | (value & 0x3F));
+            }
+        }
+
+        return utf8;
+    }
+
+    @Benchmark
+    public void streamToDiscard(Blackhole blackhole) throws IOException {
+        CountingOutputStream counter = new CountingOutputStream();
+        try (OutputStream os = new Latin1ToUtf8OutputStream(counter)) {
+            os.write(latin1);
+        }
+        blackhole.consume(counter.count);
+    }
+
+    @Benchmark
+    public void streamToChunks(Blackhole blackhole) throws IOException {
+        ChunkedOutputStream cos = new ChunkedOutputStream();
+        try (OutputStream os = new Latin1ToUtf8OutputStream(cos)) {
+            os.write(latin1);
+        }
+        blackhole.consume(cos.toChunkedContent());
+    }
+}
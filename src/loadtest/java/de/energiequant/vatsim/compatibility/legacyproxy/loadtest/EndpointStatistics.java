@@ -0,0 +1,83 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Collects the results of requests to a single endpoint. Instances are not
+ * thread-safe; each client thread records to instances of its own which are
+ * merged after the test has finished.
+ */
+public class EndpointStatistics {
+    private long[] latenciesNanos = new long[1024];
+    private int numRequests = 0;
+    private long numFailed = 0;
+    private long numBytes = 0;
+
+    /**
+     * Records a completed request.
+     *
+     * @param latencyNanos time from sending the request until the response has been received completely
+     * @param isSuccess    true if the proxy responded with status 200, false if not or the request failed
+     * @param bytes        number of body bytes received
+     */
+    public void record(long latencyNanos, boolean isSuccess, long bytes) {
+        if (numRequests == latenciesNanos.length) {
+            latenciesNanos = Arrays.copyOf(latenciesNanos, latenciesNanos.length * 2);
+        }
+
+        latenciesNanos[numRequests++] = latencyNanos;
+        numBytes += bytes;
+
+        if (!isSuccess) {
+            numFailed++;
+        }
+    }
+
+    /**
+     * Adds all results of the given instance to this one.
+     *
+     * @param other statistics to merge
+     */
+    public void merge(EndpointStatistics other) {
+        int combined = numRequests + other.numRequests;
+        if (combined > latenciesNanos.length) {
+            latenciesNanos = Arrays.copyOf(latenciesNanos, combined);
+        }
+
+        System.arraycopy(other.latenciesNanos, 0, latenciesNanos, numRequests, other.numRequests);
+        numRequests = combined;
+        numFailed += other.numFailed;
+        numBytes += other.numBytes;
+    }
+
+    public int getNumRequests() {
+        return numRequests;
+    }
+
+    public long getNumFailed() {
+        return numFailed;
+    }
+
+    public long getNumBytes() {
+        return numBytes;
+    }
+
+    /**
+     * Calculates the latency at the given percentile using the nearest-rank
+     * method.
+     *
+     * @param percentile percentile to calculate (0.0 exclusive to 100.0 inclusive)
+     * @return latency in nanoseconds; 0 if no requests have been recorded
+     */
+    public long getLatencyNanosAtPercentile(double percentile) {
+        if (numRequests == 0) {
+            return 0;
+        }
+
+        long[] sorted = Arrays.copyOf(latenciesNanos, numRequests);
+        Arrays.sort(sorted);
+
+        int rank = (int) Math.ceil(percentile / 100.0 * numRequests);
+        return sorted[Math.max(0, Math.min(numRequests, rank) - 1)];
+    }
+}
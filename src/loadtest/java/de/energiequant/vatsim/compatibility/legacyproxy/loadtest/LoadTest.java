@@ -0,0 +1,429 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.loadtest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.util.Timeout;
+
+import de.energiequant.vatsim.compatibility.legacyproxy.Main;
+import de.energiequant.vatsim.compatibility.legacyproxy.ServiceEndpoints;
+
+/**
+ * Runs the complete application against a {@link StubUpstream} and measures
+ * how it performs under concurrent client load. Everything runs in a single
+ * JVM on the loopback interface, no external network access is needed.
+ * <p>
+ * Each client thread requests the configured endpoints in turn as fast as
+ * possible, reusing connections. Results are only recorded after the warmup
+ * period. Throughput, latency percentiles and the number of requests the proxy
+ * sent upstream during measurement are printed when done.
+ * </p>
+ */
+public class LoadTest {
+    private static final String OPTION_NAME_HELP = "help";
+    private static final String OPTION_NAME_CLIENTS = "clients";
+    private static final String OPTION_NAME_DURATION = "duration";
+    private static final String OPTION_NAME_WARMUP = "warmup";
+    private static final String OPTION_NAME_ENDPOINTS = "endpoints";
+    private static final String OPTION_NAME_DATA_FILE = "data-file";
+    private static final String OPTION_NAME_UPSTREAM_LATENCY = "upstream-latency";
+    private static final String OPTION_NAME_UPSTREAM_FAILURE_RATE = "upstream-failure-rate";
+    private static final String OPTION_NAME_PORT = "port";
+    private static final String OPTION_NAME_CONFIG_PATH = "config";
+    private static final String OPTION_NAME_COMPRESSION = "compression";
+
+    private static final int DEFAULT_CLIENTS = 50;
+    private static final int DEFAULT_DURATION_SECONDS = 60;
+    private static final int DEFAULT_WARMUP_SECONDS = 10;
+    private static final String DEFAULT_DATA_FILE = "typical";
+    private static final int DEFAULT_UPSTREAM_LATENCY_MILLIS = 0;
+    private static final double DEFAULT_UPSTREAM_FAILURE_RATE = 0.0;
+    private static final int DEFAULT_PORT = 18080;
+    private static final List<String> DEFAULT_ENDPOINTS = Arrays.asList(
+        ServiceEndpoints.DATA_FILE_LEGACY,
+        ServiceEndpoints.NETWORK_INFORMATION_LEGACY,
+        ServiceEndpoints.NETWORK_INFORMATION_JSON
+    );
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+    private static final Duration STARTUP_CHECK_INTERVAL = Duration.ofSeconds(1);
+    private static final Timeout REQUEST_TIMEOUT = Timeout.ofMinutes(1);
+
+    private static final double[] PERCENTILES = {50.0, 99.0, 99.9};
+
+    private static final PrintStream OUT = System.out;
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options();
+        addOptions(options);
+
+        CommandLineParser parser = new DefaultParser();
+        CommandLine parameters = parser.parse(options, args);
+        if (parameters.hasOption(OPTION_NAME_HELP)) {
+            new HelpFormatter().printHelp(LoadTest.class.getSimpleName(), options);
+            System.exit(0);
+        }
+
+        int numClients = Integer.parseInt(parameters.getOptionValue(OPTION_NAME_CLIENTS, Integer.toString(DEFAULT_CLIENTS)));
+        Duration duration = Duration.ofSeconds(Long.parseLong(parameters.getOptionValue(OPTION_NAME_DURATION, Integer.toString(DEFAULT_DURATION_SECONDS))));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(parameters.getOptionValue(OPTION_NAME_WARMUP, Integer.toString(DEFAULT_WARMUP_SECONDS))));
+        String dataFileName = parameters.getOptionValue(OPTION_NAME_DATA_FILE, DEFAULT_DATA_FILE);
+        Duration upstreamLatency = Duration.ofMillis(Long.parseLong(parameters.getOptionValue(OPTION_NAME_UPSTREAM_LATENCY, Integer.toString(DEFAULT_UPSTREAM_LATENCY_MILLIS))));
+        double upstreamFailureRate = Double.parseDouble(parameters.getOptionValue(OPTION_NAME_UPSTREAM_FAILURE_RATE, Double.toString(DEFAULT_UPSTREAM_FAILURE_RATE)));
+        int port = Integer.parseInt(parameters.getOptionValue(OPTION_NAME_PORT, Integer.toString(DEFAULT_PORT)));
+        boolean isCompressionEnabled = parameters.hasOption(OPTION_NAME_COMPRESSION);
+
+        List<String> endpoints = DEFAULT_ENDPOINTS;
+        if (parameters.hasOption(OPTION_NAME_ENDPOINTS)) {
+            endpoints = Arrays.asList(parameters.getOptionValue(OPTION_NAME_ENDPOINTS).split(","));
+        }
+
+        StubUpstream upstream = new StubUpstream(dataFileName, upstreamLatency, upstreamFailureRate);
+        upstream.start();
+        OUT.println("Stub upstream is listening at " + upstream.getBaseUrl());
+
+        File configFile = writeConfiguration(
+            upstream.getBaseUrl(),
+            port,
+            numClients,
+            parameters.getOptionValue(OPTION_NAME_CONFIG_PATH)
+        );
+
+        Main.main(new String[]{
+            "--no-gui",
+            "--accept-disclaimer-and-licenses",
+            "--config", configFile.getAbsolutePath()
+        });
+
+        String baseUrl = "http://127.0.0.1:" + port;
+
+        HttpClientBuilder clientBuilder = HttpClients.custom()
+                                                     .setConnectionManager(
+                                                         PoolingHttpClientConnectionManagerBuilder.create()
+                                                                                                  .setMaxConnTotal(numClients)
+                                                                                                  .setMaxConnPerRoute(numClients)
+                                                                                                  .build()
+                                                     )
+                                                     .setDefaultRequestConfig(
+                                                         RequestConfig.custom()
+                                                                      .setResponseTimeout(REQUEST_TIMEOUT)
+                                                                      .build()
+                                                     )
+                                                     // retries would hide failures and distort latencies
+                                                     .disableAutomaticRetries();
+        if (!isCompressionEnabled) {
+            // legacy clients do not request compression
+            clientBuilder.disableContentCompression();
+        }
+
+        try (CloseableHttpClient client = clientBuilder.build()) {
+            waitUntilReady(client, baseUrl + ServiceEndpoints.DATA_FILE_LEGACY);
+
+            OUT.println(
+                "Running " + numClients + " clients for " + warmup.getSeconds() + "s warmup and "
+                    + duration.getSeconds() + "s measurement"
+            );
+
+            Map<String, Long> upstreamRequestsBefore = upstream.getRequestCounts();
+            List<EndpointStatistics> statistics = run(client, baseUrl, endpoints, numClients, warmup, duration);
+            Map<String, Long> upstreamRequestsAfter = upstream.getRequestCounts();
+
+            report(endpoints, statistics, duration, upstreamRequestsBefore, upstreamRequestsAfter, upstream.getInjectedFailures());
+        } finally {
+            Main.getServer().stopAll();
+            upstream.stop();
+            configFile.delete();
+        }
+
+        System.exit(0);
+    }
+
+    private static void addOptions(Options options) {
+        options.addOption(Option.builder()
+                                .longOpt(OPTION_NAME_HELP)
+                                .desc("prints the help text")
+                                .build());
+
+        options.addOption(Option.builder()
+                                .longOpt(OPTION_NAME_CLIENTS)
+                                .hasArg()
+                                .desc("number of concurrent clients (default: " + DEFAULT_CLIENTS + ")")
+                                .build());
+
+        options.addOption(Option.builder()
+                                .longOpt(OPTION_NAME_DURATION)
+                                .hasArg()
+                                .desc("seconds to measure (default: " + DEFAULT_DURATION_SECONDS + ")")
+                                .build());
+
+        options.addOption(Option.builder()
+                                .longOpt(OPTION_NAME_WARMUP)
+                                .hasArg()
+                                .desc("seconds to run before measuring (default: " + DEFAULT_WARMUP_SECONDS + ")")
+                                .build());
+
+        options.addOption(Option.builder()
+                                .longOpt(OPTION_NAME_ENDPOINTS)
+                                .hasArg()
+                                .desc("comma-separated endpoints to request in turn (default: " + String.join(",", DEFAULT_ENDPOINTS) + ")")
+                                .build());
+
+        options.addOption(Option.builder()
+                                .longOpt(OPTION_NAME_DATA_FILE)
+                                .hasArg()
+                                .desc("data file served by upstream: small, typical or peak (default: " + DEFAULT_DATA_FILE + ")")
+                                .build());
+
+        options.addOption(Option.builder()
+                                .longOpt(OPTION_NAME_UPSTREAM_LATENCY)
+                                .hasArg()
+                                .desc("milliseconds to delay each upstream response (default: " + DEFAULT_UPSTREAM_LATENCY_MILLIS + ")")
+                                .build());
+
+        options.addOption(Option.builder()
+                                .longOpt(OPTION_NAME_UPSTREAM_FAILURE_RATE)
+                                .hasArg()
+                                .desc("share of upstream requests to fail, 0.0 to 1.0 (default: " + DEFAULT_UPSTREAM_FAILURE_RATE + ")")
+                                .build());
+
+        options.addOption(Option.builder()
+                                .longOpt(OPTION_NAME_PORT)
+                                .hasArg()
+                                .desc("port to run the proxy on (default: " + DEFAULT_PORT + ")")
+                                .build());
+
+        options.addOption(Option.builder()
+                                .longOpt(OPTION_NAME_CONFIG_PATH)
+                                .hasArg()
+                                .desc("proxy configuration file to apply on top of the load test defaults")
+                                .build());
+
+        options.addOption(Option.builder()
+                                .longOpt(OPTION_NAME_COMPRESSION)
+                                .desc("requests compressed responses (not supported by legacy clients)")
+                                .build());
+    }
+
+    private static File writeConfiguration(String upstreamBaseUrl, int port, int numClients, String additionalConfigPath) throws IOException {
+        Properties properties = new Properties();
+
+        properties.setProperty("upstreamBaseUrl", upstreamBaseUrl);
+        properties.setProperty("upstreamBaseUrl.overrideEnabled", "true");
+        properties.setProperty("serverPort", Integer.toString(port));
+        properties.setProperty("allowedIps.0", "127.0.0.1");
+        properties.setProperty("maxConnections", Integer.toString(numClients * 2));
+
+        // all clients share one address, so they would be limited together
+        properties.setProperty("rateLimit.requestsPerMinute", "0");
+        properties.setProperty("rateLimit.maxConcurrentRequestsPerEndpoint", "0");
+
+        if (additionalConfigPath != null) {
+            try (InputStream is = new FileInputStream(additionalConfigPath)) {
+                properties.load(is);
+            }
+        }
+
+        File configFile = File.createTempFile("loadtest", ".properties");
+        try (OutputStream os = new FileOutputStream(configFile)) {
+            properties.store(os, "generated for load test");
+        }
+
+        return configFile;
+    }
+
+    private static void waitUntilReady(CloseableHttpClient client, String url) throws Exception {
+        OUT.println("Waiting for first legacy data file");
+
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            try {
+                int status = client.execute(new HttpGet(url), response -> {
+                    consume(response.getEntity(), new byte[8192]);
+                    return response.getCode();
+                });
+
+                if (status == HttpStatus.SC_OK) {
+                    return;
+                }
+            } catch (IOException ex) {
+                // server may still be starting up
+            }
+
+            Thread.sleep(STARTUP_CHECK_INTERVAL.toMillis());
+        }
+
+        throw new IllegalStateException("Proxy did not become ready within " + STARTUP_TIMEOUT);
+    }
+
+    private static List<EndpointStatistics> run(CloseableHttpClient client, String baseUrl, List<String> endpoints, int numClients, Duration warmup, Duration duration) throws InterruptedException {
+        long measurementStartNanos = System.nanoTime() + warmup.toNanos();
+        long endNanos = measurementStartNanos + duration.toNanos();
+
+        List<ClientThread> threads = new ArrayList<>();
+        for (int i = 0; i < numClients; i++) {
+            // start at different endpoints so they are requested evenly from the beginning
+            ClientThread thread = new ClientThread(client, baseUrl, endpoints, i, measurementStartNanos, endNanos);
+            threads.add(thread);
+            thread.start();
+        }
+
+        List<EndpointStatistics> combined = new ArrayList<>();
+        for (int i = 0; i < endpoints.size(); i++) {
+            combined.add(new EndpointStatistics());
+        }
+
+        for (ClientThread thread : threads) {
+            thread.join();
+            for (int i = 0; i < endpoints.size(); i++) {
+                combined.get(i).merge(thread.statistics.get(i));
+            }
+        }
+
+        return combined;
+    }
+
+    private static class ClientThread extends Thread {
+        private final CloseableHttpClient client;
+        private final List<String> urls = new ArrayList<>();
+        private final List<EndpointStatistics> statistics = new ArrayList<>();
+        private final int offset;
+        private final long measurementStartNanos;
+        private final long endNanos;
+        private final byte[] buffer = new byte[8192];
+
+        private ClientThread(CloseableHttpClient client, String baseUrl, List<String> endpoints, int offset, long measurementStartNanos, long endNanos) {
+            super("LoadTest-Client-" + offset);
+            this.client = client;
+            this.offset = offset;
+            this.measurementStartNanos = measurementStartNanos;
+            this.endNanos = endNanos;
+
+            for (String endpoint : endpoints) {
+                urls.add(baseUrl + endpoint);
+                statistics.add(new EndpointStatistics());
+            }
+        }
+
+        @Override
+        public void run() {
+            int i = offset;
+            while (true) {
+                int index = i++ % urls.size();
+
+                long startNanos = System.nanoTime();
+                if (startNanos >= endNanos) {
+                    break;
+                }
+
+                boolean isSuccess;
+                long bytes;
+                try {
+                    long[] result = client.execute(new HttpGet(urls.get(index)), response -> {
+                        return new long[]{response.getCode(), consume(response.getEntity(), buffer)};
+                    });
+                    isSuccess = (result[0] == HttpStatus.SC_OK);
+                    bytes = result[1];
+                } catch (IOException ex) {
+                    isSuccess = false;
+                    bytes = 0;
+                }
+
+                if (startNanos >= measurementStartNanos) {
+                    statistics.get(index).record(System.nanoTime() - startNanos, isSuccess, bytes);
+                }
+            }
+        }
+    }
+
+    private static long consume(HttpEntity entity, byte[] buffer) throws IOException {
+        if (entity == null) {
+            return 0;
+        }
+
+        long total = 0;
+        try (InputStream is = entity.getContent()) {
+            int read;
+            while ((read = is.read(buffer)) >= 0) {
+                total += read;
+            }
+        }
+
+        return total;
+    }
+
+    private static void report(List<String> endpoints, List<EndpointStatistics> statistics, Duration duration, Map<String, Long> upstreamRequestsBefore, Map<String, Long> upstreamRequestsAfter, long injectedFailures) {
+        double seconds = duration.toMillis() / 1000.0;
+
+        OUT.println();
+        OUT.println(String.format(
+            Locale.ROOT,
+            "%-24s %10s %8s %10s %10s %10s %10s %10s",
+            "endpoint", "requests", "failed", "req/s", "MB/s", "p50 ms", "p99 ms", "p99.9 ms"
+        ));
+
+        EndpointStatistics total = new EndpointStatistics();
+        for (int i = 0; i < endpoints.size(); i++) {
+            EndpointStatistics endpointStatistics = statistics.get(i);
+            printStatistics(endpoints.get(i), endpointStatistics, seconds);
+            total.merge(endpointStatistics);
+        }
+        printStatistics("total", total, seconds);
+
+        OUT.println();
+        OUT.println("Upstream requests during measurement:");
+        for (Map.Entry<String, Long> entry : upstreamRequestsAfter.entrySet()) {
+            long before = upstreamRequestsBefore.getOrDefault(entry.getKey(), 0L);
+            OUT.println(String.format(Locale.ROOT, "  %-32s %8d", entry.getKey(), entry.getValue() - before));
+        }
+        OUT.println(String.format(Locale.ROOT, "Injected upstream failures (whole run): %d", injectedFailures));
+    }
+
+    private static void printStatistics(String name, EndpointStatistics statistics, double seconds) {
+        StringBuilder sb = new StringBuilder(String.format(
+            Locale.ROOT,
+            "%-24s %10d %8d %10.1f %10.2f",
+            name,
+            statistics.getNumRequests(),
+            statistics.getNumFailed(),
+            statistics.getNumRequests() / seconds,
+            statistics.getNumBytes() / seconds / 1024.0 / 1024.0
+        ));
+
+        for (double percentile : PERCENTILES) {
+            sb.append(String.format(
+                Locale.ROOT,
+                " %10.2f",
+                statistics.getLatencyNanosAtPercentile(percentile) / (double) TimeUnit.MILLISECONDS.toNanos(1)
+            ));
+        }
+
+        OUT.println(sb.toString());
+    }
+}
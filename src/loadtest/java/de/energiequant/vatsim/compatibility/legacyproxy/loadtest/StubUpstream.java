@@ -0,0 +1,272 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.impl.bootstrap.HttpServer;
+import org.apache.hc.core5.http.impl.bootstrap.ServerBootstrap;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.io.CloseMode;
+
+/**
+ * Embedded HTTP server standing in for the upstream VATSIM servers. Serves the
+ * network information in both formats, a JSON v3 data file and online
+ * transceivers from resources so load tests run fully offline.
+ * <p>
+ * Every response can be delayed by a fixed latency and a share of requests can
+ * be failed with <code>503 Service Unavailable</code> to observe the proxy's
+ * behaviour on slow or unreliable upstream servers. All requests are counted
+ * per path.
+ * </p>
+ * <p>
+ * Data files and online transceivers are served gzip-compressed if accepted by
+ * the client, just like upstream does.
+ * </p>
+ */
+public class StubUpstream {
+    private static final String BASE_URL_PLACEHOLDER = "${baseUrl}";
+
+    static final String NETWORK_INFORMATION_LEGACY = "/status.txt";
+    static final String NETWORK_INFORMATION_JSON = "/status.json";
+    static final String DATA_FILE_JSON = "/v3/vatsim-data.json";
+    static final String ONLINE_TRANSCEIVERS = "/v3/transceivers-data.json";
+
+    private static final String DATA_FILE_RESOURCE_PATH = "/de/energiequant/vatsim/compatibility/legacyproxy/server/datafiles/";
+    private static final String TRANSCEIVERS_RESOURCE_PATH = "transceivers/";
+    private static final String GZIP_RESOURCE_EXTENSION = ".json.gz";
+
+    // data files are recorded at a fixed time which needs to be replaced to appear current
+    private static final String RECORDED_UPDATE = "\"update\":\"20210612102030\"";
+    private static final String RECORDED_UPDATE_TIMESTAMP = "\"update_timestamp\":\"2021-06-12T10:20:30.0000000Z\"";
+    private static final DateTimeFormatter UPDATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final DateTimeFormatter UPDATE_TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSSSSS'Z'");
+
+    private static final String GZIP = "gzip";
+
+    private static final ContentType TEXT_PLAIN_UTF8 = ContentType.TEXT_PLAIN.withCharset(StandardCharsets.UTF_8);
+
+    private final Duration latency;
+    private final double failureRate;
+
+    private final String dataFile;
+    private final byte[] onlineTransceivers;
+    private final byte[] onlineTransceiversGzip;
+
+    private final Map<String, LongAdder> requestsByPath = new ConcurrentHashMap<>();
+    private final LongAdder injectedFailures = new LongAdder();
+
+    private HttpServer server;
+    private String baseUrl;
+    private String networkInformationLegacy;
+    private String networkInformationJson;
+
+    /**
+     * Creates a new stub upstream. {@link #start()} needs to be called before
+     * use.
+     *
+     * @param dataFileName name of the included data file to serve (<code>small</code>, <code>typical</code> or <code>peak</code>)
+     * @param latency      delay applied to all responses
+     * @param failureRate  share of requests to fail (0.0 to 1.0)
+     * @throws IOException if resources cannot be loaded
+     */
+    public StubUpstream(String dataFileName, Duration latency, double failureRate) throws IOException {
+        this.latency = latency;
+        this.failureRate = failureRate;
+
+        this.dataFile = new String(
+            readGzipResource(DATA_FILE_RESOURCE_PATH + dataFileName + GZIP_RESOURCE_EXTENSION),
+            StandardCharsets.UTF_8
+        );
+        this.onlineTransceivers = readGzipResource(TRANSCEIVERS_RESOURCE_PATH + dataFileName + GZIP_RESOURCE_EXTENSION);
+        this.onlineTransceiversGzip = gzip(onlineTransceivers);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (OutputStream os = new GZIPOutputStream(baos)) {
+            os.write(bytes);
+        }
+        return baos.toByteArray();
+    }
+
+    private static boolean acceptsGzip(ClassicHttpRequest request) {
+        Header header = request.getFirstHeader(HttpHeaders.ACCEPT_ENCODING);
+        return (header != null) && header.getValue().contains(GZIP);
+    }
+
+    private static byte[] readGzipResource(String path) throws IOException {
+        InputStream is = StubUpstream.class.getResourceAsStream(path);
+        if (is == null) {
+            throw new IOException("Resource not found: " + path);
+        }
+
+        return read(new GZIPInputStream(is));
+    }
+
+    private static byte[] readResource(String path) throws IOException {
+        InputStream is = StubUpstream.class.getResourceAsStream(path);
+        if (is == null) {
+            throw new IOException("Resource not found: " + path);
+        }
+
+        return read(is);
+    }
+
+    private static byte[] read(InputStream is) throws IOException {
+        try (InputStream closeable = is) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = closeable.read(buffer)) >= 0) {
+                baos.write(buffer, 0, read);
+            }
+            return baos.toByteArray();
+        }
+    }
+
+    /**
+     * Starts the server on a random port of the loopback interface.
+     *
+     * @throws IOException if the server cannot be started
+     */
+    public void start() throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+
+        server = ServerBootstrap.bootstrap()
+                                .setLocalAddress(loopback)
+                                .setListenerPort(0)
+                                .setCanonicalHostName(loopback.getHostAddress())
+                                .register("*", this::handle)
+                                .create();
+        server.start();
+
+        baseUrl = "http://" + loopback.getHostAddress() + ":" + server.getLocalPort();
+        networkInformationLegacy = fillTemplate("status.txt");
+        networkInformationJson = fillTemplate("status.json");
+    }
+
+    private String fillTemplate(String name) throws IOException {
+        return new String(readResource(name), StandardCharsets.UTF_8).replace(BASE_URL_PLACEHOLDER, baseUrl);
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.close(CloseMode.GRACEFUL);
+        }
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    private void handle(ClassicHttpRequest request, ClassicHttpResponse response, HttpContext context) throws IOException {
+        String path = request.getPath();
+        int queryIndex = path.indexOf('?');
+        if (queryIndex >= 0) {
+            path = path.substring(0, queryIndex);
+        }
+
+        requestsByPath.computeIfAbsent(path, x -> new LongAdder()).increment();
+
+        if (!latency.isZero()) {
+            try {
+                Thread.sleep(latency.toMillis());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if ((failureRate > 0.0) && (ThreadLocalRandom.current().nextDouble() < failureRate)) {
+            injectedFailures.increment();
+            response.setCode(HttpStatus.SC_SERVICE_UNAVAILABLE);
+            response.setEntity(new StringEntity("injected failure", TEXT_PLAIN_UTF8));
+            return;
+        }
+
+        switch (path) {
+            case NETWORK_INFORMATION_LEGACY:
+                respond(response, networkInformationLegacy, TEXT_PLAIN_UTF8);
+                break;
+
+            case NETWORK_INFORMATION_JSON:
+                respond(response, networkInformationJson, ContentType.APPLICATION_JSON);
+                break;
+
+            case DATA_FILE_JSON:
+                byte[] dataFileBytes = currentDataFile().getBytes(StandardCharsets.UTF_8);
+                respond(response, acceptsGzip(request) ? gzip(dataFileBytes) : null, dataFileBytes);
+                break;
+
+            case ONLINE_TRANSCEIVERS:
+                respond(response, acceptsGzip(request) ? onlineTransceiversGzip : null, onlineTransceivers);
+                break;
+
+            default:
+                response.setCode(HttpStatus.SC_NOT_FOUND);
+                response.setEntity(new StringEntity("not found", TEXT_PLAIN_UTF8));
+        }
+    }
+
+    private static void respond(ClassicHttpResponse response, String content, ContentType contentType) {
+        response.setCode(HttpStatus.SC_OK);
+        response.setEntity(new ByteArrayEntity(content.getBytes(StandardCharsets.UTF_8), contentType));
+    }
+
+    private static void respond(ClassicHttpResponse response, byte[] gzipped, byte[] plain) {
+        response.setCode(HttpStatus.SC_OK);
+        if (gzipped != null) {
+            response.setEntity(new ByteArrayEntity(gzipped, ContentType.APPLICATION_JSON, GZIP));
+        } else {
+            response.setEntity(new ByteArrayEntity(plain, ContentType.APPLICATION_JSON));
+        }
+    }
+
+    private String currentDataFile() {
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        return dataFile.replace(RECORDED_UPDATE, "\"update\":\"" + UPDATE_FORMATTER.format(now) + "\"")
+                       .replace(
+                           RECORDED_UPDATE_TIMESTAMP,
+                           "\"update_timestamp\":\"" + UPDATE_TIMESTAMP_FORMATTER.format(now) + "\""
+                       );
+    }
+
+    /**
+     * Returns the number of requests received so far, indexed by path.
+     *
+     * @return number of requests by path, sorted by path
+     */
+    public Map<String, Long> getRequestCounts() {
+        Map<String, Long> out = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : requestsByPath.entrySet()) {
+            out.put(entry.getKey(), entry.getValue().sum());
+        }
+        return out;
+    }
+
+    public long getInjectedFailures() {
+        return injectedFailures.sum();
+    }
+}
@@ -35,7 +35,16 @@ public class Configuration {
     private final File configFile;
     private final DisclaimerState disclaimerState;
 
+    private static final boolean DEFAULT_KEEP_ALIVE_ENABLED = false;
+    private static final int DEFAULT_KEEP_ALIVE_IDLE_TIMEOUT_SECONDS = 60;
+    private static final int DEFAULT_KEEP_ALIVE_MAX_REQUESTS_PER_CONNECTION = 100;
+    private static final int DEFAULT_MAX_CONNECTIONS = 0;
+    private static final int DEFAULT_NETWORK_INFORMATION_JSON_CACHE_SECONDS = 300;
     private static final boolean DEFAULT_PARSER_LOG = false;
+    private static final int DEFAULT_RATE_LIMIT_REQUESTS_PER_MINUTE = 0;
+    private static final int DEFAULT_RATE_LIMIT_BURST = 10;
+    private static final int DEFAULT_RATE_LIMIT_MAX_CONCURRENT_REQUESTS_PER_ENDPOINT = 0;
+    private static final int DEFAULT_HISTORY_MEMORY_BUDGET_MEGABYTES = 16;
     private static final boolean DEFAULT_QUIRK_LEGACY_DATAFILE_UTF8 = false;
     private static final boolean DEFAULT_UPSTREAM_BASE_URL_OVERRIDDEN = false;
     private static final String DEFAULT_UPSTREAM_BASE_URL = "http://status.vatsim.net";
@@ -58,6 +67,10 @@ public class Configuration {
         IPFilter.LOCALHOST_IPV4,
         IPFilter.LOCALHOST_IPV6
     ));
+    private static final Collection<String> DEFAULT_KEEP_ALIVE_EXCLUDED_IPS = Collections.emptyList();
+    private static final Collection<String> DEFAULT_KEEP_ALIVE_EXCLUDED_USER_AGENTS = Collections.emptyList();
+    private static final boolean DEFAULT_METRICS_ENABLED = true;
+    private static final Collection<String> DEFAULT_METRICS_ALLOWED_IPS = DEFAULT_ALLOWED_IPS;
 
     private final AtomicBoolean isQuirkLegacyDataFileUtf8Enabled = new AtomicBoolean(
         DEFAULT_QUIRK_LEGACY_DATAFILE_UTF8
@@ -73,6 +86,35 @@ public class Configuration {
 
     private final Set<Runnable> ipFilterListeners = Collections.synchronizedSet(new HashSet<>());
 
+    private final AtomicBoolean isKeepAliveEnabled = new AtomicBoolean(DEFAULT_KEEP_ALIVE_ENABLED);
+    private final AtomicInteger keepAliveIdleTimeoutSeconds = new AtomicInteger(
+        DEFAULT_KEEP_ALIVE_IDLE_TIMEOUT_SECONDS
+    );
+    private final AtomicInteger keepAliveMaxRequestsPerConnection = new AtomicInteger(
+        DEFAULT_KEEP_ALIVE_MAX_REQUESTS_PER_CONNECTION
+    );
+    private final Set<String> keepAliveExcludedIps = Collections.synchronizedSet(
+        new HashSet<>(DEFAULT_KEEP_ALIVE_EXCLUDED_IPS)
+    );
+    private final Set<String> keepAliveExcludedUserAgents = Collections.synchronizedSet(
+        new HashSet<>(DEFAULT_KEEP_ALIVE_EXCLUDED_USER_AGENTS)
+    );
+    private final AtomicInteger maxConnections = new AtomicInteger(DEFAULT_MAX_CONNECTIONS);
+    private final AtomicInteger networkInformationJsonCacheSeconds = new AtomicInteger(
+        DEFAULT_NETWORK_INFORMATION_JSON_CACHE_SECONDS
+    );
+    private final AtomicInteger rateLimitRequestsPerMinute = new AtomicInteger(DEFAULT_RATE_LIMIT_REQUESTS_PER_MINUTE);
+    private final AtomicInteger rateLimitBurst = new AtomicInteger(DEFAULT_RATE_LIMIT_BURST);
+    private final AtomicInteger rateLimitMaxConcurrentRequestsPerEndpoint = new AtomicInteger(
+        DEFAULT_RATE_LIMIT_MAX_CONCURRENT_REQUESTS_PER_ENDPOINT
+    );
+    private final AtomicInteger historyMemoryBudgetMegabytes = new AtomicInteger(
+        DEFAULT_HISTORY_MEMORY_BUDGET_MEGABYTES
+    );
+    private final AtomicReference<File> warmStartCacheDirectory = new AtomicReference<>(null);
+    private final AtomicBoolean isMetricsEnabled = new AtomicBoolean(DEFAULT_METRICS_ENABLED);
+    private final Set<String> metricsAllowedIps = Collections.synchronizedSet(new HashSet<>(DEFAULT_METRICS_ALLOWED_IPS));
+
     private final AtomicInteger onlineTransceiversOverrideCacheMinutes = new AtomicInteger(
         DEFAULT_ONLINE_TRANSCEIVERS_OVERRIDE_CACHE_MINUTES
     );
@@ -112,8 +154,20 @@ public class Configuration {
     );
 
     private static final String KEY_DISCLAIMER_ACCEPTED = "disclaimerAccepted";
+    private static final String KEY_KEEP_ALIVE_ENABLED = "keepAlive.enabled";
+    private static final String KEY_KEEP_ALIVE_IDLE_TIMEOUT_SECONDS = "keepAlive.idleTimeoutSeconds";
+    private static final String KEY_KEEP_ALIVE_MAX_REQUESTS_PER_CONNECTION = "keepAlive.maxRequestsPerConnection";
     private static final String KEY_LOCAL_HOST_NAME = "localHostName";
+    private static final String KEY_MAX_CONNECTIONS = "maxConnections";
+    private static final String KEY_NETWORK_INFORMATION_JSON_CACHE_SECONDS = "networkInformation.json.cacheSeconds";
     private static final String KEY_PARSER_LOG = "parserLog";
+    private static final String KEY_RATE_LIMIT_REQUESTS_PER_MINUTE = "rateLimit.requestsPerMinute";
+    private static final String KEY_RATE_LIMIT_BURST = "rateLimit.burst";
+    private static final String KEY_RATE_LIMIT_MAX_CONCURRENT_REQUESTS_PER_ENDPOINT = "rateLimit.maxConcurrentRequestsPerEndpoint";
+    private static final String KEY_HISTORY_MEMORY_BUDGET_MEGABYTES = "history.memoryBudgetMegabytes";
+    private static final String KEY_WARM_START_CACHE_DIRECTORY = "warmStartCache.directory";
+    private static final String KEY_METRICS_ENABLED = "metrics.enabled";
+    private static final String BASEKEY_METRICS_ALLOWED_IPS = "metrics.allowedIps.";
     private static final String KEY_QUIRK_LEGACY_DATAFILE_UTF8 = "quirks.datafile.legacy.UTF8";
     private static final String KEY_ONLINE_TRANSCEIVERS_OVERRIDE_CACHE_MINUTES = "onlineTransceivers.override.cacheMinutes";
     private static final String KEY_ONLINE_TRANSCEIVERS_OVERRIDE_ENABLED = "onlineTransceivers.override.enabled";
@@ -133,10 +187,14 @@ public class Configuration {
     private static final String KEY_VATSPY_BASE_DIRECTORY_ENABLED = "vatSpy.external.enabled";
     private static final String KEY_VATSPY_WARN_OLD_INTEGRATED_DB = "vatSpy.warnOldIntegratedDB";
     private static final String BASEKEY_ALLOWED_IPS = "allowedIps.";
+    private static final String BASEKEY_KEEP_ALIVE_EXCLUDED_IPS = "keepAlive.excludedIps.";
+    private static final String BASEKEY_KEEP_ALIVE_EXCLUDED_USER_AGENTS = "keepAlive.excludedUserAgents.";
 
     public static final int SERVER_PORT_MINIMUM = 1;
     public static final int SERVER_PORT_MAXIMUM = 65535;
 
+    public static final int KEEP_ALIVE_IDLE_TIMEOUT_SECONDS_MINIMUM = 1;
+
     private final boolean isSaneLocation;
 
     public static class LoadingFailed extends Exception {
@@ -190,6 +248,58 @@ public class Configuration {
         setLocalHostName(readString(properties, KEY_LOCAL_HOST_NAME, DEFAULT_LOCAL_HOST_NAME));
         setServerPort(readInteger(properties, KEY_SERVER_PORT, DEFAULT_SERVER_PORT));
         setAllowedIps(readStringsFromMultipleKeys(properties, BASEKEY_ALLOWED_IPS, DEFAULT_ALLOWED_IPS));
+        setMaxConnections(readInteger(properties, KEY_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS));
+        setNetworkInformationJsonCacheSeconds(readInteger(
+            properties,
+            KEY_NETWORK_INFORMATION_JSON_CACHE_SECONDS,
+            DEFAULT_NETWORK_INFORMATION_JSON_CACHE_SECONDS
+        ));
+
+        setRateLimitRequestsPerMinute(readInteger(
+            properties,
+            KEY_RATE_LIMIT_REQUESTS_PER_MINUTE,
+            DEFAULT_RATE_LIMIT_REQUESTS_PER_MINUTE
+        ));
+        setRateLimitBurst(readInteger(properties, KEY_RATE_LIMIT_BURST, DEFAULT_RATE_LIMIT_BURST));
+        setRateLimitMaxConcurrentRequestsPerEndpoint(readInteger(
+            properties,
+            KEY_RATE_LIMIT_MAX_CONCURRENT_REQUESTS_PER_ENDPOINT,
+            DEFAULT_RATE_LIMIT_MAX_CONCURRENT_REQUESTS_PER_ENDPOINT
+        ));
+        setHistoryMemoryBudgetMegabytes(readInteger(
+            properties,
+            KEY_HISTORY_MEMORY_BUDGET_MEGABYTES,
+            DEFAULT_HISTORY_MEMORY_BUDGET_MEGABYTES
+        ));
+        setWarmStartCacheDirectory(readFile(properties, KEY_WARM_START_CACHE_DIRECTORY, ""));
+        setMetricsEnabled(readBoolean(properties, KEY_METRICS_ENABLED, DEFAULT_METRICS_ENABLED));
+        setMetricsAllowedIps(readStringsFromMultipleKeys(
+            properties,
+            BASEKEY_METRICS_ALLOWED_IPS,
+            DEFAULT_METRICS_ALLOWED_IPS
+        ));
+
+        setKeepAliveEnabled(readBoolean(properties, KEY_KEEP_ALIVE_ENABLED, DEFAULT_KEEP_ALIVE_ENABLED));
+        setKeepAliveIdleTimeoutSeconds(readInteger(
+            properties,
+            KEY_KEEP_ALIVE_IDLE_TIMEOUT_SECONDS,
+            DEFAULT_KEEP_ALIVE_IDLE_TIMEOUT_SECONDS
+        ));
+        setKeepAliveMaxRequestsPerConnection(readInteger(
+            properties,
+            KEY_KEEP_ALIVE_MAX_REQUESTS_PER_CONNECTION,
+            DEFAULT_KEEP_ALIVE_MAX_REQUESTS_PER_CONNECTION
+        ));
+        setKeepAliveExcludedIps(readStringsFromMultipleKeys(
+            properties,
+            BASEKEY_KEEP_ALIVE_EXCLUDED_IPS,
+            DEFAULT_KEEP_ALIVE_EXCLUDED_IPS
+        ));
+        setKeepAliveExcludedUserAgents(readStringsFromMultipleKeys(
+            properties,
+            BASEKEY_KEEP_ALIVE_EXCLUDED_USER_AGENTS,
+            DEFAULT_KEEP_ALIVE_EXCLUDED_USER_AGENTS
+        ));
 
         setVatSpyBaseDirectory(readFile(properties, KEY_VATSPY_BASE_DIRECTORY, ""));
         setVatSpyBaseDirectoryEnabled(
@@ -354,6 +464,29 @@ public class Configuration {
         );
         LOGGER.debug("Configured parser log:          {}", isParserLogEnabled.get());
         LOGGER.debug("Configured allowed IPs:         {}", allowedIps);
+        LOGGER.debug("Configured max connections:     {}", maxConnections.get());
+        LOGGER.debug(
+            "Configured keep-alive:          {} (idle timeout {}s, max. {} requests per connection)",
+            isKeepAliveEnabled.get() ? "enabled" : "disabled",
+            keepAliveIdleTimeoutSeconds.get(),
+            keepAliveMaxRequestsPerConnection.get()
+        );
+        LOGGER.debug("Configured no keep-alive IPs:   {}", keepAliveExcludedIps);
+        LOGGER.debug("Configured no keep-alive UAs:   {}", keepAliveExcludedUserAgents);
+        LOGGER.debug("Configured status.json cache:   {} seconds", networkInformationJsonCacheSeconds.get());
+        LOGGER.debug(
+            "Configured rate limit:          {} requests per minute (burst {}), max. {} concurrent requests per endpoint",
+            rateLimitRequestsPerMinute.get(),
+            rateLimitBurst.get(),
+            rateLimitMaxConcurrentRequestsPerEndpoint.get()
+        );
+        LOGGER.debug("Configured history budget:      {} MB", historyMemoryBudgetMegabytes.get());
+        LOGGER.debug("Configured warm-start cache:    {}", warmStartCacheDirectory.get());
+        LOGGER.debug(
+            "Configured metrics:             {} (allowed IPs {})",
+            isMetricsEnabled.get() ? "enabled" : "disabled",
+            metricsAllowedIps
+        );
 
         LOGGER.debug(
             "Configured xcvr URL:            {} ({})",
@@ -436,6 +569,53 @@ public class Configuration {
             properties.setProperty(BASEKEY_ALLOWED_IPS + (i++), allowedIp);
         }
 
+        properties.setProperty(KEY_MAX_CONNECTIONS, Integer.toString(maxConnections.get()));
+        properties.setProperty(
+            KEY_NETWORK_INFORMATION_JSON_CACHE_SECONDS,
+            Integer.toString(networkInformationJsonCacheSeconds.get())
+        );
+        properties.setProperty(KEY_RATE_LIMIT_REQUESTS_PER_MINUTE, Integer.toString(rateLimitRequestsPerMinute.get()));
+        properties.setProperty(KEY_RATE_LIMIT_BURST, Integer.toString(rateLimitBurst.get()));
+        properties.setProperty(
+            KEY_RATE_LIMIT_MAX_CONCURRENT_REQUESTS_PER_ENDPOINT,
+            Integer.toString(rateLimitMaxConcurrentRequestsPerEndpoint.get())
+        );
+        properties.setProperty(
+            KEY_HISTORY_MEMORY_BUDGET_MEGABYTES,
+            Integer.toString(historyMemoryBudgetMegabytes.get())
+        );
+        properties.setProperty(
+            KEY_WARM_START_CACHE_DIRECTORY,
+            getWarmStartCacheDirectory()
+                .map(File::getAbsolutePath)
+                .orElse("")
+        );
+        properties.setProperty(KEY_KEEP_ALIVE_ENABLED, Boolean.toString(isKeepAliveEnabled.get()));
+        properties.setProperty(
+            KEY_KEEP_ALIVE_IDLE_TIMEOUT_SECONDS,
+            Integer.toString(keepAliveIdleTimeoutSeconds.get())
+        );
+        properties.setProperty(
+            KEY_KEEP_ALIVE_MAX_REQUESTS_PER_CONNECTION,
+            Integer.toString(keepAliveMaxRequestsPerConnection.get())
+        );
+
+        i = 0;
+        for (String ip : getKeepAliveExcludedIps()) {
+            properties.setProperty(BASEKEY_KEEP_ALIVE_EXCLUDED_IPS + (i++), ip);
+        }
+
+        i = 0;
+        for (String userAgent : getKeepAliveExcludedUserAgents()) {
+            properties.setProperty(BASEKEY_KEEP_ALIVE_EXCLUDED_USER_AGENTS + (i++), userAgent);
+        }
+
+        properties.setProperty(KEY_METRICS_ENABLED, Boolean.toString(isMetricsEnabled.get()));
+        i = 0;
+        for (String ip : getMetricsAllowedIps()) {
+            properties.setProperty(BASEKEY_METRICS_ALLOWED_IPS + (i++), ip);
+        }
+
         properties.setProperty(
             KEY_ONLINE_TRANSCEIVERS_OVERRIDE_ENABLED,
             Boolean.toString(isOnlineTransceiversOverrideEnabled.get())
@@ -502,6 +682,77 @@ public class Configuration {
         notifyListeners(ipFilterListeners);
     }
 
+    public void setKeepAliveEnabled(boolean enabled) {
+        isKeepAliveEnabled.set(enabled);
+    }
+
+    public void setKeepAliveExcludedIps(Collection<String> ips) {
+        keepAliveExcludedIps.retainAll(ips);
+        keepAliveExcludedIps.addAll(ips);
+    }
+
+    public void setKeepAliveExcludedUserAgents(Collection<String> userAgents) {
+        keepAliveExcludedUserAgents.retainAll(userAgents);
+        keepAliveExcludedUserAgents.addAll(userAgents);
+    }
+
+    public void setKeepAliveIdleTimeoutSeconds(int seconds) {
+        requireAtLeast("keep-alive idle timeout in seconds", seconds, KEEP_ALIVE_IDLE_TIMEOUT_SECONDS_MINIMUM);
+        keepAliveIdleTimeoutSeconds.set(seconds);
+    }
+
+    public void setKeepAliveMaxRequestsPerConnection(int maxRequests) {
+        requireAtLeast("maximum number of requests per connection", maxRequests, 0);
+        keepAliveMaxRequestsPerConnection.set(maxRequests);
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        requireAtLeast("maximum number of concurrent connections", maxConnections, 0);
+        this.maxConnections.set(maxConnections);
+    }
+
+    public void setNetworkInformationJsonCacheSeconds(int seconds) {
+        requireAtLeast("JSON network information cache lifetime in seconds", seconds, 0);
+        networkInformationJsonCacheSeconds.set(seconds);
+    }
+
+    public void setRateLimitRequestsPerMinute(int requestsPerMinute) {
+        requireAtLeast("rate limit in requests per minute", requestsPerMinute, 0);
+        rateLimitRequestsPerMinute.set(requestsPerMinute);
+    }
+
+    public void setRateLimitBurst(int burst) {
+        requireAtLeast("rate limit burst", burst, 1);
+        rateLimitBurst.set(burst);
+    }
+
+    public void setRateLimitMaxConcurrentRequestsPerEndpoint(int maxRequests) {
+        requireAtLeast("maximum number of concurrent requests per endpoint", maxRequests, 0);
+        rateLimitMaxConcurrentRequestsPerEndpoint.set(maxRequests);
+    }
+
+    public void setHistoryMemoryBudgetMegabytes(int megabytes) {
+        requireAtLeast("history memory budget in megabytes", megabytes, 0);
+        historyMemoryBudgetMegabytes.set(megabytes);
+    }
+
+    public void setWarmStartCacheDirectory(File directory) {
+        warmStartCacheDirectory.set(directory);
+    }
+
+    public void unsetWarmStartCacheDirectory() {
+        warmStartCacheDirectory.set(null);
+    }
+
+    public void setMetricsEnabled(boolean enabled) {
+        isMetricsEnabled.set(enabled);
+    }
+
+    public void setMetricsAllowedIps(Collection<String> ips) {
+        metricsAllowedIps.retainAll(ips);
+        metricsAllowedIps.addAll(ips);
+    }
+
     public void setOnlineTransceiversOverrideCacheMinutes(int minutes) {
         requireAtLeast("override online transceiver cache lifetime in minutes", minutes, 0);
         onlineTransceiversOverrideCacheMinutes.set(minutes);
@@ -601,6 +852,121 @@ public class Configuration {
         return new HashSet<>(allowedIps);
     }
 
+    public boolean isKeepAliveEnabled() {
+        return isKeepAliveEnabled.get();
+    }
+
+    public Set<String> getKeepAliveExcludedIps() {
+        synchronized (keepAliveExcludedIps) {
+            return new HashSet<>(keepAliveExcludedIps);
+        }
+    }
+
+    public Set<String> getKeepAliveExcludedUserAgents() {
+        synchronized (keepAliveExcludedUserAgents) {
+            return new HashSet<>(keepAliveExcludedUserAgents);
+        }
+    }
+
+    public int getKeepAliveIdleTimeoutSeconds() {
+        return keepAliveIdleTimeoutSeconds.get();
+    }
+
+    /**
+     * Returns the maximum number of requests to be served over a single
+     * connection before it gets closed.
+     *
+     * @return maximum number of requests per connection; 0 for unlimited
+     */
+    public int getKeepAliveMaxRequestsPerConnection() {
+        return keepAliveMaxRequestsPerConnection.get();
+    }
+
+    /**
+     * Returns the maximum number of concurrently open client connections.
+     *
+     * @return maximum number of connections; 0 for unlimited
+     */
+    public int getMaxConnections() {
+        return maxConnections.get();
+    }
+
+    /**
+     * Returns how long JSON network information retrieved for clients should be
+     * reused before requesting it again from upstream.
+     *
+     * @return cache lifetime in seconds; 0 disables caching
+     */
+    public int getNetworkInformationJsonCacheSeconds() {
+        return networkInformationJsonCacheSeconds.get();
+    }
+
+    /**
+     * Returns the number of requests each client is allowed to make per minute
+     * on average.
+     *
+     * @return requests per minute and client; 0 for unlimited
+     */
+    public int getRateLimitRequestsPerMinute() {
+        return rateLimitRequestsPerMinute.get();
+    }
+
+    /**
+     * Returns the number of requests a client may make in quick succession
+     * before being rate limited.
+     *
+     * @return number of requests
+     */
+    public int getRateLimitBurst() {
+        return rateLimitBurst.get();
+    }
+
+    /**
+     * Returns the maximum number of requests to process concurrently per
+     * endpoint. Further requests are rejected immediately.
+     *
+     * @return maximum number of concurrent requests per endpoint; 0 for unlimited
+     */
+    public int getRateLimitMaxConcurrentRequestsPerEndpoint() {
+        return rateLimitMaxConcurrentRequestsPerEndpoint.get();
+    }
+
+    /**
+     * Returns the amount of memory to use at most for keeping compressed copies
+     * of previous data files which can be requested by time.
+     *
+     * @return memory budget in megabytes; 0 disables the history
+     */
+    public int getHistoryMemoryBudgetMegabytes() {
+        return historyMemoryBudgetMegabytes.get();
+    }
+
+    /**
+     * Returns the directory to persist the last retrieved data to, so it can be
+     * served immediately after a restart.
+     *
+     * @return warm-start cache directory; empty if disabled
+     */
+    public Optional<File> getWarmStartCacheDirectory() {
+        return Optional.ofNullable(warmStartCacheDirectory.get());
+    }
+
+    public boolean isMetricsEnabled() {
+        return isMetricsEnabled.get();
+    }
+
+    /**
+     * Returns the IP addresses or CIDR ranges allowed to request metrics. This
+     * applies in addition to the general IP filter.
+     *
+     * @return IP addresses or CIDR ranges allowed to request metrics
+     */
+    public Set<String> getMetricsAllowedIps() {
+        synchronized (metricsAllowedIps) {
+            return new HashSet<>(metricsAllowedIps);
+        }
+    }
+
     public boolean isOnlineTransceiversOverrideEnabled() {
         return isOnlineTransceiversOverrideEnabled.get();
     }
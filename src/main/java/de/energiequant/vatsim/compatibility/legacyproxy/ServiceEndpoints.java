@@ -4,4 +4,7 @@ public class ServiceEndpoints {
     public static final String NETWORK_INFORMATION_LEGACY = "/status.txt";
     public static final String NETWORK_INFORMATION_JSON = "/status.json";
     public static final String DATA_FILE_LEGACY = "/vatsim-data.txt";
+    public static final String DATA_FILE_DELTA = "/vatsim-data.delta";
+    public static final String DATA_FILE_EVENTS = "/events";
+    public static final String METRICS = "/metrics";
 }
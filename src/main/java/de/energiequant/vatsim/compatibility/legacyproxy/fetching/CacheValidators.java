@@ -0,0 +1,78 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.fetching;
+
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.core5.http.HttpHeaders;
+
+/**
+ * Validators (<code>ETag</code> and <code>Last-Modified</code>) indicated by
+ * upstream for a previously retrieved URL. Passed to
+ * {@link UpstreamClient#getIfModified(String, CacheValidators)} to have
+ * upstream respond with <code>304 Not Modified</code> instead of the full body
+ * if content has not changed since.
+ * <p>
+ * Validators are only applied to the URL they have been received for. Fetchers
+ * picking a random server on each request thus simply fall back to
+ * unconditional requests whenever the URL changes.
+ * </p>
+ */
+public class CacheValidators {
+    public static final CacheValidators NONE = new CacheValidators(null, null, null);
+
+    private final String url;
+    private final String entityTag;
+    private final String lastModified;
+
+    private CacheValidators(String url, String entityTag, String lastModified) {
+        this.url = url;
+        this.entityTag = entityTag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Collects the validators indicated by the given response.
+     *
+     * @param url      URL the response has been received for
+     * @param response response to collect validators from
+     * @return validators indicated by upstream, {@link #NONE} if upstream did not indicate any
+     */
+    public static CacheValidators from(String url, UpstreamResponse response) {
+        String entityTag = response.getFirstHeaderValue(HttpHeaders.ETAG).orElse(null);
+        String lastModified = response.getFirstHeaderValue(HttpHeaders.LAST_MODIFIED).orElse(null);
+
+        if ((entityTag == null) && (lastModified == null)) {
+            return NONE;
+        }
+
+        return new CacheValidators(url, entityTag, lastModified);
+    }
+
+    /**
+     * Checks if any validator is available to be sent for the given URL.
+     *
+     * @param url URL about to be requested
+     * @return <code>true</code> if a conditional request can be made, <code>false</code> if not
+     */
+    public boolean isApplicableTo(String url) {
+        return (this.url != null) && this.url.equals(url);
+    }
+
+    void applyTo(String url, SimpleRequestBuilder builder) {
+        if (!isApplicableTo(url)) {
+            return;
+        }
+
+        // ETag takes precedence on server side if both are sent (RFC 7232 section 6)
+        if (entityTag != null) {
+            builder.setHeader(HttpHeaders.IF_NONE_MATCH, entityTag);
+        }
+
+        if (lastModified != null) {
+            builder.setHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CacheValidators(url=" + url + ", entityTag=" + entityTag + ", lastModified=" + lastModified + ")";
+    }
+}
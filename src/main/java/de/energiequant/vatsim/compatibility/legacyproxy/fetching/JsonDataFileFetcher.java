@@ -0,0 +1,175 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.fetching;
+
+import static de.energiequant.vatsim.compatibility.legacyproxy.utils.ParserLogHelper.logParserMessages;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vatplanner.dataformats.vatsimpublic.parser.DataFile;
+import org.vatplanner.dataformats.vatsimpublic.parser.Parser;
+
+import de.energiequant.vatsim.compatibility.legacyproxy.Main;
+import de.energiequant.vatsim.compatibility.legacyproxy.metrics.Metrics;
+
+/**
+ * Periodically fetches the upstream {@link DataFile} (JSON format) and passes
+ * each newly retrieved file to all registered listeners exactly once.
+ * {@link #markRequested()} should be called whenever data is needed which will
+ * automatically {@link #start()} the fetcher if not already running. When not
+ * requested for the configured amount of time, fetching will {@link #stop()}
+ * automatically until data is requested the next time.
+ * <p>
+ * The update interval is supplied externally as upstream announces the minimum
+ * retrieval interval on the data file itself. Every announced interval is
+ * forwarded to the given consumer.
+ * </p>
+ * <p>
+ * Data files are requested with compressed transfer and parsed while they are
+ * still being received, decompressing them on the fly. Neither the compressed
+ * nor the decoded body is held in memory as a whole.
+ * </p>
+ */
+public class JsonDataFileFetcher extends PeriodicRunnable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JsonDataFileFetcher.class);
+
+    private final Supplier<String> urlSupplier;
+    private final Supplier<Duration> updateIntervalSupplier;
+    private final Consumer<Duration> authoritativeMinimumDataUpdateIntervalConsumer;
+    private final Duration retryInterval;
+    private final Duration idleTimeout;
+    private final AtomicReference<Instant> lastRequested = new AtomicReference<>(Instant.now());
+    private final Parser<DataFile> parser;
+    private final UpstreamClient upstreamClient;
+    private final boolean isParserLogEnabled = Main.getConfiguration().isParserLogEnabled();
+
+    private final Set<Consumer<DataFile>> listeners = Collections.synchronizedSet(new HashSet<>());
+
+    private static final Charset FALLBACK_CHARACTER_SET = StandardCharsets.UTF_8;
+
+    public JsonDataFileFetcher(Parser<DataFile> parser, Supplier<String> urlSupplier, Supplier<Duration> updateIntervalSupplier, Consumer<Duration> authoritativeMinimumDataUpdateIntervalConsumer, Duration retryInterval, Duration idleTimeout, UpstreamClient upstreamClient) {
+        this.parser = parser;
+        this.urlSupplier = urlSupplier;
+        this.updateIntervalSupplier = updateIntervalSupplier;
+        this.authoritativeMinimumDataUpdateIntervalConsumer = authoritativeMinimumDataUpdateIntervalConsumer;
+        this.retryInterval = retryInterval;
+        this.idleTimeout = idleTimeout;
+        this.upstreamClient = upstreamClient;
+    }
+
+    @Override
+    protected Duration onPeriodicWakeup() {
+        boolean isIdleTimeoutExceeded = Instant.now().isAfter(lastRequested.get().plus(idleTimeout));
+        if (isIdleTimeoutExceeded) {
+            LOGGER.info(
+                "Stopping periodic retrieval of data files as no such data has been needed for {} minutes",
+                Duration.between(lastRequested.get(), Instant.now()).toMinutes()
+            );
+
+            stop();
+            return retryInterval;
+        }
+
+        String url = urlSupplier.get();
+        if (url == null) {
+            LOGGER.warn("No upstream JSON URL is available, will retry in {}", retryInterval);
+            return retryInterval;
+        }
+
+        DataFile dataFile = null;
+        long startNanos = System.nanoTime();
+        try {
+            LOGGER.debug("Retrieving JSON data file from {}", url);
+            try (
+                StreamedUpstreamResponse response = upstreamClient.getStreamed(url).get();
+                Reader reader = response.openBodyReader(FALLBACK_CHARACTER_SET)
+            ) {
+                dataFile = parser.deserialize(reader);
+                Metrics.UPSTREAM_RECEIVED_BYTES.labels(Metrics.FETCHER_JSON_DATA_FILE).add(response.getReceivedBytes());
+            }
+            Metrics.UPSTREAM_FETCH_DURATION.labels(Metrics.FETCHER_JSON_DATA_FILE).observeSince(startNanos);
+        } catch (InterruptedException | ExecutionException | IOException | RuntimeException ex) {
+            Metrics.UPSTREAM_FETCH_FAILURES.labels(Metrics.FETCHER_JSON_DATA_FILE).inc();
+            LOGGER.warn("Failed to retrieve JSON data file from {}, will retry in {}", url, retryInterval, ex);
+            return retryInterval;
+        }
+
+        if (isParserLogEnabled) {
+            logParserMessages(LOGGER, url, dataFile);
+        }
+
+        Duration minimumDataFileRetrievalInterval = dataFile.getMetaData().getMinimumDataFileRetrievalInterval();
+        if (minimumDataFileRetrievalInterval != null) {
+            authoritativeMinimumDataUpdateIntervalConsumer.accept(minimumDataFileRetrievalInterval);
+        }
+
+        notifyListeners(dataFile);
+
+        Duration updateInterval = updateIntervalSupplier.get();
+        LOGGER.debug("Data file update successful, will update again in {}", updateInterval);
+        return updateInterval;
+    }
+
+    private void notifyListeners(DataFile dataFile) {
+        Collection<Consumer<DataFile>> copy = new ArrayList<>(listeners);
+        for (Consumer<DataFile> listener : copy) {
+            try {
+                listener.accept(dataFile);
+            } catch (Exception ex) {
+                LOGGER.warn("Failed to notify data file listener", ex);
+            }
+        }
+    }
+
+    /**
+     * Registers a listener to be called with every newly retrieved
+     * {@link DataFile}. Listeners are called on the fetcher's thread.
+     *
+     * @param listener will be called with every newly retrieved {@link DataFile}
+     */
+    public void addListener(Consumer<DataFile> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener previously added by {@link #addListener(Consumer)}.
+     *
+     * @param listener listener to remove
+     */
+    public void removeListener(Consumer<DataFile> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Indicates that data is currently needed. Starts the fetcher if it is not
+     * running yet and defers the idle timeout.
+     */
+    public void markRequested() {
+        lastRequested.set(Instant.now());
+
+        if (!isAlive()) {
+            LOGGER.debug("Data file fetcher is not running yet, starting...");
+            start();
+        }
+    }
+
+    @Override
+    public void start() {
+        LOGGER.info("Starting periodic retrieval of data files");
+        super.start();
+    }
+}
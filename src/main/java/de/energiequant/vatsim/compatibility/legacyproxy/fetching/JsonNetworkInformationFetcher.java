@@ -3,7 +3,12 @@ package de.energiequant.vatsim.compatibility.legacyproxy.fetching;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -12,20 +17,23 @@ import org.slf4j.LoggerFactory;
 import org.vatplanner.dataformats.vatsimpublic.parser.NetworkInformation;
 import org.vatplanner.dataformats.vatsimpublic.parser.json.NetworkInformationProcessor;
 
-import de.energiequant.common.webdataretrieval.DefaultHttpRetrievalDecoders;
-import de.energiequant.common.webdataretrieval.HttpPromiseBuilder;
-import de.energiequant.common.webdataretrieval.HttpRetrieval;
-import de.energiequant.vatsim.compatibility.legacyproxy.AppConstants;
+import de.energiequant.vatsim.compatibility.legacyproxy.metrics.Metrics;
 
 /**
  * Periodically fetches {@link NetworkInformation} as provided in JSON format.
  * {@link #start()} must be called once. {@link #stop()} should be called when
  * the application shuts down. Already retrieved information is available
- * through {@link #getLastFetchedNetworkInformation()}.
+ * through {@link #getLastFetchedNetworkInformation()}. Listeners can be
+ * registered to be notified of updates.
  * <p>
  * The JSON file may not contain all information to construct a legacy
  * {@link NetworkInformation} as it appears to be missing some fields.
  * </p>
+ * <p>
+ * Requests are conditional to the validators of the last response; if upstream
+ * indicates that nothing has changed, the last information remains in use and
+ * listeners are not notified.
+ * </p>
  */
 public class JsonNetworkInformationFetcher extends PeriodicRunnable {
     private static final Logger LOGGER = LoggerFactory.getLogger(JsonNetworkInformationFetcher.class);
@@ -33,41 +41,50 @@ public class JsonNetworkInformationFetcher extends PeriodicRunnable {
     private final String url;
     private final Duration updateInterval;
     private final Duration retryInterval;
-    private final HttpPromiseBuilder<NetworkInformation> httpPromiseBuilder;
+    private final UpstreamClient upstreamClient;
+    private final NetworkInformationProcessor processor = new NetworkInformationProcessor();
 
     private final AtomicReference<NetworkInformation> lastNetworkInformation = new AtomicReference<>(null);
+    private final AtomicReference<CacheValidators> lastValidators = new AtomicReference<>(CacheValidators.NONE);
+    private final Set<Runnable> updateListeners = Collections.synchronizedSet(new HashSet<>());
 
     private static final Charset FALLBACK_CHARACTER_SET = StandardCharsets.UTF_8;
 
-    public JsonNetworkInformationFetcher(String url, Duration updateInterval, Duration retryInterval) {
+    public JsonNetworkInformationFetcher(String url, Duration updateInterval, Duration retryInterval, UpstreamClient upstreamClient) {
         this.url = url;
         this.updateInterval = updateInterval;
         this.retryInterval = retryInterval;
-
-        NetworkInformationProcessor processor = new NetworkInformationProcessor();
-
-        DefaultHttpRetrievalDecoders decoders = new DefaultHttpRetrievalDecoders();
-        httpPromiseBuilder = new HttpPromiseBuilder<>(
-            decoders.bodyAsStringWithHeaderCharacterSet(FALLBACK_CHARACTER_SET)
-                    .andThen(processor::deserialize)
-        ).withConfiguration(
-            new HttpRetrieval()
-                .setUserAgent(AppConstants.USER_AGENT)
-                .setTimeout(AppConstants.EXTERNAL_REQUEST_TIMEOUT)
-        );
+        this.upstreamClient = upstreamClient;
     }
 
     @Override
     protected Duration onPeriodicWakeup() {
         NetworkInformation networkInformation = null;
+        long startNanos = System.nanoTime();
         try {
-            networkInformation = httpPromiseBuilder.requestByGet(url).get();
-        } catch (InterruptedException | ExecutionException ex) {
+            // a conditional request only makes sense if there is something to keep using
+            CacheValidators validators = (lastNetworkInformation.get() != null) ? lastValidators.get() : CacheValidators.NONE;
+            UpstreamResponse response = upstreamClient.getIfModified(url, validators).get();
+            Metrics.UPSTREAM_RECEIVED_BYTES.labels(Metrics.FETCHER_JSON_NETWORK_INFORMATION).add(response.getBody().length);
+
+            if (response.isNotModified()) {
+                Metrics.UPSTREAM_FETCH_DURATION.labels(Metrics.FETCHER_JSON_NETWORK_INFORMATION).observeSince(startNanos);
+                Metrics.UPSTREAM_NOT_MODIFIED.labels(Metrics.FETCHER_JSON_NETWORK_INFORMATION).inc();
+                LOGGER.debug("JSON Network Information has not been modified, will update again in {}", updateInterval);
+                return updateInterval;
+            }
+
+            networkInformation = processor.deserialize(response.getBodyAsString(FALLBACK_CHARACTER_SET));
+            Metrics.UPSTREAM_FETCH_DURATION.labels(Metrics.FETCHER_JSON_NETWORK_INFORMATION).observeSince(startNanos);
+            lastValidators.set(CacheValidators.from(url, response));
+        } catch (InterruptedException | ExecutionException | RuntimeException ex) {
+            Metrics.UPSTREAM_FETCH_FAILURES.labels(Metrics.FETCHER_JSON_NETWORK_INFORMATION).inc();
             LOGGER.warn("JSON Network Information update failed, will retry in {}", retryInterval, ex);
             return retryInterval;
         }
 
         lastNetworkInformation.set(networkInformation);
+        notifyUpdateListeners();
 
         LOGGER.debug("JSON Network Information update successful, will update again in {}", updateInterval);
         return updateInterval;
@@ -81,4 +98,29 @@ public class JsonNetworkInformationFetcher extends PeriodicRunnable {
     public Optional<NetworkInformation> getLastFetchedNetworkInformation() {
         return Optional.ofNullable(lastNetworkInformation.get());
     }
+
+    /**
+     * Adds a listener to be notified each time new {@link NetworkInformation} has
+     * been retrieved successfully. Listeners are called from the fetcher thread.
+     *
+     * @param listener listener to add
+     */
+    public void addUpdateListener(Runnable listener) {
+        updateListeners.add(listener);
+    }
+
+    public void removeUpdateListener(Runnable listener) {
+        updateListeners.remove(listener);
+    }
+
+    private void notifyUpdateListeners() {
+        Collection<Runnable> copy = new ArrayList<>(updateListeners);
+        for (Runnable listener : copy) {
+            try {
+                listener.run();
+            } catch (Exception ex) {
+                LOGGER.warn("Failed to notify network information update listener", ex);
+            }
+        }
+    }
 }
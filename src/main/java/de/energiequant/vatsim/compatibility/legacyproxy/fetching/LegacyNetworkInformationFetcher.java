@@ -5,9 +5,14 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -16,17 +21,22 @@ import org.slf4j.LoggerFactory;
 import org.vatplanner.dataformats.vatsimpublic.parser.NetworkInformation;
 import org.vatplanner.dataformats.vatsimpublic.parser.legacy.NetworkInformationParser;
 
-import de.energiequant.common.webdataretrieval.DefaultHttpRetrievalDecoders;
-import de.energiequant.common.webdataretrieval.HttpPromiseBuilder;
-import de.energiequant.common.webdataretrieval.HttpRetrieval;
-import de.energiequant.vatsim.compatibility.legacyproxy.AppConstants;
+import de.energiequant.vatsim.compatibility.legacyproxy.metrics.Metrics;
 
 /**
  * Periodically fetches {@link NetworkInformation} as provided in legacy format.
  * {@link #start()} must be called once. {@link #stop()} should be called when
  * the application shuts down. Already retrieved information is available
  * through {@link #getLastFetchedNetworkInformation()} and
- * {@link #getLastAggregatedStartupMessages()}.
+ * {@link #getLastAggregatedStartupMessages()}. Listeners can be registered to
+ * be notified of updates.
+ * <p>
+ * Validators and parsed information are remembered per URL so every request,
+ * including those following {@link NetworkInformation#getMovedToUrls()}, is
+ * made conditionally. If upstream indicates that nothing has changed along the
+ * whole chain, the last information remains in use and listeners are not
+ * notified.
+ * </p>
  */
 public class LegacyNetworkInformationFetcher extends PeriodicRunnable {
     private static final Logger LOGGER = LoggerFactory.getLogger(LegacyNetworkInformationFetcher.class);
@@ -34,52 +44,75 @@ public class LegacyNetworkInformationFetcher extends PeriodicRunnable {
     private final String initialUrl;
     private final Duration updateInterval;
     private final Duration retryInterval;
-    private final HttpPromiseBuilder<NetworkInformation> httpPromiseBuilder;
+    private final UpstreamClient upstreamClient;
+    private final Map<String, RetrievedNetworkInformation> retrievedByUrl = new ConcurrentHashMap<>();
 
     private final AtomicReference<NetworkInformation> lastNetworkInformation = new AtomicReference<>(null);
     private final AtomicReference<List<String>> lastStartupMessages = new AtomicReference<>(new ArrayList<>());
+    private final Set<Runnable> updateListeners = Collections.synchronizedSet(new HashSet<>());
 
     private static final Charset FALLBACK_CHARACTER_SET = StandardCharsets.ISO_8859_1;
 
     private static final int MAXIMUM_MOVED_TO_REDIRECTS = 10;
 
-    public LegacyNetworkInformationFetcher(String initialUrl, Duration updateInterval, Duration retryInterval) {
+    private static class RetrievedNetworkInformation {
+        private final CacheValidators validators;
+        private final NetworkInformation networkInformation;
+
+        private RetrievedNetworkInformation(CacheValidators validators, NetworkInformation networkInformation) {
+            this.validators = validators;
+            this.networkInformation = networkInformation;
+        }
+    }
+
+    public LegacyNetworkInformationFetcher(String initialUrl, Duration updateInterval, Duration retryInterval, UpstreamClient upstreamClient) {
         this.initialUrl = initialUrl;
         this.updateInterval = updateInterval;
         this.retryInterval = retryInterval;
-
-        DefaultHttpRetrievalDecoders decoders = new DefaultHttpRetrievalDecoders();
-        httpPromiseBuilder = new HttpPromiseBuilder<>(
-            decoders.bodyAsStringWithHeaderCharacterSet(FALLBACK_CHARACTER_SET)
-                    .andThen(NetworkInformationParser::parse)
-        ).withConfiguration(
-            new HttpRetrieval()
-                .setUserAgent(AppConstants.USER_AGENT)
-                .setTimeout(AppConstants.EXTERNAL_REQUEST_TIMEOUT)
-        );
+        this.upstreamClient = upstreamClient;
     }
 
     @Override
     protected Duration onPeriodicWakeup() {
         String url = initialUrl;
         NetworkInformation networkInformation = null;
+        boolean isModified = false;
 
         List<String> allStartupMessages = new ArrayList<String>();
 
         for (int i = 0; i <= MAXIMUM_MOVED_TO_REDIRECTS; i++) {
             LOGGER.debug("Updating legacy network information from {} in iteration {}", url, i);
 
+            RetrievedNetworkInformation previous = retrievedByUrl.get(url);
+            CacheValidators validators = (previous != null) ? previous.validators : CacheValidators.NONE;
+
+            long startNanos = System.nanoTime();
+            boolean isNotModified;
             try {
-                networkInformation = httpPromiseBuilder.requestByGet(url).get();
-            } catch (InterruptedException | ExecutionException ex) {
+                UpstreamResponse response = upstreamClient.getIfModified(url, validators).get();
+                Metrics.UPSTREAM_RECEIVED_BYTES.labels(Metrics.FETCHER_LEGACY_NETWORK_INFORMATION).add(response.getBody().length);
+                isNotModified = response.isNotModified();
+                if (isNotModified) {
+                    Metrics.UPSTREAM_NOT_MODIFIED.labels(Metrics.FETCHER_LEGACY_NETWORK_INFORMATION).inc();
+                    networkInformation = previous.networkInformation;
+                } else {
+                    networkInformation = NetworkInformationParser.parse(response.getBodyAsString(FALLBACK_CHARACTER_SET));
+                    retrievedByUrl.put(url, new RetrievedNetworkInformation(CacheValidators.from(url, response), networkInformation));
+                    isModified = true;
+                }
+                Metrics.UPSTREAM_FETCH_DURATION.labels(Metrics.FETCHER_LEGACY_NETWORK_INFORMATION).observeSince(startNanos);
+            } catch (InterruptedException | ExecutionException | RuntimeException ex) {
+                Metrics.UPSTREAM_FETCH_FAILURES.labels(Metrics.FETCHER_LEGACY_NETWORK_INFORMATION).inc();
                 LOGGER.warn("Error while fetching legacy network information from {} in iteration {}", url, i, ex);
                 networkInformation = null;
                 break;
             }
 
             List<String> startupMessages = networkInformation.getStartupMessages();
-            for (String msg : startupMessages) {
-                LOGGER.info("Startup message: {}", msg);
+            if (!isNotModified) {
+                for (String msg : startupMessages) {
+                    LOGGER.info("Startup message: {}", msg);
+                }
             }
             allStartupMessages.addAll(startupMessages);
 
@@ -101,9 +134,15 @@ public class LegacyNetworkInformationFetcher extends PeriodicRunnable {
             networkInformation = null;
         }
 
+        if ((networkInformation != null) && !isModified && (networkInformation == lastNetworkInformation.get())) {
+            LOGGER.debug("Legacy Network Information has not been modified, will update again in {}", updateInterval);
+            return updateInterval;
+        }
+
         if (networkInformation != null) {
             lastNetworkInformation.set(networkInformation);
             lastStartupMessages.set(Collections.unmodifiableList(allStartupMessages));
+            notifyUpdateListeners();
 
             LOGGER.debug("Legacy Network Information update successful, will update again in {}", updateInterval);
             return updateInterval;
@@ -135,4 +174,29 @@ public class LegacyNetworkInformationFetcher extends PeriodicRunnable {
     public Optional<List<String>> getLastAggregatedStartupMessages() {
         return Optional.ofNullable(lastStartupMessages.get());
     }
+
+    /**
+     * Adds a listener to be notified each time new {@link NetworkInformation} has
+     * been retrieved successfully. Listeners are called from the fetcher thread.
+     *
+     * @param listener listener to add
+     */
+    public void addUpdateListener(Runnable listener) {
+        updateListeners.add(listener);
+    }
+
+    public void removeUpdateListener(Runnable listener) {
+        updateListeners.remove(listener);
+    }
+
+    private void notifyUpdateListeners() {
+        Collection<Runnable> copy = new ArrayList<>(updateListeners);
+        for (Runnable listener : copy) {
+            try {
+                listener.run();
+            } catch (Exception ex) {
+                LOGGER.warn("Failed to notify network information update listener", ex);
+            }
+        }
+    }
 }
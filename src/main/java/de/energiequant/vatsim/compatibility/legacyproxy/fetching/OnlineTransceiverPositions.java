@@ -0,0 +1,134 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.fetching;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Transceiver positions of all stations listed on the online transceivers file
+ * in a compact, columnar layout. Only callsigns and coordinates are retained;
+ * all other information provided by upstream is dropped while reading the file
+ * (see {@link OnlineTransceiversExtractor}).
+ * <p>
+ * Stations are addressed by index in order of the file. A callsign may be
+ * listed multiple times, so {@link #getStationIndexes(String)} may return more
+ * than one station. Transceivers of station <code>i</code> are stored at
+ * indexes <code>offsets[i]</code> (inclusive) to <code>offsets[i+1]</code>
+ * (exclusive) of the coordinate arrays.
+ * </p>
+ * <p>
+ * Instances are immutable.
+ * </p>
+ */
+public class OnlineTransceiverPositions {
+    private final String[] callsigns;
+    private final int[] offsets;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final int skippedTransceivers;
+
+    private final Map<String, Integer> firstStationIndexByCallsign;
+    private final int[] nextStationIndexWithSameCallsign;
+
+    private static final int NONE = -1;
+    private static final int[] EMPTY = new int[0];
+
+    OnlineTransceiverPositions(String[] callsigns, int[] offsets, double[] latitudes, double[] longitudes, int skippedTransceivers) {
+        if (offsets.length != callsigns.length + 1) {
+            throw new IllegalArgumentException(
+                "offsets must have one more entry than callsigns; callsigns " + callsigns.length
+                    + ", offsets " + offsets.length
+            );
+        }
+
+        if (latitudes.length != longitudes.length || offsets[callsigns.length] != latitudes.length) {
+            throw new IllegalArgumentException("coordinate arrays do not match offsets");
+        }
+
+        this.callsigns = callsigns;
+        this.offsets = offsets;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.skippedTransceivers = skippedTransceivers;
+
+        // chain all stations of same callsign, iterating backwards so chains follow file order
+        firstStationIndexByCallsign = new HashMap<>(callsigns.length * 4 / 3 + 1);
+        nextStationIndexWithSameCallsign = new int[callsigns.length];
+        for (int i = callsigns.length - 1; i >= 0; i--) {
+            Integer next = firstStationIndexByCallsign.put(callsigns[i], i);
+            nextStationIndexWithSameCallsign[i] = (next != null) ? next : NONE;
+        }
+    }
+
+    /**
+     * Returns the number of stations listed on the file, including duplicate
+     * callsigns.
+     *
+     * @return number of stations
+     */
+    public int getStationCount() {
+        return callsigns.length;
+    }
+
+    /**
+     * Returns the indexes of all stations listed for the given callsign in order
+     * of the file.
+     *
+     * @param callsign callsign to look up
+     * @return indexes of all stations listed for the callsign; empty if not listed
+     */
+    public int[] getStationIndexes(String callsign) {
+        Integer first = firstStationIndexByCallsign.get(callsign);
+        if (first == null) {
+            return EMPTY;
+        }
+
+        int count = 0;
+        for (int i = first; i != NONE; i = nextStationIndexWithSameCallsign[i]) {
+            count++;
+        }
+
+        int[] out = new int[count];
+        int j = 0;
+        for (int i = first; i != NONE; i = nextStationIndexWithSameCallsign[i]) {
+            out[j++] = i;
+        }
+
+        return out;
+    }
+
+    public String getCallsign(int stationIndex) {
+        return callsigns[stationIndex];
+    }
+
+    public int getTransceiverCount(int stationIndex) {
+        return offsets[stationIndex + 1] - offsets[stationIndex];
+    }
+
+    public double getLatitude(int stationIndex, int transceiverIndex) {
+        return latitudes[coordinateIndex(stationIndex, transceiverIndex)];
+    }
+
+    public double getLongitude(int stationIndex, int transceiverIndex) {
+        return longitudes[coordinateIndex(stationIndex, transceiverIndex)];
+    }
+
+    private int coordinateIndex(int stationIndex, int transceiverIndex) {
+        if (transceiverIndex < 0 || transceiverIndex >= getTransceiverCount(stationIndex)) {
+            throw new IndexOutOfBoundsException(
+                "station " + stationIndex + " has no transceiver " + transceiverIndex
+            );
+        }
+
+        return offsets[stationIndex] + transceiverIndex;
+    }
+
+    /**
+     * Returns the number of transceivers which had to be skipped while reading
+     * the file because their position was incomplete.
+     *
+     * @return number of skipped transceivers
+     */
+    public int getSkippedTransceiverCount() {
+        return skippedTransceivers;
+    }
+}
@@ -0,0 +1,447 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.fetching;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Reads the online transceivers file (JSON) directly into
+ * {@link OnlineTransceiverPositions}. Only callsigns and transceiver
+ * coordinates are extracted, everything else is skipped while scanning without
+ * building any intermediate object graph.
+ * <p>
+ * The expected structure is an array of stations, each holding a
+ * <code>callsign</code> and an array of <code>transceivers</code> with
+ * <code>latDeg</code> and <code>lonDeg</code>. Unknown attributes are ignored
+ * regardless of their type. Stations without callsign and transceivers without
+ * complete position are skipped; syntactically malformed JSON fails the whole
+ * file.
+ * </p>
+ * <p>
+ * Instances are stateless and can be shared between threads.
+ * </p>
+ */
+class OnlineTransceiversExtractor {
+    private static final int BUFFER_SIZE = 8192;
+    private static final int INITIAL_STATION_CAPACITY = 1024;
+    private static final int INITIAL_TRANSCEIVER_CAPACITY = 2048;
+    private static final int MAX_SKIPPED_NESTING_DEPTH = 32;
+
+    private static final String KEY_CALLSIGN = "callsign";
+    private static final String KEY_TRANSCEIVERS = "transceivers";
+    private static final String KEY_LATITUDE = "latDeg";
+    private static final String KEY_LONGITUDE = "lonDeg";
+
+    /**
+     * Reads the given file. The reader is consumed but not closed.
+     *
+     * @param reader provides the JSON content
+     * @return extracted positions
+     * @throws IOException if reading fails or the content is malformed
+     */
+    OnlineTransceiverPositions extract(Reader reader) throws IOException {
+        return new Extraction(reader).run();
+    }
+
+    private static class Extraction {
+        private final Reader reader;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private int position = 0;
+        private int limit = 0;
+        private long consumedBeforeBuffer = 0;
+
+        private final StringBuilder sb = new StringBuilder();
+
+        private String[] callsigns = new String[INITIAL_STATION_CAPACITY];
+        private int[] offsets = new int[INITIAL_STATION_CAPACITY + 1];
+        private double[] latitudes = new double[INITIAL_TRANSCEIVER_CAPACITY];
+        private double[] longitudes = new double[INITIAL_TRANSCEIVER_CAPACITY];
+        private int stationCount = 0;
+        private int transceiverCount = 0;
+        private int skippedTransceivers = 0;
+
+        private Extraction(Reader reader) {
+            this.reader = reader;
+        }
+
+        private OnlineTransceiverPositions run() throws IOException {
+            expect('[');
+            if (peekNonWhitespace() == ']') {
+                read();
+            } else {
+                do {
+                    readStation();
+                } while (expectEither(',', ']') == ',');
+            }
+
+            int trailing = nextNonWhitespace();
+            if (trailing >= 0) {
+                throw malformed("end of content", trailing);
+            }
+
+            return new OnlineTransceiverPositions(
+                Arrays.copyOf(callsigns, stationCount),
+                Arrays.copyOf(offsets, stationCount + 1),
+                Arrays.copyOf(latitudes, transceiverCount),
+                Arrays.copyOf(longitudes, transceiverCount),
+                skippedTransceivers
+            );
+        }
+
+        private void readStation() throws IOException {
+            if (peekNonWhitespace() != '{') {
+                skipValue(0);
+                return;
+            }
+
+            read();
+
+            String callsign = null;
+            int firstTransceiver = transceiverCount;
+
+            if (peekNonWhitespace() == '}') {
+                read();
+            } else {
+                do {
+                    readKey();
+                    if (isKey(KEY_CALLSIGN) && (peekNonWhitespace() == '"')) {
+                        read();
+                        readStringContent();
+                        callsign = sb.toString();
+                    } else if (isKey(KEY_TRANSCEIVERS) && (peekNonWhitespace() == '[')) {
+                        readTransceivers();
+                    } else {
+                        skipValue(0);
+                    }
+                } while (expectEither(',', '}') == ',');
+            }
+
+            if (callsign == null) {
+                skippedTransceivers += transceiverCount - firstTransceiver;
+                transceiverCount = firstTransceiver;
+                return;
+            }
+
+            if (stationCount == callsigns.length) {
+                int capacity = callsigns.length * 2;
+                callsigns = Arrays.copyOf(callsigns, capacity);
+                offsets = Arrays.copyOf(offsets, capacity + 1);
+            }
+
+            callsigns[stationCount] = callsign;
+            stationCount++;
+            offsets[stationCount] = transceiverCount;
+        }
+
+        private void readTransceivers() throws IOException {
+            expect('[');
+            if (peekNonWhitespace() == ']') {
+                read();
+                return;
+            }
+
+            do {
+                readTransceiver();
+            } while (expectEither(',', ']') == ',');
+        }
+
+        private void readTransceiver() throws IOException {
+            if (peekNonWhitespace() != '{') {
+                skipValue(0);
+                skippedTransceivers++;
+                return;
+            }
+
+            read();
+
+            double latitude = Double.NaN;
+            double longitude = Double.NaN;
+
+            if (peekNonWhitespace() == '}') {
+                read();
+            } else {
+                do {
+                    readKey();
+                    if (isKey(KEY_LATITUDE)) {
+                        latitude = readNumberOrSkip();
+                    } else if (isKey(KEY_LONGITUDE)) {
+                        longitude = readNumberOrSkip();
+                    } else {
+                        skipValue(0);
+                    }
+                } while (expectEither(',', '}') == ',');
+            }
+
+            if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+                skippedTransceivers++;
+                return;
+            }
+
+            if (transceiverCount == latitudes.length) {
+                int capacity = latitudes.length * 2;
+                latitudes = Arrays.copyOf(latitudes, capacity);
+                longitudes = Arrays.copyOf(longitudes, capacity);
+            }
+
+            latitudes[transceiverCount] = latitude;
+            longitudes[transceiverCount] = longitude;
+            transceiverCount++;
+        }
+
+        /**
+         * Reads an object key including the following colon into {@link #sb}.
+         */
+        private void readKey() throws IOException {
+            expect('"');
+            readStringContent();
+            expect(':');
+        }
+
+        private boolean isKey(String expected) {
+            int length = expected.length();
+            if (sb.length() != length) {
+                return false;
+            }
+
+            for (int i = 0; i < length; i++) {
+                if (sb.charAt(i) != expected.charAt(i)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private double readNumberOrSkip() throws IOException {
+            int c = peekNonWhitespace();
+            if (c != '-' && (c < '0' || c > '9')) {
+                skipValue(0);
+                return Double.NaN;
+            }
+
+            readNumberContent();
+            try {
+                return Double.parseDouble(sb.toString());
+            } catch (NumberFormatException ex) {
+                throw new IOException("Malformed number \"" + sb + "\" in online transceivers file", ex);
+            }
+        }
+
+        /**
+         * Reads a number into {@link #sb}, starting at the current position.
+         */
+        private void readNumberContent() throws IOException {
+            sb.setLength(0);
+            while (true) {
+                int c = peek();
+                boolean isNumberCharacter = (c >= '0' && c <= '9')
+                    || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E';
+                if (!isNumberCharacter) {
+                    return;
+                }
+
+                sb.append((char) read());
+            }
+        }
+
+        /**
+         * Reads the remainder of a string (opening quote has already been consumed)
+         * into {@link #sb}, resolving all escape sequences.
+         */
+        private void readStringContent() throws IOException {
+            sb.setLength(0);
+            while (true) {
+                int c = read();
+                if (c == '"') {
+                    return;
+                } else if (c < 0) {
+                    throw malformed("end of string", c);
+                } else if (c != '\\') {
+                    sb.append((char) c);
+                    continue;
+                }
+
+                int escaped = read();
+                switch (escaped) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        sb.append((char) escaped);
+                        break;
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'u':
+                        sb.append(readUnicodeEscape());
+                        break;
+                    default:
+                        throw malformed("escape sequence", escaped);
+                }
+            }
+        }
+
+        private char readUnicodeEscape() throws IOException {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                int c = read();
+                int digit = Character.digit(c, 16);
+                if (c < 0 || digit < 0) {
+                    throw malformed("hexadecimal digit", c);
+                }
+                value = (value << 4) | digit;
+            }
+            return (char) value;
+        }
+
+        private void skipValue(int depth) throws IOException {
+            if (depth > MAX_SKIPPED_NESTING_DEPTH) {
+                throw new IOException("Online transceivers file is nested too deeply");
+            }
+
+            int c = nextNonWhitespace();
+            switch (c) {
+                case '"':
+                    readStringContent();
+                    break;
+
+                case '{':
+                    if (peekNonWhitespace() == '}') {
+                        read();
+                        break;
+                    }
+                    do {
+                        readKey();
+                        skipValue(depth + 1);
+                    } while (expectEither(',', '}') == ',');
+                    break;
+
+                case '[':
+                    if (peekNonWhitespace() == ']') {
+                        read();
+                        break;
+                    }
+                    do {
+                        skipValue(depth + 1);
+                    } while (expectEither(',', ']') == ',');
+                    break;
+
+                case 't':
+                    expectLiteral("rue");
+                    break;
+
+                case 'f':
+                    expectLiteral("alse");
+                    break;
+
+                case 'n':
+                    expectLiteral("ull");
+                    break;
+
+                default:
+                    if (c == '-' || (c >= '0' && c <= '9')) {
+                        readNumberContent();
+                        break;
+                    }
+                    throw malformed("value", c);
+            }
+        }
+
+        private void expectLiteral(String remainder) throws IOException {
+            for (int i = 0; i < remainder.length(); i++) {
+                int c = read();
+                if (c != remainder.charAt(i)) {
+                    throw malformed("'" + remainder.charAt(i) + "'", c);
+                }
+            }
+        }
+
+        private void expect(char expected) throws IOException {
+            int c = nextNonWhitespace();
+            if (c != expected) {
+                throw malformed("'" + expected + "'", c);
+            }
+        }
+
+        private int expectEither(char first, char second) throws IOException {
+            int c = nextNonWhitespace();
+            if (c != first && c != second) {
+                throw malformed("'" + first + "' or '" + second + "'", c);
+            }
+            return c;
+        }
+
+        private IOException malformed(String expected, int actual) {
+            long offset = consumedBeforeBuffer + position - 1;
+            String found = (actual < 0) ? "end of content" : "'" + (char) actual + "'";
+            return new IOException(
+                "Malformed online transceivers file: expected " + expected + " but found " + found
+                    + " at offset " + offset
+            );
+        }
+
+        private int nextNonWhitespace() throws IOException {
+            int c;
+            do {
+                c = read();
+            } while (isWhitespace(c));
+            return c;
+        }
+
+        private int peekNonWhitespace() throws IOException {
+            int c;
+            while (isWhitespace(c = peek())) {
+                position++;
+            }
+            return c;
+        }
+
+        private static boolean isWhitespace(int c) {
+            return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+        }
+
+        private int read() throws IOException {
+            int c = peek();
+            if (c >= 0) {
+                position++;
+            }
+            return c;
+        }
+
+        private int peek() throws IOException {
+            if (position >= limit && !fill()) {
+                return -1;
+            }
+            return buffer[position];
+        }
+
+        private boolean fill() throws IOException {
+            consumedBeforeBuffer += limit;
+            position = 0;
+            limit = 0;
+
+            int read;
+            do {
+                read = reader.read(buffer, 0, buffer.length);
+            } while (read == 0);
+
+            if (read < 0) {
+                return false;
+            }
+
+            limit = read;
+            return true;
+        }
+    }
+}
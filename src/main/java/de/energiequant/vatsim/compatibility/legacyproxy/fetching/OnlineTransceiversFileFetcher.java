@@ -1,31 +1,48 @@
 package de.energiequant.vatsim.compatibility.legacyproxy.fetching;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.vatplanner.dataformats.vatsimpublic.parser.OnlineTransceiversFile;
-import org.vatplanner.dataformats.vatsimpublic.parser.json.onlinetransceivers.OnlineTransceiversFileProcessor;
 
-import de.energiequant.common.webdataretrieval.DefaultHttpRetrievalDecoders;
-import de.energiequant.common.webdataretrieval.HttpPromiseBuilder;
-import de.energiequant.common.webdataretrieval.HttpRetrieval;
-import de.energiequant.vatsim.compatibility.legacyproxy.AppConstants;
+import de.energiequant.vatsim.compatibility.legacyproxy.metrics.Metrics;
 
 /**
- * Periodically fetches the {@link OnlineTransceiversFile}.
- * {@link #waitForOnlineTransceiversFile(Duration)} should be used to retrieve
- * the file which will automatically {@link #start()} the fetcher if not already
- * running. Further requests will be served from a periodically updated cache.
- * When not requested for the configured amount of time, fetching will
- * {@link #stop()} automatically until data is requested the next time.
+ * Periodically fetches the online transceivers file and extracts
+ * {@link OnlineTransceiverPositions} from it.
+ * {@link #requestOnlineTransceiverPositions()} should be used to retrieve the
+ * positions which will automatically {@link #start()} the fetcher if not already
+ * running. Further requests will be served from a periodically updated cache;
+ * consumers interested in every update can subscribe by
+ * {@link #addListener(Consumer)}. When not requested for the configured amount
+ * of time, fetching will {@link #stop()} automatically until data is requested
+ * the next time.
+ * <p>
+ * Requests are conditional to the validators of the last response; if upstream
+ * indicates that nothing has changed, the cached positions remain in use without
+ * notifying any listeners.
+ * </p>
+ * <p>
+ * Only transceiver positions are needed, so the file is read by
+ * {@link OnlineTransceiversExtractor} straight into a columnar structure
+ * instead of a full object model.
+ * </p>
  */
 public class OnlineTransceiversFileFetcher extends PeriodicRunnable {
     private static final Logger LOGGER = LoggerFactory.getLogger(OnlineTransceiversFileFetcher.class);
@@ -35,31 +52,26 @@ public class OnlineTransceiversFileFetcher extends PeriodicRunnable {
     private final Duration retryInterval;
     private final Duration idleTimeout;
     private final AtomicReference<Instant> lastRequested = new AtomicReference<>(Instant.now());
-    private final HttpPromiseBuilder<OnlineTransceiversFile> httpPromiseBuilder;
+    private final OnlineTransceiversExtractor extractor = new OnlineTransceiversExtractor();
+    private final UpstreamClient upstreamClient;
+    private final AtomicReference<CacheValidators> lastValidators = new AtomicReference<>(CacheValidators.NONE);
 
-    private final AtomicReference<OnlineTransceiversFile> lastFile = new AtomicReference<>(null);
+    private final Object positionsLock = new Object();
+    private OnlineTransceiverPositions lastPositions = null;
+    private OnlineTransceiverPositions restoredPositions = null;
+    private final List<CompletableFuture<OnlineTransceiverPositions>> pendingRequests = new ArrayList<>();
 
-    private static final Charset FALLBACK_CHARACTER_SET = StandardCharsets.UTF_8;
+    private final Set<Consumer<OnlineTransceiverPositions>> listeners = Collections.synchronizedSet(new HashSet<>());
+    private final Set<Consumer<UpstreamResponse>> rawResponseListeners = Collections.synchronizedSet(new HashSet<>());
 
-    private static final long WAIT_CHECK_INTERVAL_MILLIS = 100;
+    private static final Charset FALLBACK_CHARACTER_SET = StandardCharsets.UTF_8;
 
-    public OnlineTransceiversFileFetcher(Supplier<String> urlSupplier, Supplier<Duration> updateIntervalSupplier, Duration retryInterval, Duration idleTimeout) {
+    public OnlineTransceiversFileFetcher(Supplier<String> urlSupplier, Supplier<Duration> updateIntervalSupplier, Duration retryInterval, Duration idleTimeout, UpstreamClient upstreamClient) {
         this.urlSupplier = urlSupplier;
         this.updateIntervalSupplier = updateIntervalSupplier;
         this.retryInterval = retryInterval;
         this.idleTimeout = idleTimeout;
-
-        OnlineTransceiversFileProcessor processor = new OnlineTransceiversFileProcessor();
-
-        DefaultHttpRetrievalDecoders decoders = new DefaultHttpRetrievalDecoders();
-        httpPromiseBuilder = new HttpPromiseBuilder<>(
-            decoders.bodyAsStringWithHeaderCharacterSet(FALLBACK_CHARACTER_SET)
-                    .andThen(processor::deserialize)
-        ).withConfiguration(
-            new HttpRetrieval()
-                .setUserAgent(AppConstants.USER_AGENT)
-                .setTimeout(AppConstants.EXTERNAL_REQUEST_TIMEOUT)
-        );
+        this.upstreamClient = upstreamClient;
     }
 
     @Override
@@ -75,38 +87,171 @@ public class OnlineTransceiversFileFetcher extends PeriodicRunnable {
             return retryInterval;
         }
 
-        OnlineTransceiversFile file = null;
+        UpstreamResponse response;
+        String url;
+        long startNanos = System.nanoTime();
         try {
-            String url = urlSupplier.get();
+            url = urlSupplier.get();
             if (url == null) {
                 LOGGER.warn("No URL available, will retry in {}", retryInterval);
                 return retryInterval;
             }
 
-            file = httpPromiseBuilder.requestByGet(url).get();
+            // a conditional request only makes sense if there is something to keep using
+            boolean hasPositions;
+            synchronized (positionsLock) {
+                hasPositions = (lastPositions != null);
+            }
+
+            response = upstreamClient.getIfModified(url, hasPositions ? lastValidators.get() : CacheValidators.NONE).get();
+            Metrics.UPSTREAM_RECEIVED_BYTES.labels(Metrics.FETCHER_ONLINE_TRANSCEIVERS).add(response.getBody().length);
+            if (response.isNotModified()) {
+                Metrics.UPSTREAM_FETCH_DURATION.labels(Metrics.FETCHER_ONLINE_TRANSCEIVERS).observeSince(startNanos);
+                Metrics.UPSTREAM_NOT_MODIFIED.labels(Metrics.FETCHER_ONLINE_TRANSCEIVERS).inc();
+                Duration updateInterval = updateIntervalSupplier.get();
+                LOGGER.debug("Online transceivers have not been modified, will update again in {}", updateInterval);
+                return updateInterval;
+            }
         } catch (InterruptedException | ExecutionException ex) {
+            Metrics.UPSTREAM_FETCH_FAILURES.labels(Metrics.FETCHER_ONLINE_TRANSCEIVERS).inc();
             LOGGER.warn("Online transceivers update failed, will retry in {}", retryInterval, ex);
             return retryInterval;
         }
 
-        lastFile.set(file);
+        OnlineTransceiverPositions positions;
+        try (Reader reader = response.openBodyReader(FALLBACK_CHARACTER_SET)) {
+            positions = extractor.extract(reader);
+        } catch (IOException | RuntimeException ex) {
+            Metrics.UPSTREAM_FETCH_FAILURES.labels(Metrics.FETCHER_ONLINE_TRANSCEIVERS).inc();
+            LOGGER.warn("Online transceivers could not be parsed, will retry in {}", retryInterval, ex);
+            return retryInterval;
+        }
+        Metrics.UPSTREAM_FETCH_DURATION.labels(Metrics.FETCHER_ONLINE_TRANSCEIVERS).observeSince(startNanos);
+
+        lastValidators.set(CacheValidators.from(url, response));
+
+        Collection<CompletableFuture<OnlineTransceiverPositions>> waiting;
+        synchronized (positionsLock) {
+            lastPositions = positions;
+            restoredPositions = null;
+            waiting = new ArrayList<>(pendingRequests);
+            pendingRequests.clear();
+        }
+
+        for (CompletableFuture<OnlineTransceiverPositions> future : waiting) {
+            future.complete(positions);
+        }
+
+        notifyListeners(positions);
+        notifyRawResponseListeners(response);
 
         Duration updateInterval = updateIntervalSupplier.get();
         LOGGER.debug("Online transceivers update successful, will update again in {}", updateInterval);
         return updateInterval;
     }
 
-    private Optional<OnlineTransceiversFile> getLastFetchedFile() {
-        return Optional.ofNullable(lastFile.get());
+    private void notifyListeners(OnlineTransceiverPositions positions) {
+        Collection<Consumer<OnlineTransceiverPositions>> copy = new ArrayList<>(listeners);
+        for (Consumer<OnlineTransceiverPositions> listener : copy) {
+            try {
+                listener.accept(positions);
+            } catch (Exception ex) {
+                LOGGER.warn("Failed to notify online transceivers listener", ex);
+            }
+        }
+    }
+
+    private void notifyRawResponseListeners(UpstreamResponse response) {
+        Collection<Consumer<UpstreamResponse>> copy = new ArrayList<>(rawResponseListeners);
+        for (Consumer<UpstreamResponse> listener : copy) {
+            try {
+                listener.accept(response);
+            } catch (Exception ex) {
+                LOGGER.warn("Failed to notify online transceivers listener", ex);
+            }
+        }
     }
 
     /**
-     * Waits blocking for data to become available or the timeout has been reached.
+     * Registers a listener to be called with {@link OnlineTransceiverPositions}
+     * of every newly retrieved file. Listeners are called on the fetcher's
+     * thread. Restored files are not announced to listeners.
      *
-     * @param timeout how long to wait before giving up
-     * @return {@link OnlineTransceiversFile} as last retrieved, empty if unavailable after timeout
+     * @param listener will be called with positions of every newly retrieved file
      */
-    public Optional<OnlineTransceiversFile> waitForOnlineTransceiversFile(Duration timeout) {
+    public void addListener(Consumer<OnlineTransceiverPositions> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener previously added by {@link #addListener(Consumer)}.
+     *
+     * @param listener listener to remove
+     */
+    public void removeListener(Consumer<OnlineTransceiverPositions> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Registers a listener to be called with the response of every newly
+     * retrieved file as received from upstream. The body may still be compressed
+     * as indicated by <code>Content-Encoding</code>, so it can be kept without
+     * decoding it again. Listeners are called on the fetcher's thread and should
+     * hand off any expensive work.
+     *
+     * @param listener will be called with every newly retrieved file's response
+     */
+    public void addRawResponseListener(Consumer<UpstreamResponse> listener) {
+        rawResponseListeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener previously added by {@link #addRawResponseListener(Consumer)}.
+     *
+     * @param listener listener to remove
+     */
+    public void removeRawResponseListener(Consumer<UpstreamResponse> listener) {
+        rawResponseListeners.remove(listener);
+    }
+
+    /**
+     * Restores a file from a previous run, e.g. from a warm-start cache. The
+     * restored positions are provided until a file has been retrieved from
+     * upstream.
+     *
+     * @param reader provides the JSON content of the file to restore; not closed
+     * @throws IOException if reading fails or the file is malformed
+     */
+    public void restore(Reader reader) throws IOException {
+        OnlineTransceiverPositions positions = extractor.extract(reader);
+
+        Collection<CompletableFuture<OnlineTransceiverPositions>> waiting;
+        synchronized (positionsLock) {
+            if (lastPositions != null) {
+                return;
+            }
+
+            restoredPositions = positions;
+
+            waiting = new ArrayList<>(pendingRequests);
+            pendingRequests.clear();
+        }
+
+        for (CompletableFuture<OnlineTransceiverPositions> future : waiting) {
+            future.complete(positions);
+        }
+    }
+
+    /**
+     * Requests the {@link OnlineTransceiverPositions}, starting the fetcher if
+     * not already running. If positions are available already, the returned
+     * {@link CompletableFuture} is already completed. Otherwise it will complete
+     * as soon as the next file has been retrieved. Callers are responsible to
+     * apply a timeout.
+     *
+     * @return completes with the positions of the last retrieved (or restored) file
+     */
+    public CompletableFuture<OnlineTransceiverPositions> requestOnlineTransceiverPositions() {
         lastRequested.set(Instant.now());
 
         if (!isAlive()) {
@@ -114,27 +259,33 @@ public class OnlineTransceiversFileFetcher extends PeriodicRunnable {
             start();
         }
 
-        Optional<OnlineTransceiversFile> file = getLastFetchedFile();
-
-        Instant wakeupTime = Instant.now().plus(timeout);
-        while (!file.isPresent() && Instant.now().isBefore(wakeupTime)) {
-            try {
-                Thread.sleep(WAIT_CHECK_INTERVAL_MILLIS);
-            } catch (InterruptedException ex) {
-                LOGGER.debug("sleep got interrupted, abort waiting", ex);
-                break;
+        CompletableFuture<OnlineTransceiverPositions> future;
+        synchronized (positionsLock) {
+            OnlineTransceiverPositions positions = (lastPositions != null) ? lastPositions : restoredPositions;
+            if (positions != null) {
+                return CompletableFuture.completedFuture(positions);
             }
 
-            file = getLastFetchedFile();
+            future = new CompletableFuture<>();
+            pendingRequests.add(future);
         }
 
-        return file;
+        // requests may be completed by others (e.g. timeout), no need to keep them any longer
+        future.whenComplete((result, ex) -> {
+            synchronized (positionsLock) {
+                pendingRequests.remove(future);
+            }
+        });
+
+        return future;
     }
 
     @Override
     public void start() {
         LOGGER.info("Starting periodic retrieval of online transceivers");
-        lastFile.set(null);
+        synchronized (positionsLock) {
+            lastPositions = null;
+        }
         super.start();
     }
 }
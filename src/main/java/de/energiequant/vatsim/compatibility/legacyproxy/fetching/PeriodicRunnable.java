@@ -1,126 +1,225 @@
 package de.energiequant.vatsim.compatibility.legacyproxy.fetching;
 
 import java.time.Duration;
-import java.time.Instant;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import de.energiequant.vatsim.compatibility.legacyproxy.metrics.Metrics;
+import de.energiequant.vatsim.compatibility.legacyproxy.utils.NamedThreadFactory;
+
 /**
  * Periodically calls {@link #onPeriodicWakeup()} which can decide the delay to
  * next execution. If an {@link Exception} occurs, execution will be retried
- * after {@link #DEFAULT_SLEEP_DURATION}. It is recommended to call
- * {@link #start()} instead of spawning the {@link Thread} directly.
- * {@link #stop()} attempts to shutdown the thread as soon as possible.
+ * after {@link #DEFAULT_SLEEP_DURATION}.
+ * <p>
+ * All instances share a single scheduler; no thread is occupied while waiting
+ * for the next execution. A small random jitter is added to each delay so
+ * instances do not synchronize their requests to upstream. {@link #stop()}
+ * cancels the next execution immediately and interrupts an execution currently
+ * in progress. Calling {@link #start()} while such a shutdown is still in
+ * progress restarts execution as soon as the shutdown has completed.
+ * </p>
  */
-public abstract class PeriodicRunnable implements Runnable {
+public abstract class PeriodicRunnable {
     private static final Logger LOGGER = LoggerFactory.getLogger(PeriodicRunnable.class);
 
-    private final AtomicReference<Instant> earliestWakeupTime = new AtomicReference<Instant>(Instant.MIN);
-    private final AtomicBoolean shouldStop = new AtomicBoolean();
-    private final AtomicReference<Thread> thread = new AtomicReference<Thread>();
-    private final AtomicBoolean isStarted = new AtomicBoolean(false);
-
     private static final Duration DEFAULT_SLEEP_DURATION = Duration.ofMinutes(1);
     private static final Duration MINIMUM_SLEEP_DURATION = Duration.ofSeconds(30);
 
     /**
-     * Called initially when the {@link Thread} is started and gets repeatedly
-     * called after the {@link Duration} returned be previous execution has passed.
-     * Will also be called {@link #DEFAULT_SLEEP_DURATION} after last call if any
+     * Jitter is added relative to the requested delay but never exceeds
+     * {@link #MAXIMUM_JITTER}. Delays are only extended, never shortened, so
+     * minimum intervals requested by upstream are still respected.
+     */
+    private static final double JITTER_RATIO = 0.05;
+    private static final Duration MAXIMUM_JITTER = Duration.ofSeconds(5);
+
+    /**
+     * Executions may block on upstream requests, so one thread per fetcher is
+     * provided. Idle threads are terminated.
+     */
+    private static final int SCHEDULER_POOL_SIZE = 4;
+    private static final Duration SCHEDULER_KEEP_ALIVE = Duration.ofMinutes(1);
+
+    private static final ScheduledThreadPoolExecutor SCHEDULER = createScheduler();
+    private static final AtomicInteger NUM_STARTED = new AtomicInteger();
+
+    private final String name = getClass().getSimpleName();
+
+    private final Object lock = new Object();
+    private boolean isStarted = false;
+    private boolean shouldStop = false;
+    private boolean isRestartPending = false;
+    private ScheduledFuture<?> scheduledWakeup = null;
+    private Thread executingThread = null;
+    private long plannedWakeupNanos = 0;
+
+    private static ScheduledThreadPoolExecutor createScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(
+            SCHEDULER_POOL_SIZE,
+            new NamedThreadFactory("scheduler")
+        );
+        scheduler.setKeepAliveTime(SCHEDULER_KEEP_ALIVE.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.allowCoreThreadTimeOut(true);
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    /**
+     * Called initially when started and gets repeatedly called after the
+     * {@link Duration} returned by previous execution has passed. Will also be
+     * called {@link #DEFAULT_SLEEP_DURATION} after last call if any
      * {@link Exception} occurred.
      *
      * @return {@link Duration} to sleep until next call; must be at least {@link #MINIMUM_SLEEP_DURATION}
      */
     protected abstract Duration onPeriodicWakeup();
 
-    @Override
-    public void run() {
-        isStarted.set(true);
-        thread.set(Thread.currentThread());
-
-        while (!shouldStop.get()) {
-            long secondsToWakeupTime = earliestWakeupTime.get().getEpochSecond() - Instant.now().getEpochSecond();
-            if (secondsToWakeupTime <= 0) {
-                Duration nextSleepDuration = DEFAULT_SLEEP_DURATION;
-                try {
-                    nextSleepDuration = onPeriodicWakeup();
-                } catch (Exception ex) {
-                    LOGGER.warn("Caught exception during periodic wakeup, retrying in {}", DEFAULT_SLEEP_DURATION, ex);
-                }
+    private void wakeup() {
+        synchronized (lock) {
+            if (!isStarted || shouldStop) {
+                // stopped while already due
+                return;
+            }
 
-                if (MINIMUM_SLEEP_DURATION.compareTo(nextSleepDuration) > 0) {
-                    LOGGER.warn("Requested sleep duration is too small ({}), limiting to minimum of {}",
-                                nextSleepDuration, MINIMUM_SLEEP_DURATION
-                    );
-                    nextSleepDuration = MINIMUM_SLEEP_DURATION;
-                } else {
-                    LOGGER.debug("Sleeping for {}", nextSleepDuration);
-                }
+            executingThread = Thread.currentThread();
+        }
+
+        Metrics.SCHEDULER_WAKEUP_DELAY.get().observeNanos(System.nanoTime() - plannedWakeupNanos);
+        Metrics.SCHEDULER_THREADS.get().set(SCHEDULER.getPoolSize());
+
+        Duration nextSleepDuration = DEFAULT_SLEEP_DURATION;
+        try {
+            nextSleepDuration = onPeriodicWakeup();
+        } catch (Exception ex) {
+            LOGGER.warn("Caught exception during periodic wakeup of {}, retrying in {}", name, DEFAULT_SLEEP_DURATION, ex);
+        }
+
+        if (MINIMUM_SLEEP_DURATION.compareTo(nextSleepDuration) > 0) {
+            LOGGER.warn("Requested sleep duration for {} is too small ({}), limiting to minimum of {}",
+                        name, nextSleepDuration, MINIMUM_SLEEP_DURATION
+            );
+            nextSleepDuration = MINIMUM_SLEEP_DURATION;
+        } else {
+            LOGGER.debug("{} sleeping for {}", name, nextSleepDuration);
+        }
+
+        synchronized (lock) {
+            executingThread = null;
+
+            if (shouldStop) {
+                // stop was requested during execution
+                markStopped();
 
-                earliestWakeupTime.set(Instant.now().plus(nextSleepDuration));
-            } else {
-                try {
-                    Thread.sleep(secondsToWakeupTime);
-                } catch (InterruptedException ex) {
-                    // ignore, interruptions are expected
+                if (isRestartPending) {
+                    LOGGER.debug("Restarting periodic execution of {} after shutdown", name);
+                    isRestartPending = false;
+                    markStarted();
                 }
+
+                return;
             }
+
+            schedule(withJitter(nextSleepDuration));
+        }
+    }
+
+    private static Duration withJitter(Duration duration) {
+        long maxJitterNanos = Math.min((long) (duration.toNanos() * JITTER_RATIO), MAXIMUM_JITTER.toNanos());
+        if (maxJitterNanos <= 0) {
+            return duration;
         }
 
-        isStarted.set(false);
-        shouldStop.set(false);
+        return duration.plusNanos(ThreadLocalRandom.current().nextLong(maxJitterNanos));
+    }
+
+    private void schedule(Duration delay) {
+        plannedWakeupNanos = System.nanoTime() + delay.toNanos();
+        scheduledWakeup = SCHEDULER.schedule(this::wakeup, delay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private void markStopped() {
+        isStarted = false;
+        shouldStop = false;
+        scheduledWakeup = null;
+        Metrics.SCHEDULER_TASKS.get().set(NUM_STARTED.decrementAndGet());
+    }
+
+    private void markStarted() {
+        isStarted = true;
+        Metrics.SCHEDULER_TASKS.get().set(NUM_STARTED.incrementAndGet());
+        schedule(Duration.ZERO);
     }
 
     /**
-     * Spawns a new periodically repeating {@link Thread}.
+     * Starts periodic execution; {@link #onPeriodicWakeup()} is called
+     * immediately. If a previous execution is still shutting down, the start is
+     * deferred until shutdown has completed.
      */
     public void start() {
-        if (shouldStop.get()) {
-            LOGGER.warn("Previous thread is shutting down, cannot start again before completed.");
-            return;
-        }
+        synchronized (lock) {
+            if (shouldStop) {
+                LOGGER.debug("Previous execution of {} is shutting down, will start again when completed", name);
+                isRestartPending = true;
+                return;
+            }
 
-        if (!isStarted.getAndSet(true)) {
-            LOGGER.debug("Starting new thread");
-            new Thread(this).start();
-        } else {
-            LOGGER.warn("Thread has already been started");
+            if (isStarted) {
+                LOGGER.warn("{} has already been started", name);
+                return;
+            }
+
+            LOGGER.debug("Starting periodic execution of {}", name);
+            markStarted();
         }
     }
 
     /**
-     * Attempts to stop the {@link Thread}.
+     * Stops periodic execution. The next execution is cancelled immediately; an
+     * execution currently in progress is interrupted unless {@link #stop()} has
+     * been called by the execution itself.
      */
     public void stop() {
-        if (!isStarted.get()) {
-            LOGGER.debug("Not started");
-            return;
-        } else if (shouldStop.get()) {
-            LOGGER.debug("Already stopping");
-            return;
-        }
+        synchronized (lock) {
+            if (!isStarted) {
+                LOGGER.debug("{} has not been started", name);
+                return;
+            } else if (shouldStop) {
+                LOGGER.debug("{} is already stopping", name);
+                isRestartPending = false;
+                return;
+            }
 
-        LOGGER.debug("Stopping thread");
+            LOGGER.debug("Stopping periodic execution of {}", name);
 
-        shouldStop.set(true);
+            if (executingThread == null) {
+                scheduledWakeup.cancel(false);
+                markStopped();
+                return;
+            }
 
-        Thread runningThread = thread.get();
-        if (runningThread != null) {
-            runningThread.interrupt();
+            shouldStop = true;
+            if (executingThread != Thread.currentThread()) {
+                executingThread.interrupt();
+            }
         }
     }
 
     /**
-     * Checks if the runner is running and not instructed to shut down.
+     * Checks if periodic execution is active and not instructed to shut down.
      *
      * @return <code>true</code> if running and not shutting down,
      *     <code>false</code> if already stopped or shutdown is in progress
      */
     public boolean isAlive() {
-        Thread currentThread = thread.get();
-        return isStarted.get() && !shouldStop.get() && currentThread.isAlive();
+        synchronized (lock) {
+            return isStarted && !shouldStop;
+        }
     }
 }
@@ -0,0 +1,106 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.fetching;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Optional;
+
+import org.apache.hc.core5.http.ContentType;
+
+/**
+ * Response from upstream whose body is still being received while it is read.
+ * Obtained from {@link UpstreamClient#getStreamed(String)} as soon as the
+ * response head has arrived; reading blocks until more data is available. Only
+ * a small, flow-controlled buffer is held in memory, so the body is never held
+ * as a whole.
+ * <p>
+ * Instances must be {@link #close()}d after use to release the connection.
+ * Closing discards any remaining data.
+ * </p>
+ */
+public class StreamedUpstreamResponse implements Closeable {
+    private final ContentType contentType;
+    private final String contentEncoding;
+    private final CountingInputStream body;
+
+    private static class CountingInputStream extends InputStream {
+        private final InputStream delegate;
+        private long count = 0;
+
+        private CountingInputStream(InputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = delegate.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = delegate.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+
+    StreamedUpstreamResponse(ContentType contentType, String contentEncoding, InputStream body) {
+        this.contentType = contentType;
+        this.contentEncoding = contentEncoding;
+        this.body = new CountingInputStream(body);
+    }
+
+    /**
+     * Returns the character set indicated by upstream through the content type.
+     *
+     * @return character set, empty if not indicated
+     */
+    public Optional<Charset> getCharset() {
+        return Optional.ofNullable(contentType).map(ContentType::getCharset);
+    }
+
+    /**
+     * Opens the body for reading as characters, decompressing it on the fly if
+     * upstream applied a content coding. May only be called once.
+     *
+     * @param fallbackCharacterSet character set to use if upstream did not indicate any
+     * @return body as decompressed character stream
+     * @throws IOException if the content coding is unsupported or the body is corrupt
+     */
+    public Reader openBodyReader(Charset fallbackCharacterSet) throws IOException {
+        return new BufferedReader(new InputStreamReader(
+            UpstreamResponse.decompress(body, contentEncoding),
+            getCharset().orElse(fallbackCharacterSet)
+        ));
+    }
+
+    /**
+     * Returns the number of body bytes read so far, as transferred (compressed if
+     * upstream applied a content coding).
+     *
+     * @return number of bytes read from the connection
+     */
+    public long getReceivedBytes() {
+        return body.count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        body.close();
+    }
+}
@@ -0,0 +1,140 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.fetching;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.nio.support.classic.ContentInputStream;
+import org.apache.hc.core5.http.nio.support.classic.SharedInputBuffer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+
+/**
+ * Hands out the response body as a blocking {@link InputStream} as soon as the
+ * response head has been received. Data is passed through a bounded buffer;
+ * the connection is throttled while the buffer is full, so memory is not
+ * determined by the size of the body but by {@link #BUFFER_SIZE}.
+ * <p>
+ * Responses with any status other than 200 are reported as failure and their
+ * bodies are discarded.
+ * </p>
+ */
+class StreamingResponseConsumer implements AsyncResponseConsumer<StreamedUpstreamResponse> {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String url;
+    private final SharedInputBuffer buffer = new SharedInputBuffer(BUFFER_SIZE);
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+    private volatile boolean isDiscarding = false;
+
+    /**
+     * Checks for transfer failures when the end of the buffer has been reached
+     * as the buffer signals end of stream also if it has been aborted.
+     */
+    private class FailureAwareInputStream extends ContentInputStream {
+        private FailureAwareInputStream() {
+            super(buffer);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return checkFailure(super.read());
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return checkFailure(super.read(b, off, len));
+        }
+
+        private int checkFailure(int result) throws IOException {
+            if (result < 0) {
+                Exception cause = failure.get();
+                if (cause != null) {
+                    throw new IOException("Transfer from " + url + " failed", cause);
+                }
+            }
+
+            return result;
+        }
+    }
+
+    StreamingResponseConsumer(String url) {
+        this.url = url;
+    }
+
+    @Override
+    public void consumeResponse(HttpResponse response, EntityDetails entityDetails, HttpContext context, FutureCallback<StreamedUpstreamResponse> resultCallback) {
+        if (response.getCode() != HttpStatus.SC_OK) {
+            isDiscarding = true;
+            resultCallback.failed(new IOException(
+                "Upstream responded with status " + response.getCode() + " for " + url
+            ));
+            return;
+        }
+
+        ContentType contentType = null;
+        String contentEncoding = null;
+        if (entityDetails == null) {
+            buffer.markEndStream();
+        } else {
+            contentType = ContentType.parseLenient(entityDetails.getContentType());
+            contentEncoding = entityDetails.getContentEncoding();
+        }
+
+        resultCallback.completed(new StreamedUpstreamResponse(
+            contentType,
+            contentEncoding,
+            new FailureAwareInputStream()
+        ));
+    }
+
+    @Override
+    public void informationResponse(HttpResponse response, HttpContext context) {
+        // not relevant
+    }
+
+    @Override
+    public void updateCapacity(CapacityChannel capacityChannel) throws IOException {
+        if (isDiscarding) {
+            capacityChannel.update(Integer.MAX_VALUE);
+            return;
+        }
+
+        buffer.updateCapacity(capacityChannel);
+    }
+
+    @Override
+    public void consume(ByteBuffer src) {
+        if (isDiscarding) {
+            src.position(src.limit());
+            return;
+        }
+
+        buffer.fill(src);
+    }
+
+    @Override
+    public void streamEnd(List<? extends Header> trailers) {
+        buffer.markEndStream();
+    }
+
+    @Override
+    public void failed(Exception cause) {
+        failure.compareAndSet(null, cause);
+        buffer.abort();
+    }
+
+    @Override
+    public void releaseResources() {
+        // nothing to release, buffer is only held on heap
+    }
+}
@@ -0,0 +1,202 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.fetching;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.async.methods.SimpleRequestProducer;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.energiequant.vatsim.compatibility.legacyproxy.AppConstants;
+
+/**
+ * Non-blocking HTTP client retrieving raw responses from upstream. Bodies are
+ * not converted but provided as received so they can be passed through without
+ * transcoding.
+ * <p>
+ * Requests made by fetchers through
+ * {@link #getIfModified(String, CacheValidators)} ask upstream for a
+ * compressed transfer; such bodies need to be read through the decompressing
+ * methods of {@link UpstreamResponse}. Brotli is not requested as no decoder
+ * is available.
+ * </p>
+ * <p>
+ * Large bodies which are only parsed can be requested through
+ * {@link #getStreamed(String)} to read them while they are still being
+ * received instead of buffering them completely.
+ * </p>
+ * <p>
+ * {@link #close()} should be called when the application shuts down.
+ * </p>
+ */
+public class UpstreamClient {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UpstreamClient.class);
+
+    /**
+     * Codings {@link UpstreamResponse} is able to decompress, most preferred
+     * first.
+     */
+    private static final String ACCEPT_ENCODING = "gzip, deflate;q=0.9";
+
+    private static final Timeout TIMEOUT = Timeout.ofMilliseconds(AppConstants.EXTERNAL_REQUEST_TIMEOUT.toMillis());
+
+    private final CloseableHttpAsyncClient client;
+
+    public UpstreamClient() {
+        client = HttpAsyncClients.custom()
+                                 .setUserAgent(AppConstants.USER_AGENT)
+                                 .setConnectionManager(
+                                     PoolingAsyncClientConnectionManagerBuilder.create()
+                                                                               .setDefaultConnectionConfig(
+                                                                                   ConnectionConfig.custom()
+                                                                                                   .setConnectTimeout(TIMEOUT)
+                                                                                                   .setSocketTimeout(TIMEOUT)
+                                                                                                   .build()
+                                                                               )
+                                                                               .build()
+                                 )
+                                 .setDefaultRequestConfig(
+                                     RequestConfig.custom()
+                                                  .setResponseTimeout(TIMEOUT)
+                                                  .build()
+                                 )
+                                 .build();
+        client.start();
+    }
+
+    /**
+     * Requests the given URL by GET. No compression is requested, so the body
+     * can be passed through as received. The returned {@link CompletableFuture}
+     * completes exceptionally if the request fails or upstream does not respond
+     * with status 200.
+     *
+     * @param url URL to request
+     * @return completes with the response once received
+     */
+    public CompletableFuture<UpstreamResponse> get(String url) {
+        return execute(url, CacheValidators.NONE, false);
+    }
+
+    /**
+     * Requests the given URL by GET, conditional to the given validators if they
+     * apply to the URL. A compressed transfer is requested, so the body should be
+     * read through {@link UpstreamResponse#openBodyReader(Charset)} or
+     * {@link UpstreamResponse#getBodyAsString(Charset)}. The returned {@link CompletableFuture} completes with
+     * either status 200 or, if content has not been modified, 304 (see
+     * {@link UpstreamResponse#isNotModified()}). It completes exceptionally if
+     * the request fails or upstream responds with any other status.
+     *
+     * @param url        URL to request
+     * @param validators validators as remembered from a previous response, {@link CacheValidators#NONE} to request unconditionally
+     * @return completes with the response once received
+     */
+    public CompletableFuture<UpstreamResponse> getIfModified(String url, CacheValidators validators) {
+        return execute(url, validators, true);
+    }
+
+    /**
+     * Requests the given URL by GET, asking for a compressed transfer. Unlike
+     * other requests, the returned {@link CompletableFuture} already completes
+     * once the response head has been received; the body is read from the
+     * connection as it arrives through
+     * {@link StreamedUpstreamResponse#openBodyReader(Charset)}. The future
+     * completes exceptionally if the request fails or upstream does not respond
+     * with status 200. Failures while receiving the body are raised when reading.
+     *
+     * @param url URL to request
+     * @return completes with the streamed response once the response head has been received
+     */
+    public CompletableFuture<StreamedUpstreamResponse> getStreamed(String url) {
+        CompletableFuture<StreamedUpstreamResponse> future = new CompletableFuture<>();
+
+        SimpleHttpRequest request = SimpleRequestBuilder.get(url)
+                                                        .setHeader(HttpHeaders.ACCEPT_ENCODING, ACCEPT_ENCODING)
+                                                        .build();
+        client.execute(
+            SimpleRequestProducer.create(request),
+            new StreamingResponseConsumer(url),
+            new FutureCallback<StreamedUpstreamResponse>() {
+                @Override
+                public void completed(StreamedUpstreamResponse response) {
+                    future.complete(response);
+                }
+
+                @Override
+                public void failed(Exception ex) {
+                    future.completeExceptionally(ex);
+                }
+
+                @Override
+                public void cancelled() {
+                    future.cancel(false);
+                }
+            }
+        );
+
+        return future;
+    }
+
+    private CompletableFuture<UpstreamResponse> execute(String url, CacheValidators validators, boolean acceptCompression) {
+        CompletableFuture<UpstreamResponse> future = new CompletableFuture<>();
+
+        SimpleRequestBuilder builder = SimpleRequestBuilder.get(url);
+        validators.applyTo(url, builder);
+        if (acceptCompression) {
+            builder.setHeader(HttpHeaders.ACCEPT_ENCODING, ACCEPT_ENCODING);
+        }
+        boolean isConditional = validators.isApplicableTo(url);
+
+        SimpleHttpRequest request = builder.build();
+        client.execute(request, new FutureCallback<SimpleHttpResponse>() {
+            @Override
+            public void completed(SimpleHttpResponse response) {
+                boolean isExpectedStatus = (response.getCode() == HttpStatus.SC_OK)
+                    || (isConditional && (response.getCode() == HttpStatus.SC_NOT_MODIFIED));
+                if (!isExpectedStatus) {
+                    future.completeExceptionally(new IOException(
+                        "Upstream responded with status " + response.getCode() + " for " + url
+                    ));
+                    return;
+                }
+
+                future.complete(new UpstreamResponse(
+                    response.getCode(),
+                    response.getBodyBytes(),
+                    response.getContentType(),
+                    response.getHeaders()
+                ));
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                future.completeExceptionally(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                future.cancel(false);
+            }
+        });
+
+        return future;
+    }
+
+    public void close() {
+        LOGGER.debug("Closing upstream client");
+        client.close(CloseMode.GRACEFUL);
+    }
+}
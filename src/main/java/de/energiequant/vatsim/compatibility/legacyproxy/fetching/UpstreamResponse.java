@@ -0,0 +1,194 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.fetching;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
+
+/**
+ * Raw response as received by {@link UpstreamClient}. The body is kept exactly
+ * as received, no character set conversion has been applied.
+ * <p>
+ * If compression has been requested, the body may be encoded as indicated by
+ * <code>Content-Encoding</code>. Such bodies are decompressed on the fly when
+ * read through {@link #openBodyReader(Charset)} or
+ * {@link #getBodyAsString(Charset)}; the decompressed content is never held in
+ * memory as a whole unless explicitly requested as {@link String}.
+ * </p>
+ */
+public class UpstreamResponse {
+    private final int statusCode;
+    private final byte[] body;
+    private final ContentType contentType;
+    private final Header[] headers;
+    private final Instant retrievalTimestamp = Instant.now();
+
+    private static final int DECOMPRESSION_BUFFER_SIZE = 8192;
+
+    UpstreamResponse(int statusCode, byte[] body, ContentType contentType, Header[] headers) {
+        this.statusCode = statusCode;
+        this.body = (body != null) ? body : new byte[0];
+        this.contentType = contentType;
+        this.headers = headers;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Checks if upstream indicated that content has not changed since the
+     * response the conditional request has been made for. Such responses have
+     * no body.
+     *
+     * @return <code>true</code> if content has not been modified, <code>false</code> if a body has been received
+     */
+    public boolean isNotModified() {
+        return statusCode == HttpStatus.SC_NOT_MODIFIED;
+    }
+
+    /**
+     * Returns the body as received, still encoded if compression has been
+     * requested. The array is shared and must not be modified.
+     *
+     * @return raw body
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * Returns the content type indicated by upstream.
+     *
+     * @return content type, empty if not indicated
+     */
+    public Optional<ContentType> getContentType() {
+        return Optional.ofNullable(contentType);
+    }
+
+    /**
+     * Returns the character set indicated by upstream through the content type.
+     *
+     * @return character set, empty if not indicated
+     */
+    public Optional<Charset> getCharset() {
+        return getContentType().map(ContentType::getCharset);
+    }
+
+    /**
+     * Opens the body for reading, decompressing it on the fly if upstream applied
+     * a content coding.
+     *
+     * @return body as decompressed stream
+     * @throws IOException if the content coding is unsupported or the body is corrupt
+     */
+    public InputStream openBodyStream() throws IOException {
+        return decompress(
+            new ByteArrayInputStream(body),
+            getFirstHeaderValue(HttpHeaders.CONTENT_ENCODING).orElse(null)
+        );
+    }
+
+    /**
+     * Wraps the given stream to decompress it as indicated by
+     * <code>Content-Encoding</code>.
+     *
+     * @param is              stream to decompress
+     * @param contentEncoding value of the Content-Encoding header, may be null
+     * @return decompressing stream
+     * @throws IOException if the content coding is unsupported or the stream is corrupt
+     */
+    static InputStream decompress(InputStream is, String contentEncoding) throws IOException {
+        String normalized = (contentEncoding != null) ? contentEncoding.trim().toLowerCase(Locale.ROOT) : "";
+        switch (normalized) {
+            case "":
+            case "identity":
+                return is;
+
+            case "gzip":
+            case "x-gzip":
+                return new GZIPInputStream(is, DECOMPRESSION_BUFFER_SIZE);
+
+            case "deflate":
+                return new InflaterInputStream(is);
+
+            default:
+                throw new IOException("Unsupported content encoding: " + normalized);
+        }
+    }
+
+    /**
+     * Opens the body for reading as characters, decompressing it on the fly if
+     * upstream applied a content coding.
+     *
+     * @param fallbackCharacterSet character set to use if upstream did not indicate any
+     * @return body as decompressed character stream
+     * @throws IOException if the content coding is unsupported or the body is corrupt
+     */
+    public Reader openBodyReader(Charset fallbackCharacterSet) throws IOException {
+        return new BufferedReader(new InputStreamReader(
+            openBodyStream(),
+            getCharset().orElse(fallbackCharacterSet)
+        ));
+    }
+
+    /**
+     * Decodes the whole body using the character set indicated by upstream,
+     * decompressing it if upstream applied a content coding.
+     *
+     * @param fallbackCharacterSet character set to use if upstream did not indicate any
+     * @return decoded body
+     * @throws UncheckedIOException if the content coding is unsupported or the body is corrupt
+     */
+    public String getBodyAsString(Charset fallbackCharacterSet) {
+        try (Reader reader = openBodyReader(fallbackCharacterSet)) {
+            StringBuilder sb = new StringBuilder();
+            char[] buffer = new char[DECOMPRESSION_BUFFER_SIZE];
+            int read;
+            while ((read = reader.read(buffer)) >= 0) {
+                sb.append(buffer, 0, read);
+            }
+            return sb.toString();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to decode body", ex);
+        }
+    }
+
+    public Optional<String> getFirstHeaderValue(String name) {
+        for (Header header : headers) {
+            if (header.getName().equalsIgnoreCase(name)) {
+                return Optional.ofNullable(header.getValue());
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Returns the last modification time as indicated by upstream.
+     *
+     * @return last modification time, empty if not indicated or unparseable
+     */
+    public Optional<Instant> getLastModified() {
+        return getFirstHeaderValue(HttpHeaders.LAST_MODIFIED).map(DateUtils::parseStandardDate);
+    }
+
+    public Instant getRetrievalTimestamp() {
+        return retrievalTimestamp;
+    }
+}
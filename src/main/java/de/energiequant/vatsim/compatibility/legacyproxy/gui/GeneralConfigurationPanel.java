@@ -32,6 +32,7 @@ import org.slf4j.LoggerFactory;
 
 import de.energiequant.vatsim.compatibility.legacyproxy.Configuration;
 import de.energiequant.vatsim.compatibility.legacyproxy.Main;
+import de.energiequant.vatsim.compatibility.legacyproxy.server.AddressTrie;
 
 public class GeneralConfigurationPanel extends JPanel {
     private static final Logger LOGGER = LoggerFactory.getLogger(GeneralConfigurationPanel.class);
@@ -338,7 +339,7 @@ public class GeneralConfigurationPanel extends JPanel {
             gbc.anchor = GridBagConstraints.WEST;
             add(
                 stylePlain(new JLabel(
-                    "<html>Only the listed IP addresses are served data by the proxy server. Addresses need to be entered exactly as shown in the log. Changes are applied immediately.</html>"
+                    "<html>Only the listed IP addresses are served data by the proxy server. Entries can be single addresses as shown in the log (e.g. 192.168.0.10 or ::1) or ranges in CIDR notation (e.g. 192.168.0.0/24 or fd00::/8). Changes are applied immediately.</html>"
                 )),
                 gbc
             );
@@ -414,6 +415,19 @@ public class GeneralConfigurationPanel extends JPanel {
                 return;
             }
 
+            try {
+                AddressTrie.validate(newAddress);
+            } catch (IllegalArgumentException ex) {
+                LOGGER.debug("rejected invalid IP address or range \"{}\": {}", newAddress, ex.getMessage());
+                JOptionPane.showMessageDialog(
+                    this,
+                    "\"" + newAddress + "\" is not a valid IP address or CIDR range: " + ex.getMessage(),
+                    "Invalid IP address",
+                    JOptionPane.ERROR_MESSAGE
+                );
+                return;
+            }
+
             LOGGER.debug("adding \"{}\" to allowed IPs", newAddress);
             manipulateAllowedIps(allowedIps -> allowedIps.add(newAddress));
         }
@@ -0,0 +1,35 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.metrics;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonically increasing counter. Increments are striped over multiple
+ * cells by {@link LongAdder}, so concurrent updates do not contend.
+ */
+public class Counter {
+    private final LongAdder adder = new LongAdder();
+
+    public void inc() {
+        adder.increment();
+    }
+
+    public void add(long amount) {
+        adder.add(amount);
+    }
+
+    public long get() {
+        return adder.sum();
+    }
+
+    public static class Family extends MetricFamily<Counter> {
+        Family(String name, String help, String[] labelNames) {
+            super(name, help, "counter", labelNames, Counter::new);
+        }
+
+        @Override
+        void writeChild(StringBuilder sb, List<String> labelValues, Counter child) {
+            writeSample(sb, "", labelValues, null, null, child.get());
+        }
+    }
+}
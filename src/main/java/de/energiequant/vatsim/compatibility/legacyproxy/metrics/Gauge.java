@@ -0,0 +1,29 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.metrics;
+
+import java.util.List;
+
+/**
+ * Value which can go up and down, set by whoever owns the measured resource.
+ */
+public class Gauge {
+    private volatile double value = 0.0;
+
+    public void set(double value) {
+        this.value = value;
+    }
+
+    public double get() {
+        return value;
+    }
+
+    public static class Family extends MetricFamily<Gauge> {
+        Family(String name, String help, String[] labelNames) {
+            super(name, help, "gauge", labelNames, Gauge::new);
+        }
+
+        @Override
+        void writeChild(StringBuilder sb, List<String> labelValues, Gauge child) {
+            writeSample(sb, "", labelValues, null, null, child.get());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.metrics;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of observed values over fixed buckets. Each bucket is counted
+ * by its own {@link LongAdder}, so observing a value only touches one
+ * uncontended cell and the sum; cumulative counts are only computed when
+ * exposed.
+ */
+public class Histogram {
+    private final double[] upperBounds;
+    private final LongAdder[] bucketCounts;
+    private final DoubleAdder sum = new DoubleAdder();
+
+    Histogram(double[] upperBounds) {
+        this.upperBounds = upperBounds;
+
+        // last bucket counts everything above the highest bound (+Inf)
+        this.bucketCounts = new LongAdder[upperBounds.length + 1];
+        for (int i = 0; i < bucketCounts.length; i++) {
+            bucketCounts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a single value.
+     *
+     * @param value value to record
+     */
+    public void observe(double value) {
+        int i = 0;
+        while ((i < upperBounds.length) && (value > upperBounds[i])) {
+            i++;
+        }
+
+        bucketCounts[i].increment();
+        sum.add(value);
+    }
+
+    /**
+     * Records a duration, exposed in seconds.
+     *
+     * @param nanos duration in nanoseconds
+     */
+    public void observeNanos(long nanos) {
+        observe(nanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Records the time elapsed since the given start.
+     *
+     * @param startNanos start time as returned by {@link System#nanoTime()}
+     */
+    public void observeSince(long startNanos) {
+        observeNanos(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucketCount : bucketCounts) {
+            count += bucketCount.sum();
+        }
+        return count;
+    }
+
+    public static class Family extends MetricFamily<Histogram> {
+        Family(String name, String help, double[] upperBounds, String[] labelNames) {
+            super(name, help, "histogram", labelNames, () -> new Histogram(upperBounds));
+        }
+
+        @Override
+        void writeChild(StringBuilder sb, List<String> labelValues, Histogram child) {
+            long cumulative = 0;
+            for (int i = 0; i < child.bucketCounts.length; i++) {
+                cumulative += child.bucketCounts[i].sum();
+
+                String upperBound = (i < child.upperBounds.length) ? formatValue(child.upperBounds[i]) : "+Inf";
+                writeSample(sb, "_bucket", labelValues, "le", upperBound, cumulative);
+            }
+
+            writeSample(sb, "_sum", labelValues, null, null, child.sum.sum());
+            writeSample(sb, "_count", labelValues, null, null, cumulative);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * A named metric with a fixed set of label names. Each combination of label
+ * values is tracked by a child of type <code>T</code> which is created on first
+ * use and kept for the lifetime of the application, so label values must come
+ * from a small, bounded set.
+ *
+ * @param <T> type of metric
+ */
+public abstract class MetricFamily<T> {
+    private final String name;
+    private final String help;
+    private final String type;
+    private final List<String> labelNames;
+    private final Supplier<T> childFactory;
+    private final Map<List<String>, T> children = new ConcurrentHashMap<>();
+
+    MetricFamily(String name, String help, String type, String[] labelNames, Supplier<T> childFactory) {
+        this.name = name;
+        this.help = help;
+        this.type = type;
+        this.labelNames = Collections.unmodifiableList(Arrays.asList(labelNames));
+        this.childFactory = childFactory;
+    }
+
+    /**
+     * Returns the child for the given label values, creating it if needed.
+     *
+     * @param labelValues values in order of the family's label names
+     * @return child for given label values
+     */
+    public T labels(String... labelValues) {
+        if (labelValues.length != labelNames.size()) {
+            throw new IllegalArgumentException(
+                "metric " + name + " expects " + labelNames.size() + " label values, got " + labelValues.length
+            );
+        }
+
+        List<String> key = Arrays.asList(labelValues);
+        T child = children.get(key);
+        if (child == null) {
+            child = children.computeIfAbsent(key, x -> childFactory.get());
+        }
+
+        return child;
+    }
+
+    /**
+     * Returns the only child of a family without labels.
+     *
+     * @return child without labels
+     */
+    public T get() {
+        return labels();
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Writes the family in Prometheus text exposition format.
+     *
+     * @param sb builder to append to
+     */
+    void writeTo(StringBuilder sb) {
+        sb.append("# HELP ").append(name).append(' ');
+        appendEscaped(sb, help, false);
+        sb.append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+
+        List<Map.Entry<List<String>, T>> entries = new ArrayList<>(children.entrySet());
+        entries.sort((a, b) -> String.join("\u0000", a.getKey()).compareTo(String.join("\u0000", b.getKey())));
+
+        for (Map.Entry<List<String>, T> entry : entries) {
+            writeChild(sb, entry.getKey(), entry.getValue());
+        }
+    }
+
+    abstract void writeChild(StringBuilder sb, List<String> labelValues, T child);
+
+    /**
+     * Writes a single sample line.
+     *
+     * @param sb              builder to append to
+     * @param suffix          suffix to append to the family name
+     * @param labelValues     values of the family's labels
+     * @param extraLabelName  name of an additional label, may be null
+     * @param extraLabelValue value of the additional label
+     * @param value           sample value
+     */
+    void writeSample(StringBuilder sb, String suffix, List<String> labelValues, String extraLabelName, String extraLabelValue, double value) {
+        sb.append(name).append(suffix);
+
+        boolean hasLabels = !labelValues.isEmpty() || (extraLabelName != null);
+        if (hasLabels) {
+            sb.append('{');
+            for (int i = 0; i < labelValues.size(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(labelNames.get(i)).append("=\"");
+                appendEscaped(sb, labelValues.get(i), true);
+                sb.append('"');
+            }
+
+            if (extraLabelName != null) {
+                if (!labelValues.isEmpty()) {
+                    sb.append(',');
+                }
+                sb.append(extraLabelName).append("=\"").append(extraLabelValue).append('"');
+            }
+            sb.append('}');
+        }
+
+        sb.append(' ').append(formatValue(value)).append('\n');
+    }
+
+    static String formatValue(double value) {
+        if (value == Double.POSITIVE_INFINITY) {
+            return "+Inf";
+        } else if (value == Double.NEGATIVE_INFINITY) {
+            return "-Inf";
+        } else if (Double.isNaN(value)) {
+            return "NaN";
+        } else if ((value == Math.rint(value)) && (Math.abs(value) < 1e15)) {
+            return Long.toString((long) value);
+        }
+
+        return Double.toString(value);
+    }
+
+    private static void appendEscaped(StringBuilder sb, String s, boolean escapeQuotes) {
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch == '\\') {
+                sb.append("\\\\");
+            } else if (ch == '\n') {
+                sb.append("\\n");
+            } else if (escapeQuotes && (ch == '"')) {
+                sb.append("\\\"");
+            } else {
+                sb.append(ch);
+            }
+        }
+    }
+}
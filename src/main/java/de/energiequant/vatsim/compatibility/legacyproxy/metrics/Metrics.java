@@ -0,0 +1,104 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.metrics;
+
+/**
+ * All metrics exposed by the proxy. Metrics are registered once for the whole
+ * application so instrumented code can record values without any lookup or
+ * wiring.
+ */
+public class Metrics {
+    public static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+    private static final double[] REQUEST_DURATION_BUCKETS = {
+        0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30
+    };
+
+    private static final double[] PROCESSING_DURATION_BUCKETS = {
+        0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30
+    };
+
+    public static final Counter.Family HTTP_REQUESTS = REGISTRY.counter(
+        "legacyproxy_http_requests_total",
+        "Number of HTTP requests by endpoint and response status.",
+        "endpoint", "status"
+    );
+
+    public static final Histogram.Family HTTP_REQUEST_DURATION = REGISTRY.histogram(
+        "legacyproxy_http_request_duration_seconds",
+        "Time from receiving a request until its response has been submitted.",
+        REQUEST_DURATION_BUCKETS,
+        "endpoint"
+    );
+
+    public static final Counter.Family HTTP_RESPONSE_BYTES = REGISTRY.counter(
+        "legacyproxy_http_response_bytes_total",
+        "Number of response body bytes served, as encoded for the client.",
+        "endpoint"
+    );
+
+    public static final Histogram.Family UPSTREAM_FETCH_DURATION = REGISTRY.histogram(
+        "legacyproxy_upstream_fetch_duration_seconds",
+        "Time needed to retrieve and parse data from upstream.",
+        PROCESSING_DURATION_BUCKETS,
+        "fetcher"
+    );
+
+    public static final Counter.Family UPSTREAM_FETCH_FAILURES = REGISTRY.counter(
+        "legacyproxy_upstream_fetch_failures_total",
+        "Number of failed attempts to retrieve data from upstream.",
+        "fetcher"
+    );
+
+    public static final Counter.Family UPSTREAM_NOT_MODIFIED = REGISTRY.counter(
+        "legacyproxy_upstream_not_modified_total",
+        "Number of successful conditional requests to upstream which were answered without content as nothing changed.",
+        "fetcher"
+    );
+
+    public static final Counter.Family UPSTREAM_RECEIVED_BYTES = REGISTRY.counter(
+        "legacyproxy_upstream_received_bytes_total",
+        "Number of response body bytes received from upstream, as transferred (compressed if supported by upstream).",
+        "fetcher"
+    );
+
+    public static final Gauge.Family SCHEDULER_TASKS = REGISTRY.gauge(
+        "legacyproxy_scheduler_tasks",
+        "Number of periodic tasks (fetchers) currently started on the shared scheduler."
+    );
+
+    public static final Gauge.Family SCHEDULER_THREADS = REGISTRY.gauge(
+        "legacyproxy_scheduler_threads",
+        "Number of threads held by the shared scheduler, as seen on last execution."
+    );
+
+    public static final Histogram.Family SCHEDULER_WAKEUP_DELAY = REGISTRY.histogram(
+        "legacyproxy_scheduler_wakeup_delay_seconds",
+        "Time a periodic task started executing after it was due.",
+        REQUEST_DURATION_BUCKETS
+    );
+
+    public static final Histogram.Family DATA_FILE_CONVERSION_DURATION = REGISTRY.histogram(
+        "legacyproxy_datafile_conversion_duration_seconds",
+        "Time needed to convert a data file to legacy format, including station location and compression.",
+        PROCESSING_DURATION_BUCKETS
+    );
+
+    public static final Counter.Family STATION_LOCATOR_LOOKUPS = REGISTRY.counter(
+        "legacyproxy_station_locator_lookups_total",
+        "Number of station lookups by cache result and source of the location.",
+        "cache", "source"
+    );
+
+    public static final Gauge.Family STATION_LOCATOR_CACHE_ENTRIES = REGISTRY.gauge(
+        "legacyproxy_station_locator_cache_entries",
+        "Number of station locations currently held in cache."
+    );
+
+    public static final String FETCHER_LEGACY_NETWORK_INFORMATION = "legacy_network_information";
+    public static final String FETCHER_JSON_NETWORK_INFORMATION = "json_network_information";
+    public static final String FETCHER_ONLINE_TRANSCEIVERS = "online_transceivers";
+    public static final String FETCHER_JSON_DATA_FILE = "json_data_file";
+
+    private Metrics() {
+        // constants only; hide constructor
+    }
+}
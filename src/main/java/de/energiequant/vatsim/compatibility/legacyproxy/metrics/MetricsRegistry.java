@@ -0,0 +1,53 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.metrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Holds all metric families and renders them in Prometheus text exposition
+ * format (version 0.0.4).
+ */
+public class MetricsRegistry {
+    /**
+     * Content type of the Prometheus text exposition format.
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final List<MetricFamily<?>> families = new CopyOnWriteArrayList<>();
+
+    public Counter.Family counter(String name, String help, String... labelNames) {
+        return register(new Counter.Family(name, help, labelNames));
+    }
+
+    public Gauge.Family gauge(String name, String help, String... labelNames) {
+        return register(new Gauge.Family(name, help, labelNames));
+    }
+
+    public Histogram.Family histogram(String name, String help, double[] upperBounds, String... labelNames) {
+        return register(new Histogram.Family(name, help, upperBounds.clone(), labelNames));
+    }
+
+    private synchronized <T extends MetricFamily<?>> T register(T family) {
+        for (MetricFamily<?> existing : families) {
+            if (existing.getName().equals(family.getName())) {
+                throw new IllegalArgumentException("metric " + family.getName() + " has already been registered");
+            }
+        }
+
+        families.add(family);
+        return family;
+    }
+
+    /**
+     * Renders all metrics in Prometheus text exposition format.
+     *
+     * @return all metrics
+     */
+    public String render() {
+        StringBuilder sb = new StringBuilder();
+        for (MetricFamily<?> family : families) {
+            family.writeTo(sb);
+        }
+        return sb.toString();
+    }
+}
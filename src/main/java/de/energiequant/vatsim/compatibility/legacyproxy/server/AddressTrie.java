@@ -0,0 +1,263 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Immutable binary prefix trie matching IPv4 and IPv6 addresses against a set
+ * of exact addresses and CIDR ranges. Matching walks the raw address bits and
+ * neither locks nor converts addresses to strings, so instances can be shared
+ * by any number of threads and replaced atomically when changed.
+ * <p>
+ * Entries are written as plain addresses (<code>192.168.0.10</code>,
+ * <code>::1</code>) or in CIDR notation (<code>192.168.0.0/24</code>,
+ * <code>fd00::/8</code>). Host names are not supported.
+ * </p>
+ */
+public class AddressTrie {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AddressTrie.class);
+
+    private static final int NO_CHILD = -1;
+
+    private final Tree ipv4;
+    private final Tree ipv6;
+
+    /**
+     * Flat representation of a binary trie; index 0 is the root node. A node is
+     * terminal if an entry ends at it, all addresses below a terminal node match.
+     */
+    private static class Tree {
+        private final int[] zeroChildren;
+        private final int[] oneChildren;
+        private final boolean[] terminal;
+
+        private Tree(int[] zeroChildren, int[] oneChildren, boolean[] terminal) {
+            this.zeroChildren = zeroChildren;
+            this.oneChildren = oneChildren;
+            this.terminal = terminal;
+        }
+
+        private boolean matches(byte[] address) {
+            int node = 0;
+            int numBits = address.length * 8;
+            for (int i = 0; i < numBits; i++) {
+                if (terminal[node]) {
+                    return true;
+                }
+
+                boolean isSet = (address[i >> 3] & (0x80 >> (i & 7))) != 0;
+                node = isSet ? oneChildren[node] : zeroChildren[node];
+                if (node == NO_CHILD) {
+                    return false;
+                }
+            }
+
+            return terminal[node];
+        }
+    }
+
+    private static class TreeBuilder {
+        private int[] zeroChildren = new int[16];
+        private int[] oneChildren = new int[16];
+        private boolean[] terminal = new boolean[16];
+        private int numNodes = 0;
+
+        private TreeBuilder() {
+            createNode();
+        }
+
+        private int createNode() {
+            if (numNodes == terminal.length) {
+                int newLength = terminal.length * 2;
+                zeroChildren = Arrays.copyOf(zeroChildren, newLength);
+                oneChildren = Arrays.copyOf(oneChildren, newLength);
+                terminal = Arrays.copyOf(terminal, newLength);
+            }
+
+            int index = numNodes++;
+            zeroChildren[index] = NO_CHILD;
+            oneChildren[index] = NO_CHILD;
+            terminal[index] = false;
+            return index;
+        }
+
+        private void add(byte[] address, int prefixLength) {
+            int node = 0;
+            for (int i = 0; i < prefixLength; i++) {
+                if (terminal[node]) {
+                    // already covered by a shorter prefix
+                    return;
+                }
+
+                boolean isSet = (address[i >> 3] & (0x80 >> (i & 7))) != 0;
+                int[] children = isSet ? oneChildren : zeroChildren;
+                int child = children[node];
+                if (child == NO_CHILD) {
+                    child = createNode();
+
+                    // arrays may have been replaced while creating the node
+                    children = isSet ? oneChildren : zeroChildren;
+                    children[node] = child;
+                }
+                node = child;
+            }
+
+            terminal[node] = true;
+        }
+
+        private Tree build() {
+            return new Tree(
+                Arrays.copyOf(zeroChildren, numNodes),
+                Arrays.copyOf(oneChildren, numNodes),
+                Arrays.copyOf(terminal, numNodes)
+            );
+        }
+    }
+
+    private AddressTrie(Tree ipv4, Tree ipv6) {
+        this.ipv4 = ipv4;
+        this.ipv6 = ipv6;
+    }
+
+    /**
+     * Builds a new trie from the given entries. Invalid entries are logged and
+     * skipped.
+     *
+     * @param entries addresses or CIDR ranges to match
+     * @return trie matching all valid entries
+     */
+    public static AddressTrie of(Collection<String> entries) {
+        TreeBuilder ipv4 = new TreeBuilder();
+        TreeBuilder ipv6 = new TreeBuilder();
+
+        for (String entry : entries) {
+            try {
+                addEntry(entry, ipv4, ipv6);
+            } catch (IllegalArgumentException ex) {
+                LOGGER.warn("Ignoring invalid IP address or range \"{}\": {}", entry, ex.getMessage());
+            }
+        }
+
+        return new AddressTrie(ipv4.build(), ipv6.build());
+    }
+
+    /**
+     * Checks if the given entry is a valid address or CIDR range as accepted by
+     * {@link #of(Collection)}.
+     *
+     * @param entry address or CIDR range to check
+     * @throws IllegalArgumentException if the entry is invalid, describing the reason
+     */
+    public static void validate(String entry) {
+        addEntry(entry, new TreeBuilder(), new TreeBuilder());
+    }
+
+    private static void addEntry(String entry, TreeBuilder ipv4, TreeBuilder ipv6) {
+        if (entry == null) {
+            throw new IllegalArgumentException("missing address");
+        }
+
+        entry = entry.trim();
+        String addressPart = entry;
+        Integer prefixLength = null;
+
+        int slashIndex = entry.indexOf('/');
+        if (slashIndex >= 0) {
+            addressPart = entry.substring(0, slashIndex);
+            try {
+                prefixLength = Integer.parseInt(entry.substring(slashIndex + 1));
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("invalid prefix length");
+            }
+        }
+
+        byte[] address = parseAddress(addressPart);
+        int maxBits = address.length * 8;
+        if (prefixLength == null) {
+            prefixLength = maxBits;
+        } else if ((prefixLength < 0) || (prefixLength > maxBits)) {
+            throw new IllegalArgumentException("prefix length must be between 0 and " + maxBits);
+        }
+
+        TreeBuilder builder = (address.length == 4) ? ipv4 : ipv6;
+        builder.add(address, prefixLength);
+    }
+
+    /**
+     * Parses an IPv4 or IPv6 address literal to its raw bytes. IPv6 literals
+     * mapping IPv4 addresses are returned as IPv4.
+     *
+     * @param s address literal
+     * @return raw address, 4 bytes for IPv4, 16 bytes for IPv6
+     */
+    static byte[] parseAddress(String s) {
+        if (s.indexOf(':') < 0) {
+            return parseIPv4Address(s);
+        }
+
+        // strings containing colons are only interpreted as IPv6 literals, never resolved
+        InetAddress address;
+        try {
+            address = InetAddress.getByName(s);
+        } catch (UnknownHostException ex) {
+            throw new IllegalArgumentException("invalid IPv6 address");
+        }
+
+        return address.getAddress();
+    }
+
+    private static byte[] parseIPv4Address(String s) {
+        String[] segments = s.split("\\.", -1);
+        if (segments.length != 4) {
+            throw new IllegalArgumentException("invalid IPv4 address");
+        }
+
+        byte[] address = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            String segment = segments[i];
+            if (segment.isEmpty() || (segment.length() > 3)) {
+                throw new IllegalArgumentException("invalid IPv4 address");
+            }
+
+            int value = 0;
+            for (int j = 0; j < segment.length(); j++) {
+                char ch = segment.charAt(j);
+                if ((ch < '0') || (ch > '9')) {
+                    throw new IllegalArgumentException("invalid IPv4 address");
+                }
+                value = value * 10 + (ch - '0');
+            }
+
+            if (value > 255) {
+                throw new IllegalArgumentException("invalid IPv4 address");
+            }
+
+            address[i] = (byte) value;
+        }
+
+        return address;
+    }
+
+    /**
+     * Checks if the given address matches any entry.
+     *
+     * @param address address to check
+     * @return true if matched, false if not
+     */
+    public boolean matches(InetAddress address) {
+        if (address instanceof Inet4Address) {
+            return ipv4.matches(address.getAddress());
+        } else if (address instanceof Inet6Address) {
+            return ipv6.matches(address.getAddress());
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,108 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Immutable content held in a sequence of byte arrays ("chunks") instead of a
+ * single contiguous array. Large documents can thus be written without
+ * repeatedly growing and copying a buffer, and served without ever being
+ * assembled into one array.
+ * <p>
+ * All chunks except the last one are completely filled. Chunks must not be
+ * modified once the content has been created.
+ * </p>
+ */
+public class ChunkedContent {
+    private final byte[][] chunks;
+    private final int size;
+
+    private static final byte[][] NO_CHUNKS = new byte[0][];
+
+    ChunkedContent(List<byte[]> chunks, int size) {
+        this.chunks = chunks.toArray(NO_CHUNKS);
+        this.size = size;
+    }
+
+    /**
+     * Wraps the given array as a single chunk without copying it.
+     *
+     * @param bytes content; ownership is transferred
+     * @return content consisting of a single chunk
+     */
+    public static ChunkedContent wrap(byte[] bytes) {
+        return new ChunkedContent(Collections.singletonList(bytes), bytes.length);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    int getChunkCount() {
+        return chunks.length;
+    }
+
+    /**
+     * Returns the chunk at given index. The array is shared and must not be
+     * modified.
+     *
+     * @param index chunk index
+     * @return chunk, may be only partially filled if it is the last one
+     */
+    byte[] getChunk(int index) {
+        return chunks[index];
+    }
+
+    /**
+     * Feeds the whole content to the given {@link MessageDigest}.
+     *
+     * @param digest digest to update
+     */
+    public void update(MessageDigest digest) {
+        for (byte[] chunk : chunks) {
+            digest.update(chunk);
+        }
+    }
+
+    /**
+     * Opens a new {@link InputStream} reading the content. Chunks are read in
+     * place, nothing is copied.
+     *
+     * @return stream reading the content from start
+     */
+    public InputStream openInputStream() {
+        Iterator<byte[]> iterator = Arrays.asList(chunks).iterator();
+        return new SequenceInputStream(new Enumeration<InputStream>() {
+            @Override
+            public boolean hasMoreElements() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                return new ByteArrayInputStream(iterator.next());
+            }
+        });
+    }
+
+    /**
+     * Writes the whole content to the given {@link OutputStream}.
+     *
+     * @param os stream to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(OutputStream os) throws IOException {
+        for (byte[] chunk : chunks) {
+            os.write(chunk);
+        }
+    }
+}
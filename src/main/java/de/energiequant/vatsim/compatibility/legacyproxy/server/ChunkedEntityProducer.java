@@ -0,0 +1,106 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Set;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+import org.apache.hc.core5.http.nio.DataStreamChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends {@link ChunkedContent} to a client. Chunks are handed to the channel
+ * directly as they are, so no copy of the content is made per response and
+ * any number of producers can share the same content.
+ */
+public class ChunkedEntityProducer implements AsyncEntityProducer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChunkedEntityProducer.class);
+
+    private final ChunkedContent content;
+    private final String contentType;
+
+    private int chunkIndex;
+    private ByteBuffer currentBuffer;
+    private int remaining;
+
+    public ChunkedEntityProducer(ChunkedContent content, ContentType contentType) {
+        this.content = content;
+        this.contentType = (contentType != null) ? contentType.toString() : null;
+        reset();
+    }
+
+    private void reset() {
+        chunkIndex = 0;
+        currentBuffer = null;
+        remaining = content.size();
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return content.size();
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public String getContentEncoding() {
+        return null;
+    }
+
+    @Override
+    public boolean isChunked() {
+        return false;
+    }
+
+    @Override
+    public Set<String> getTrailerNames() {
+        return null;
+    }
+
+    @Override
+    public int available() {
+        return remaining;
+    }
+
+    @Override
+    public void produce(DataStreamChannel channel) throws IOException {
+        while (true) {
+            if ((currentBuffer == null) || !currentBuffer.hasRemaining()) {
+                if (chunkIndex >= content.getChunkCount()) {
+                    channel.endStream();
+                    return;
+                }
+
+                // buffers only wrap the shared chunk, content is not copied
+                currentBuffer = ByteBuffer.wrap(content.getChunk(chunkIndex++)).asReadOnlyBuffer();
+            }
+
+            int written = channel.write(currentBuffer);
+            remaining -= written;
+            if (currentBuffer.hasRemaining()) {
+                // channel is saturated, we will be called again when it can accept more data
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void failed(Exception cause) {
+        LOGGER.debug("Failed to send content", cause);
+    }
+
+    @Override
+    public void releaseResources() {
+        reset();
+    }
+}
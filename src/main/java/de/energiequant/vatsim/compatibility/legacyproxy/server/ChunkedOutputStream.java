@@ -0,0 +1,105 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Collects written bytes into fixed-size chunks to create {@link ChunkedContent}.
+ * Unlike {@link java.io.ByteArrayOutputStream} already written data is never
+ * copied to grow the buffer and retrieving the result does not copy the whole
+ * content again; only the last, partially filled chunk is trimmed.
+ * <p>
+ * Not thread-safe.
+ * </p>
+ */
+public class ChunkedOutputStream extends OutputStream {
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private final int chunkSize;
+    private final List<byte[]> completedChunks = new ArrayList<>();
+    private byte[] currentChunk;
+    private int currentChunkLength;
+    private int size;
+    private boolean isFinished;
+
+    public ChunkedOutputStream() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    public ChunkedOutputStream(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunk size must be positive, got " + chunkSize);
+        }
+
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void write(int b) {
+        ensureWritableChunk();
+        currentChunk[currentChunkLength++] = (byte) b;
+        size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if ((off < 0) || (len < 0) || (off + len > b.length)) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        while (len > 0) {
+            ensureWritableChunk();
+
+            int copyLength = Math.min(len, chunkSize - currentChunkLength);
+            System.arraycopy(b, off, currentChunk, currentChunkLength, copyLength);
+            currentChunkLength += copyLength;
+            size += copyLength;
+            off += copyLength;
+            len -= copyLength;
+        }
+    }
+
+    private void ensureWritableChunk() {
+        if (isFinished) {
+            throw new IllegalStateException("content has already been finished");
+        }
+
+        if (currentChunk == null) {
+            currentChunk = new byte[chunkSize];
+            currentChunkLength = 0;
+        } else if (currentChunkLength == chunkSize) {
+            completedChunks.add(currentChunk);
+            currentChunk = new byte[chunkSize];
+            currentChunkLength = 0;
+        }
+    }
+
+    /**
+     * Finishes writing and returns all written data as {@link ChunkedContent}.
+     * No more data can be written afterwards.
+     *
+     * @return written content
+     */
+    public ChunkedContent toChunkedContent() {
+        if (!isFinished) {
+            isFinished = true;
+
+            if (currentChunkLength > 0) {
+                completedChunks.add(
+                    (currentChunkLength == chunkSize)
+                        ? currentChunk
+                        : Arrays.copyOf(currentChunk, currentChunkLength)
+                );
+            }
+            currentChunk = null;
+        }
+
+        return new ChunkedContent(completedChunks, size);
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,87 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOSession;
+import org.apache.hc.core5.reactor.IOSessionListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits the number of concurrently open client connections. Connections
+ * exceeding the limit are closed immediately after they have been accepted.
+ */
+public class ConnectionLimiter implements IOSessionListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionLimiter.class);
+
+    private final int maxConnections;
+    private final Set<IOSession> sessions = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final AtomicInteger numConnections = new AtomicInteger();
+
+    /**
+     * Creates a new limiter.
+     *
+     * @param maxConnections maximum number of concurrently open connections; 0 for unlimited
+     */
+    public ConnectionLimiter(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    @Override
+    public void connected(IOSession session) {
+        if (!sessions.add(session)) {
+            return;
+        }
+
+        int current = numConnections.incrementAndGet();
+        if ((maxConnections > 0) && (current > maxConnections)) {
+            LOGGER.warn("too many open connections ({}), closing connection from {}", current - 1, session.getRemoteAddress());
+            session.close(CloseMode.IMMEDIATE);
+        }
+    }
+
+    @Override
+    public void disconnected(IOSession session) {
+        if (sessions.remove(session)) {
+            numConnections.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void startTls(IOSession session) {
+        // not relevant
+    }
+
+    @Override
+    public void inputReady(IOSession session) {
+        // not relevant
+    }
+
+    @Override
+    public void outputReady(IOSession session) {
+        // not relevant
+    }
+
+    @Override
+    public void timeout(IOSession session) {
+        // not relevant
+    }
+
+    @Override
+    public void exception(IOSession session, Exception ex) {
+        // not relevant
+    }
+
+    /**
+     * Returns the number of currently open connections.
+     *
+     * @return number of open connections
+     */
+    public int getNumberOfConnections() {
+        return numConnections.get();
+    }
+}
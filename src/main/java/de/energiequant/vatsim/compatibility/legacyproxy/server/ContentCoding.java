@@ -0,0 +1,132 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Content codings documents can be served in, ordered by preference in case a
+ * client accepts multiple codings with equal quality.
+ */
+public enum ContentCoding {
+    GZIP("gzip", "x-gzip"),
+    DEFLATE("deflate"),
+    IDENTITY("identity");
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContentCoding.class);
+
+    private final String token;
+    private final String[] aliases;
+
+    private static final String WILDCARD = "*";
+    private static final double DEFAULT_QUALITY = 1.0;
+
+    /**
+     * Identity is acceptable unless excluded explicitly but should only be used
+     * if no other coding has been accepted, so it is given the lowest possible
+     * quality if not listed.
+     */
+    private static final double IMPLICIT_IDENTITY_QUALITY = 0.001;
+
+    ContentCoding(String token, String... aliases) {
+        this.token = token;
+        this.aliases = aliases;
+    }
+
+    /**
+     * Returns the token identifying this coding in HTTP headers.
+     *
+     * @return HTTP token
+     */
+    public String getToken() {
+        return token;
+    }
+
+    boolean matches(String s) {
+        if (token.equalsIgnoreCase(s)) {
+            return true;
+        }
+
+        for (String alias : aliases) {
+            if (alias.equalsIgnoreCase(s)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Selects the preferred coding for the given Accept-Encoding header value as
+     * specified by RFC 7231. Identity is used if the header is missing or no
+     * other coding is acceptable.
+     *
+     * @param acceptEncoding value of Accept-Encoding header, may be null
+     * @return coding to respond with
+     */
+    public static ContentCoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return IDENTITY;
+        }
+
+        Map<ContentCoding, Double> qualities = new EnumMap<>(ContentCoding.class);
+        Double wildcardQuality = null;
+
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String name = parts[0].trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+
+            double quality = parseQuality(parts);
+
+            if (WILDCARD.equals(name)) {
+                wildcardQuality = quality;
+                continue;
+            }
+
+            for (ContentCoding coding : values()) {
+                if (coding.matches(name)) {
+                    qualities.put(coding, quality);
+                }
+            }
+        }
+
+        ContentCoding best = IDENTITY;
+        double bestQuality = 0.0;
+        for (ContentCoding coding : values()) {
+            Double quality = qualities.get(coding);
+            if (quality == null) {
+                quality = (wildcardQuality != null) ? wildcardQuality : (coding == IDENTITY) ? IMPLICIT_IDENTITY_QUALITY : 0.0;
+            }
+
+            if (quality > bestQuality) {
+                best = coding;
+                bestQuality = quality;
+            }
+        }
+
+        return best;
+    }
+
+    private static double parseQuality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (!parameter.startsWith("q=") && !parameter.startsWith("Q=")) {
+                continue;
+            }
+
+            try {
+                return Double.parseDouble(parameter.substring(2).trim());
+            } catch (NumberFormatException ex) {
+                LOGGER.debug("Ignoring invalid quality in Accept-Encoding: \"{}\"", parameter);
+                return 0.0;
+            }
+        }
+
+        return DEFAULT_QUALITY;
+    }
+}
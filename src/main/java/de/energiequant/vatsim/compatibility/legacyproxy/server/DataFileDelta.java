@@ -0,0 +1,332 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes line-oriented deltas between legacy data files.
+ * <p>
+ * Each line of a section is identified by a key: the callsign (first field),
+ * extended by the logon time for client and prefile lines, or the name of a
+ * <code>KEY = value</code> line in the general section. A delta lists all
+ * lines which are new or have changed (prefixed by <code>+</code>, written in
+ * full) and the keys of all lines which have been removed (prefixed by
+ * <code>-</code>), grouped by section:
+ * </p>
+ * <pre>
+ * !DELTA:
+ * BASE = "etag of base file"
+ * TARGET = "etag of target file"
+ * !CLIENTS:
+ * +ABC123:1234567:...
+ * -DEF456:20210612102030
+ * </pre>
+ * <p>
+ * Bases are only retained as an {@link Index} of line hashes, so keeping
+ * several bases available costs little memory. Lines are processed as
+ * ISO-8859-1 which maps bytes to characters one by one, so content encoded in
+ * UTF-8 (quirk) is reproduced byte for byte.
+ * </p>
+ */
+public class DataFileDelta {
+    private static final Charset CHARSET = StandardCharsets.ISO_8859_1;
+
+    /**
+     * Index of the logon time field on client and prefile lines.
+     */
+    private static final int LOGON_TIME_FIELD_INDEX = 37;
+
+    private static final String SECTION_DELTA = "DELTA";
+    private static final String GENERAL_SEPARATOR = " = ";
+
+    private DataFileDelta() {
+        // utility class; hide constructor
+    }
+
+    /**
+     * Hashes of all lines of a data file by section and key.
+     */
+    public static class Index {
+        private final String eTag;
+        private final Map<String, Map<String, Long>> hashesBySection;
+
+        private Index(String eTag, Map<String, Map<String, Long>> hashesBySection) {
+            this.eTag = eTag;
+            this.hashesBySection = hashesBySection;
+        }
+
+        /**
+         * Returns the ETag of the indexed data file.
+         *
+         * @return quoted ETag
+         */
+        public String getETag() {
+            return eTag;
+        }
+    }
+
+    /**
+     * Builds deltas from multiple bases to a single target in just one pass
+     * over the target.
+     */
+    private static class Builder {
+        private final Index base;
+        private final ChunkedOutputStream cos = new ChunkedOutputStream(16 * 1024);
+        private final Writer writer = new BufferedWriter(new OutputStreamWriter(cos, CHARSET));
+        private Map<String, Long> baseSection;
+        private final Set<String> seenKeys = new HashSet<>();
+        private String section;
+        private boolean isSectionHeaderWritten;
+
+        private Builder(Index base, String targetETag) throws IOException {
+            this.base = base;
+
+            writer.write("; Changes to the legacy data file since the indicated base.\n");
+            writer.write("; Lines starting with + are new or changed, lines starting with - name keys of removed lines.\n");
+            writer.write("!" + SECTION_DELTA + ":\n");
+            writer.write("BASE" + GENERAL_SEPARATOR + base.eTag + "\n");
+            writer.write("TARGET" + GENERAL_SEPARATOR + targetETag + "\n");
+        }
+
+        private void startSection(String name) throws IOException {
+            finishSection();
+
+            section = name;
+            baseSection = base.hashesBySection.get(name);
+            if (baseSection == null) {
+                baseSection = new HashMap<>();
+            }
+            seenKeys.clear();
+            isSectionHeaderWritten = false;
+        }
+
+        private void finishSection() throws IOException {
+            if (section == null) {
+                return;
+            }
+
+            for (String key : baseSection.keySet()) {
+                if (!seenKeys.contains(key)) {
+                    writeSectionHeader();
+                    writer.write("-" + key + "\n");
+                }
+            }
+        }
+
+        private void writeSectionHeader() throws IOException {
+            if (!isSectionHeaderWritten) {
+                writer.write("!" + section + ":\n");
+                isSectionHeaderWritten = true;
+            }
+        }
+
+        private void line(String key, long hash, String line) throws IOException {
+            seenKeys.add(key);
+
+            Long baseHash = baseSection.get(key);
+            if ((baseHash == null) || (baseHash != hash)) {
+                writeSectionHeader();
+                writer.write("+" + line + "\n");
+            }
+        }
+
+        private ChunkedContent finish(Collection<String> targetSections) throws IOException {
+            finishSection();
+
+            // sections no longer present at all
+            for (Map.Entry<String, Map<String, Long>> entry : base.hashesBySection.entrySet()) {
+                if (targetSections.contains(entry.getKey())) {
+                    continue;
+                }
+
+                section = entry.getKey();
+                isSectionHeaderWritten = false;
+                for (String key : entry.getValue().keySet()) {
+                    writeSectionHeader();
+                    writer.write("-" + key + "\n");
+                }
+            }
+
+            writer.close();
+            return cos.toChunkedContent();
+        }
+    }
+
+    /**
+     * Result of {@link #compute(String, ChunkedContent, Collection)}.
+     */
+    public static class Result {
+        private final Index index;
+        private final Map<String, ChunkedContent> deltasByBaseETag;
+
+        private Result(Index index, Map<String, ChunkedContent> deltasByBaseETag) {
+            this.index = index;
+            this.deltasByBaseETag = deltasByBaseETag;
+        }
+
+        /**
+         * Returns the index of the target to compute future deltas against.
+         *
+         * @return index of target
+         */
+        public Index getIndex() {
+            return index;
+        }
+
+        /**
+         * Returns the deltas from each base to the target.
+         *
+         * @return deltas indexed by quoted ETag of their base
+         */
+        public Map<String, ChunkedContent> getDeltasByBaseETag() {
+            return deltasByBaseETag;
+        }
+    }
+
+    /**
+     * Indexes the given target data file and computes deltas from all given
+     * bases to it.
+     *
+     * @param targetETag quoted ETag of the target data file
+     * @param target     content of the target data file
+     * @param bases      indexes of base data files
+     * @return index of the target and deltas from all bases
+     */
+    public static Result compute(String targetETag, ChunkedContent target, Collection<Index> bases) {
+        try {
+            List<Builder> builders = new ArrayList<>();
+            for (Index base : bases) {
+                builders.add(new Builder(base, targetETag));
+            }
+
+            Map<String, Map<String, Long>> hashesBySection = new LinkedHashMap<>();
+            Map<String, Long> sectionHashes = null;
+            Map<String, Integer> keyOccurrences = new HashMap<>();
+
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(target.openInputStream(), CHARSET))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty() || line.startsWith(";")) {
+                        continue;
+                    }
+
+                    if (line.startsWith("!") && line.endsWith(":")) {
+                        String section = line.substring(1, line.length() - 1);
+                        sectionHashes = new LinkedHashMap<>();
+                        hashesBySection.put(section, sectionHashes);
+                        keyOccurrences.clear();
+
+                        for (Builder builder : builders) {
+                            builder.startSection(section);
+                        }
+                        continue;
+                    }
+
+                    if (sectionHashes == null) {
+                        // content before first section, should not exist
+                        continue;
+                    }
+
+                    String key = uniqueKey(keyOf(line), keyOccurrences);
+                    long hash = hash(line);
+                    sectionHashes.put(key, hash);
+
+                    for (Builder builder : builders) {
+                        builder.line(key, hash, line);
+                    }
+                }
+            }
+
+            Map<String, ChunkedContent> deltas = new HashMap<>();
+            for (Builder builder : builders) {
+                deltas.put(builder.base.eTag, builder.finish(hashesBySection.keySet()));
+            }
+
+            return new Result(new Index(targetETag, hashesBySection), deltas);
+        } catch (IOException ex) {
+            // should not happen when working in memory
+            throw new UncheckedIOException("Failed to compute data file delta", ex);
+        }
+    }
+
+    /**
+     * Creates a delta listing no changes, to be served to clients which already
+     * hold the current data file.
+     *
+     * @param eTag quoted ETag of the current data file, used as both base and target
+     * @return delta consisting only of the header
+     */
+    public static ChunkedContent empty(String eTag) {
+        try {
+            return new Builder(new Index(eTag, Collections.emptyMap()), eTag).finish(Collections.emptySet());
+        } catch (IOException ex) {
+            // should not happen when working in memory
+            throw new UncheckedIOException("Failed to create empty data file delta", ex);
+        }
+    }
+
+    static String keyOf(String line) {
+        int generalSeparatorIndex = line.indexOf(GENERAL_SEPARATOR);
+        int firstColonIndex = line.indexOf(':');
+        if ((firstColonIndex < 0) && (generalSeparatorIndex >= 0)) {
+            return line.substring(0, generalSeparatorIndex);
+        } else if (firstColonIndex < 0) {
+            return line;
+        }
+
+        String callsign = line.substring(0, firstColonIndex);
+
+        int fieldStart = firstColonIndex + 1;
+        for (int i = 1; i < LOGON_TIME_FIELD_INDEX; i++) {
+            int nextColon = line.indexOf(':', fieldStart);
+            if (nextColon < 0) {
+                return callsign;
+            }
+            fieldStart = nextColon + 1;
+        }
+
+        int fieldEnd = line.indexOf(':', fieldStart);
+        if (fieldEnd < 0) {
+            fieldEnd = line.length();
+        }
+
+        return callsign + ":" + line.substring(fieldStart, fieldEnd);
+    }
+
+    private static String uniqueKey(String key, Map<String, Integer> occurrences) {
+        int occurrence = occurrences.merge(key, 1, Integer::sum);
+        return (occurrence == 1) ? key : key + "#" + occurrence;
+    }
+
+    /**
+     * Calculates a 64-bit FNV-1a hash; {@link String#hashCode()} is too short
+     * to rule out missing changes by collision in practice.
+     *
+     * @param s string to hash
+     * @return hash
+     */
+    private static long hash(String s) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            hash ^= s.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
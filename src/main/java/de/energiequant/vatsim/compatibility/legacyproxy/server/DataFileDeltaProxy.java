@@ -0,0 +1,235 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.NameValuePair;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.apache.hc.core5.http.nio.AsyncResponseProducer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.net.URIBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.energiequant.vatsim.compatibility.legacyproxy.fetching.JsonDataFileFetcher;
+import de.energiequant.vatsim.compatibility.legacyproxy.utils.FutureHelper;
+
+/**
+ * Serves the changes of the legacy data file since a snapshot already held by
+ * the client, identified by its ETag: <code>?since=&lt;etag&gt;</code>
+ * <p>
+ * Deltas from a limited number of previous snapshots are computed once when a
+ * new snapshot becomes available (see {@link DataFileDelta}), requests only
+ * pick the matching precompressed document. If the client's snapshot is
+ * unknown or too old, the full current data file is served instead; clients
+ * can tell both apart by the <code>X-Delta-Base</code> header which is only
+ * present on deltas.
+ * </p>
+ * <p>
+ * Like {@link JsonToLegacyDataFileProxy}, snapshots which are too old are not
+ * served; requests wait for the next snapshot instead.
+ * </p>
+ */
+public class DataFileDeltaProxy extends GetOnlyRequestHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DataFileDeltaProxy.class);
+
+    private static final String PARAMETER_SINCE = "since";
+    private static final String HEADER_DELTA_BASE = "X-Delta-Base";
+    private static final String HEADER_DELTA_TARGET = "X-Delta-Target";
+
+    /**
+     * Number of previous snapshots deltas are provided for. Upstream updates
+     * roughly every 15 seconds, so this covers the last few minutes.
+     */
+    private static final int MAX_RETAINED_BASES = 20;
+
+    private final JsonDataFileFetcher dataFileFetcher;
+    private final LegacyDataFileSnapshotter snapshotter;
+    private final ScheduledExecutorService timeoutScheduler;
+
+    private final Deque<DataFileDelta.Index> retainedBases = new ArrayDeque<>();
+    private final AtomicReference<State> state = new AtomicReference<>();
+
+    private static class State {
+        private final EncodedDocument snapshot;
+        private final Map<String, EncodedDocument> deltasByBaseETag;
+
+        private State(EncodedDocument snapshot, Map<String, EncodedDocument> deltasByBaseETag) {
+            this.snapshot = snapshot;
+            this.deltasByBaseETag = deltasByBaseETag;
+        }
+    }
+
+    /**
+     * Creates a new proxy.
+     *
+     * @param dataFileFetcher  fetcher to be notified about requests
+     * @param snapshotter      provides the latest snapshot
+     * @param timeoutScheduler schedules timeouts while waiting for a snapshot
+     */
+    public DataFileDeltaProxy(JsonDataFileFetcher dataFileFetcher, LegacyDataFileSnapshotter snapshotter, ScheduledExecutorService timeoutScheduler) {
+        this.dataFileFetcher = dataFileFetcher;
+        this.snapshotter = snapshotter;
+        this.timeoutScheduler = timeoutScheduler;
+    }
+
+    /**
+     * Computes deltas from all retained previous snapshots to the given new
+     * snapshot. Intended to be registered as a listener to
+     * {@link LegacyDataFileSnapshotter}.
+     *
+     * @param snapshot new snapshot
+     */
+    public void onSnapshot(EncodedDocument snapshot) {
+        synchronized (retainedBases) {
+            DataFileDelta.Result result = DataFileDelta.compute(snapshot.getETag(), snapshot.getContent(), retainedBases);
+
+            Map<String, EncodedDocument> deltas = new HashMap<>();
+            for (Map.Entry<String, ChunkedContent> entry : result.getDeltasByBaseETag().entrySet()) {
+                deltas.put(entry.getKey(), encodeDelta(entry.getValue(), snapshot));
+            }
+
+            // clients already holding the current snapshot get an empty delta
+            deltas.put(snapshot.getETag(), encodeDelta(DataFileDelta.empty(snapshot.getETag()), snapshot));
+
+            state.set(new State(snapshot, Collections.unmodifiableMap(deltas)));
+
+            retainedBases.addLast(result.getIndex());
+            while (retainedBases.size() > MAX_RETAINED_BASES) {
+                retainedBases.removeFirst();
+            }
+
+            LOGGER.debug("Computed {} data file deltas to {}", deltas.size(), snapshot.getETag());
+        }
+    }
+
+    private static EncodedDocument encodeDelta(ChunkedContent delta, EncodedDocument snapshot) {
+        return new EncodedDocument(delta, snapshot.getContentType(), snapshot.getDataTimestamp()).precompress();
+    }
+
+    @Override
+    protected void handleGet(final Message<HttpRequest, Void> message, final ResponseTrigger responseTrigger, final HttpContext context) throws HttpException, IOException {
+        LOGGER.debug("Processing request for data file delta");
+
+        dataFileFetcher.markRequested();
+
+        CompletableFuture<EncodedDocument> snapshotRequest = snapshotter.requestSnapshot(JsonToLegacyDataFileProxy.MAXIMUM_SNAPSHOT_AGE);
+
+        // a timeout only needs to be scheduled if the request actually has to wait for a snapshot
+        CompletableFuture<EncodedDocument> awaitedSnapshot = snapshotRequest.isDone()
+            ? snapshotRequest
+            : FutureHelper.withTimeout(snapshotRequest, JsonToLegacyDataFileProxy.SNAPSHOT_WAIT_TIMEOUT, timeoutScheduler);
+
+        awaitedSnapshot.whenComplete((snapshot, ex) -> {
+            if (ex != null) {
+                LOGGER.warn("No legacy data file snapshot is available; unable to serve request for data file delta");
+
+                // give up on the snapshot request, it is not needed any longer
+                snapshotRequest.cancel(false);
+
+                submitResponseAsynchronously(
+                    responseTrigger,
+                    createTextResponse(HttpStatus.SC_SERVICE_UNAVAILABLE, "Data file is currently unavailable"),
+                    context
+                );
+                return;
+            }
+
+            submitResponseAsynchronously(responseTrigger, createResponse(message.getHead(), snapshot), context);
+        });
+    }
+
+    private AsyncResponseProducer createResponse(HttpRequest request, EncodedDocument snapshot) {
+        String since = getBaseETag(request);
+        if (since == null) {
+            return createDocumentResponse(request, snapshot);
+        }
+
+        // deltas may not have been computed yet if the snapshot has just been converted
+        String targetETag = snapshot.getETag();
+        State current = state.get();
+        EncodedDocument delta = null;
+        if ((current != null) && targetETag.equals(current.snapshot.getETag())) {
+            delta = current.deltasByBaseETag.get(since);
+        }
+
+        if (delta == null) {
+            LOGGER.debug("No delta available since {}, serving full data file", since);
+            return createDocumentResponse(request, snapshot, new BasicHeader(HEADER_DELTA_TARGET, targetETag));
+        }
+
+        return createDocumentResponse(
+            request,
+            delta,
+            new BasicHeader(HEADER_DELTA_BASE, since),
+            new BasicHeader(HEADER_DELTA_TARGET, targetETag)
+        );
+    }
+
+    private static String getBaseETag(HttpRequest request) {
+        try {
+            for (NameValuePair parameter : new URIBuilder(request.getUri()).getQueryParams()) {
+                if (PARAMETER_SINCE.equals(parameter.getName())) {
+                    return normalizeETag(parameter.getValue());
+                }
+            }
+        } catch (URISyntaxException ex) {
+            LOGGER.debug("Unable to parse request URI", ex);
+        }
+
+        return null;
+    }
+
+    /**
+     * Normalizes an ETag as provided by a client to the quoted identity ETag of
+     * a snapshot. Clients may quote or not, mark it as weak or pass the ETag of
+     * a compressed variant.
+     *
+     * @param eTag ETag as provided by client, may be null
+     * @return quoted identity ETag; null if empty
+     */
+    static String normalizeETag(String eTag) {
+        if (eTag == null) {
+            return null;
+        }
+
+        String s = eTag.trim();
+        if (s.startsWith("W/")) {
+            s = s.substring(2);
+        }
+
+        if (s.startsWith("\"")) {
+            s = s.substring(1);
+        }
+
+        if (s.endsWith("\"")) {
+            s = s.substring(0, s.length() - 1);
+        }
+
+        for (ContentCoding coding : ContentCoding.values()) {
+            String suffix = "-" + coding.getToken();
+            if (s.endsWith(suffix)) {
+                s = s.substring(0, s.length() - suffix.length());
+                break;
+            }
+        }
+
+        if (s.isEmpty()) {
+            return null;
+        }
+
+        return "\"" + s + "\"";
+    }
+}
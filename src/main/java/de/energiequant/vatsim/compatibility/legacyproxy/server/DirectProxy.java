@@ -3,80 +3,135 @@ package de.energiequant.vatsim.compatibility.legacyproxy.server;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.concurrent.ExecutionException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.HttpException;
 import org.apache.hc.core5.http.HttpRequest;
 import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.http.Message;
-import org.apache.hc.core5.http.nio.entity.AsyncEntityProducers;
-import org.apache.hc.core5.http.nio.support.AsyncResponseBuilder;
 import org.apache.hc.core5.http.protocol.HttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import de.energiequant.common.webdataretrieval.DefaultHttpRetrievalDecoders;
-import de.energiequant.common.webdataretrieval.HttpPromiseBuilder;
-import de.energiequant.common.webdataretrieval.HttpRetrieval;
-import de.energiequant.common.webdataretrieval.RetrievedData;
-import de.energiequant.vatsim.compatibility.legacyproxy.AppConstants;
+import de.energiequant.vatsim.compatibility.legacyproxy.fetching.UpstreamClient;
+import de.energiequant.vatsim.compatibility.legacyproxy.fetching.UpstreamResponse;
+import de.energiequant.vatsim.compatibility.legacyproxy.utils.SingleFlight;
 
+/**
+ * Proxies a single upstream URL. Responses are cached for a configurable time
+ * to live. If upstream already uses the wanted output character set, the raw
+ * bytes are passed through with their original content type; otherwise the
+ * content is transcoded once per retrieval.
+ */
 public class DirectProxy extends GetOnlyRequestHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(DirectProxy.class);
 
     private final String url;
     private final Charset outputCharacterSet;
     private final ContentType outputContentType;
-    private final HttpPromiseBuilder<RetrievedData<String>> promiseBuilder;
+    private final UpstreamClient upstreamClient;
+    private final Duration timeToLive;
+    private final Executor workerPool;
+    private final SingleFlight<String, EncodedDocument> inFlightRequests = new SingleFlight<>();
+    private final AtomicReference<EncodedDocument> cachedDocument = new AtomicReference<>();
 
     private static final Charset FALLBACK_CHARACTER_SET = StandardCharsets.ISO_8859_1;
 
-    public DirectProxy(String url, Charset outputCharacterSet, ContentType outputContentType) {
+    /**
+     * Creates a new proxy.
+     *
+     * @param url                upstream URL to proxy
+     * @param outputCharacterSet character set to serve content in
+     * @param outputContentType  content type to indicate if content had to be transcoded
+     * @param upstreamClient     client to retrieve data from upstream
+     * @param timeToLive         how long to serve retrieved data before requesting it again; zero disables caching
+     * @param workerPool         executes transcoding and compression
+     */
+    public DirectProxy(String url, Charset outputCharacterSet, ContentType outputContentType, UpstreamClient upstreamClient, Duration timeToLive, Executor workerPool) {
         this.url = url;
         this.outputCharacterSet = outputCharacterSet;
         this.outputContentType = outputContentType;
-
-        DefaultHttpRetrievalDecoders decoders = new DefaultHttpRetrievalDecoders();
-        promiseBuilder = new HttpPromiseBuilder<>(
-            decoders.withMetaData(
-                decoders.bodyAsStringWithHeaderCharacterSet(FALLBACK_CHARACTER_SET)
-            )
-        ).withConfiguration(
-            new HttpRetrieval()
-                .setUserAgent(AppConstants.USER_AGENT)
-                .setTimeout(AppConstants.EXTERNAL_REQUEST_TIMEOUT)
-        );
+        this.upstreamClient = upstreamClient;
+        this.timeToLive = timeToLive;
+        this.workerPool = workerPool;
     }
 
     @Override
     protected void handleGet(final Message<HttpRequest, Void> message, final ResponseTrigger responseTrigger, final HttpContext context) throws HttpException, IOException {
         LOGGER.debug("Processing request to directly proxy {}", url);
 
-        RetrievedData<String> retrievedData = null;
-        try {
-            retrievedData = promiseBuilder.requestByGet(url).get();
-        } catch (InterruptedException | ExecutionException ex) {
-            LOGGER.warn("Failed to retrieve data from {}", url, ex);
+        EncodedDocument cached = cachedDocument.get();
+        if ((cached != null) && !cached.isOlderThan(timeToLive)) {
+            responseTrigger.submitResponse(createDocumentResponse(message.getHead(), cached), context);
+            return;
         }
 
-        if (retrievedData == null) {
-            responseTrigger.submitResponse(
-                AsyncResponseBuilder.create(HttpStatus.SC_BAD_GATEWAY)
-                                    .setEntity(AsyncEntityProducers.create("Request to upstream server failed", ContentType.TEXT_PLAIN))
-                                    .build(),
-                context
-            );
-            return;
+        // concurrent client requests share a single upstream request;
+        // response is submitted when it completes
+        inFlightRequests.request(url, this::retrieve)
+                        .whenComplete((document, ex) -> {
+                            if (ex == null) {
+                                submitResponseAsynchronously(
+                                    responseTrigger,
+                                    createDocumentResponse(message.getHead(), document),
+                                    context
+                                );
+                                return;
+                            }
+
+                            // outdated data is better than no data at all
+                            EncodedDocument stale = cachedDocument.get();
+                            if (stale != null) {
+                                LOGGER.warn("Failed to retrieve data from {}, serving outdated copy", url, ex);
+                                submitResponseAsynchronously(
+                                    responseTrigger,
+                                    createDocumentResponse(message.getHead(), stale),
+                                    context
+                                );
+                                return;
+                            }
+
+                            LOGGER.warn("Failed to retrieve data from {}", url, ex);
+                            submitResponseAsynchronously(
+                                responseTrigger,
+                                createTextResponse(HttpStatus.SC_BAD_GATEWAY, "Request to upstream server failed"),
+                                context
+                            );
+                        });
+    }
+
+    private CompletableFuture<EncodedDocument> retrieve() {
+        return upstreamClient.get(url)
+                             .thenApplyAsync(this::encode, workerPool)
+                             .thenApply(document -> {
+                                 if (!timeToLive.isZero()) {
+                                     cachedDocument.set(document);
+                                 }
+                                 return document;
+                             });
+    }
+
+    private EncodedDocument encode(UpstreamResponse response) {
+        Charset upstreamCharacterSet = response.getCharset().orElse(FALLBACK_CHARACTER_SET);
+
+        if (upstreamCharacterSet.equals(outputCharacterSet)) {
+            LOGGER.debug("Passing through {} bytes retrieved from {}", response.getBody().length, url);
+            return new EncodedDocument(
+                response.getBody(),
+                response.getContentType().orElse(outputContentType),
+                response.getLastModified().orElse(null)
+            ).precompress();
         }
 
-        responseTrigger.submitResponse(
-            AsyncResponseBuilder.create(HttpStatus.SC_OK)
-                                .setEntity(AsyncEntityProducers.create(retrievedData.getData().getBytes(outputCharacterSet),
-                                                                       outputContentType
-                                ))
-                                .build(),
-            context
-        );
+        LOGGER.debug("Transcoding data retrieved from {} from {} to {}", url, upstreamCharacterSet, outputCharacterSet);
+        return new EncodedDocument(
+            new String(response.getBody(), upstreamCharacterSet).getBytes(outputCharacterSet),
+            outputContentType,
+            response.getLastModified().orElse(null)
+        ).precompress();
     }
 }
@@ -0,0 +1,355 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Immutable, fully encoded document ready to be served to any number of
+ * clients. Content is only encoded once when the document is created; serving
+ * it does not involve any conversion or copying. Content is held as
+ * {@link ChunkedContent} so large documents never need to be assembled into a
+ * single array.
+ * <p>
+ * Validators for conditional requests are derived once on creation: the ETag
+ * is a hash of the content, the last modification time is taken from the data
+ * timestamp (or encoding time if unknown).
+ * </p>
+ * <p>
+ * Compressed {@link Variant}s are generated at most once per document, either
+ * in advance by {@link #precompress()} or on first request.
+ * </p>
+ */
+public class EncodedDocument {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EncodedDocument.class);
+
+    private final ChunkedContent content;
+    private final ContentType contentType;
+    private final Instant dataTimestamp;
+    private final Instant encodingTimestamp;
+    private final String eTag;
+    private final Instant lastModified;
+    private final Variant identity;
+    private final Map<ContentCoding, Variant> compressedVariants = new ConcurrentHashMap<>();
+    private volatile boolean isStale = false;
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    /**
+     * Number of bytes of the content hash to use for ETags; the full hash is
+     * not needed to tell documents apart.
+     */
+    private static final int ETAG_HASH_LENGTH = 16;
+
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Documents smaller than this are always served uncompressed as compression
+     * would not save enough to be worth it.
+     */
+    private static final int MINIMUM_COMPRESSIBLE_SIZE = 256;
+
+    /**
+     * Creates a new document. The given content must not be modified afterwards.
+     *
+     * @param content       encoded content; ownership is transferred to the document
+     * @param contentType   content type to be indicated to clients
+     * @param dataTimestamp timestamp of the data the document has been generated from, may be null if unknown
+     */
+    public EncodedDocument(byte[] content, ContentType contentType, Instant dataTimestamp) {
+        this(ChunkedContent.wrap(content), contentType, dataTimestamp);
+    }
+
+    /**
+     * Creates a new document from chunked content.
+     *
+     * @param content       encoded content
+     * @param contentType   content type to be indicated to clients
+     * @param dataTimestamp timestamp of the data the document has been generated from, may be null if unknown
+     */
+    public EncodedDocument(ChunkedContent content, ContentType contentType, Instant dataTimestamp) {
+        this.content = content;
+        this.contentType = contentType;
+        this.dataTimestamp = dataTimestamp;
+        this.encodingTimestamp = Instant.now();
+        String hash = hash(content);
+        this.eTag = "\"" + hash + "\"";
+
+        // HTTP dates only have a resolution of seconds
+        this.lastModified = ((dataTimestamp != null) ? dataTimestamp : encodingTimestamp).truncatedTo(ChronoUnit.SECONDS);
+
+        this.identity = new Variant(ContentCoding.IDENTITY, content, eTag);
+    }
+
+    /**
+     * Represents the document's content in a specific {@link ContentCoding}.
+     * Each variant has an ETag of its own as required by RFC 7232.
+     */
+    public class Variant {
+        private final ContentCoding coding;
+        private final ChunkedContent encodedContent;
+        private final String variantETag;
+
+        private Variant(ContentCoding coding, ChunkedContent encodedContent, String variantETag) {
+            this.coding = coding;
+            this.encodedContent = encodedContent;
+            this.variantETag = variantETag;
+        }
+
+        public ContentCoding getCoding() {
+            return coding;
+        }
+
+        public int getSize() {
+            return encodedContent.size();
+        }
+
+        /**
+         * Returns the content as encoded for this variant. The content is shared and
+         * must not be modified.
+         *
+         * @return encoded content
+         */
+        ChunkedContent getEncodedContent() {
+            return encodedContent;
+        }
+
+        /**
+         * Returns the strong entity tag of this variant, including quotes.
+         *
+         * @return quoted entity tag
+         */
+        public String getETag() {
+            return variantETag;
+        }
+
+        public Instant getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Creates a new producer to send this variant to a client. Content encoding
+         * needs to be indicated by the response headers.
+         *
+         * @return new producer for the variant's content
+         */
+        public AsyncEntityProducer createEntityProducer() {
+            return new ChunkedEntityProducer(encodedContent, contentType);
+        }
+    }
+
+    /**
+     * Returns the document encoded in the given {@link ContentCoding}. Compressed
+     * variants are only generated once and shared by all following calls. If the
+     * document is too small to be worth compressing, the identity variant is
+     * returned instead.
+     *
+     * @param coding wanted content coding
+     * @return variant of the document, check {@link Variant#getCoding()} for the actual coding
+     */
+    public Variant getVariant(ContentCoding coding) {
+        if ((coding == ContentCoding.IDENTITY) || (content.size() < MINIMUM_COMPRESSIBLE_SIZE)) {
+            return identity;
+        }
+
+        return compressedVariants.computeIfAbsent(coding, this::compress);
+    }
+
+    /**
+     * Generates all compressed variants in advance so requests do not need to
+     * wait for compression.
+     *
+     * @return this instance for method-chaining
+     */
+    public EncodedDocument precompress() {
+        for (ContentCoding coding : ContentCoding.values()) {
+            getVariant(coding);
+        }
+
+        return this;
+    }
+
+    /**
+     * Marks this document as stale, i.e. it has not been generated from current
+     * upstream data but restored from a previous run.
+     *
+     * @return this instance for method-chaining
+     */
+    public EncodedDocument markStale() {
+        isStale = true;
+        return this;
+    }
+
+    /**
+     * Indicates if this document has been restored from a previous run (see
+     * {@link #markStale()}).
+     *
+     * @return true if stale, false if generated from current data
+     */
+    public boolean isStale() {
+        return isStale;
+    }
+
+    private Variant compress(ContentCoding coding) {
+        ChunkedOutputStream cos = new ChunkedOutputStream(compressedChunkSize());
+        try {
+            switch (coding) {
+                case GZIP:
+                    writeGzip(cos);
+                    break;
+
+                case DEFLATE:
+                    writeDeflate(cos);
+                    break;
+
+                default:
+                    throw new IllegalArgumentException("Unsupported content coding: " + coding);
+            }
+        } catch (IOException ex) {
+            // should not happen when writing to memory
+            throw new IllegalStateException("Failed to compress document to " + coding, ex);
+        }
+
+        ChunkedContent compressed = cos.toChunkedContent();
+        LOGGER.debug("Compressed {} bytes to {} bytes using {}", content.size(), compressed.size(), coding.getToken());
+
+        String compressedETag = eTag.substring(0, eTag.length() - 1) + "-" + coding.getToken() + "\"";
+        return new Variant(coding, compressed, compressedETag);
+    }
+
+    private int compressedChunkSize() {
+        // text usually compresses to less than a quarter, no need for full chunks on small documents
+        return Math.max(MINIMUM_COMPRESSIBLE_SIZE, Math.min(ChunkedOutputStream.DEFAULT_CHUNK_SIZE, content.size() / 4));
+    }
+
+    private void writeGzip(OutputStream target) throws IOException {
+        try (
+            OutputStream os = new GZIPOutputStream(target) {
+                {
+                    def.setLevel(Deflater.BEST_COMPRESSION);
+                }
+            }
+        ) {
+            content.writeTo(os);
+        }
+    }
+
+    private void writeDeflate(OutputStream target) throws IOException {
+        // HTTP "deflate" actually is the zlib format as written by DeflaterOutputStream
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (OutputStream os = new DeflaterOutputStream(target, deflater)) {
+            content.writeTo(os);
+        } finally {
+            // custom deflaters are not ended by the stream but hold native memory
+            deflater.end();
+        }
+    }
+
+    private static String hash(ChunkedContent content) {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            // all Java platforms are required to support SHA-256
+            throw new IllegalStateException(HASH_ALGORITHM + " is unavailable", ex);
+        }
+
+        content.update(messageDigest);
+        byte[] digest = messageDigest.digest();
+
+        byte[] hex = new byte[ETAG_HASH_LENGTH * 2];
+        for (int i = 0; i < ETAG_HASH_LENGTH; i++) {
+            hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xF];
+        }
+
+        return new String(hex, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Creates a new producer to send the content to a client. Producers are not
+     * shared between responses but all of them read from the same content.
+     *
+     * @return new producer for the encoded content
+     */
+    public AsyncEntityProducer createEntityProducer() {
+        return new ChunkedEntityProducer(content, contentType);
+    }
+
+    public ContentType getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Returns the uncompressed content. The content is shared and must not be
+     * modified.
+     *
+     * @return uncompressed content
+     */
+    public ChunkedContent getContent() {
+        return content;
+    }
+
+    public int getSize() {
+        return content.size();
+    }
+
+    /**
+     * Returns the timestamp of the data the document has been generated from.
+     *
+     * @return timestamp of data; null if unknown
+     */
+    public Instant getDataTimestamp() {
+        return dataTimestamp;
+    }
+
+    public Instant getEncodingTimestamp() {
+        return encodingTimestamp;
+    }
+
+    /**
+     * Returns the strong entity tag of this document, including quotes as
+     * required for the HTTP header.
+     *
+     * @return quoted entity tag
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Returns the last modification time to be indicated to clients, truncated
+     * to seconds.
+     *
+     * @return last modification time
+     */
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Checks if the document has been encoded longer ago than the given
+     * {@link Duration}.
+     *
+     * @param maximumAge maximum age to accept
+     * @return true if older than the given maximum age, false if not
+     */
+    public boolean isOlderThan(Duration maximumAge) {
+        return encodingTimestamp.plus(maximumAge).isBefore(Instant.now());
+    }
+}
@@ -0,0 +1,166 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.Method;
+import org.apache.hc.core5.http.impl.BasicEntityDetails;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.apache.hc.core5.http.nio.AsyncServerExchangeHandler;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.nio.DataStreamChannel;
+import org.apache.hc.core5.http.nio.ResponseChannel;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds a single Server-Sent Events stream open for {@link SnapshotEventPublisher}.
+ * Output is only requested from the I/O reactor when there is something to
+ * send, so idle subscribers do not consume any resources besides their
+ * connection.
+ */
+public class EventStreamHandler implements AsyncServerExchangeHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventStreamHandler.class);
+
+    private static final ContentType CONTENT_TYPE = ContentType.create("text/event-stream", "UTF-8");
+    private static final String HEADER_LAST_EVENT_ID = "Last-Event-ID";
+
+    /**
+     * Clients not reading their stream will not receive more than this number of
+     * pending bytes; older events are dropped in favor of newer ones as only the
+     * latest snapshot is of interest.
+     */
+    private static final int MAX_QUEUED_BYTES = 16 * 1024;
+
+    private final SnapshotEventPublisher publisher;
+    private final Queue<ByteBuffer> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedBytes = new AtomicInteger();
+    private volatile DataStreamChannel channel;
+    private volatile ByteBuffer current;
+
+    EventStreamHandler(SnapshotEventPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    @Override
+    public void handleRequest(HttpRequest request, EntityDetails entityDetails, ResponseChannel responseChannel, HttpContext context) throws HttpException, IOException {
+        if (!Method.GET.isSame(request.getMethod())) {
+            responseChannel.sendResponse(new BasicHttpResponse(HttpStatus.SC_METHOD_NOT_ALLOWED), null, context);
+            return;
+        }
+
+        Header lastEventIdHeader = request.getFirstHeader(HEADER_LAST_EVENT_ID);
+        String lastEventId = (lastEventIdHeader != null) ? lastEventIdHeader.getValue() : null;
+
+        // preamble is queued on subscription, so output will be requested right away
+        publisher.subscribe(this, lastEventId);
+
+        HttpResponse response = new BasicHttpResponse(HttpStatus.SC_OK);
+        response.addHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        responseChannel.sendResponse(response, new BasicEntityDetails(-1, CONTENT_TYPE), context);
+    }
+
+    /**
+     * Queues data to be sent to the client.
+     *
+     * @param data       encoded data, shared and not modified
+     * @param replaceOld if other pending data may be dropped in case the client does not keep up
+     */
+    void enqueue(byte[] data, boolean replaceOld) {
+        if (replaceOld && (queuedBytes.get() + data.length > MAX_QUEUED_BYTES)) {
+            LOGGER.debug("Event stream client does not keep up, dropping pending events");
+            ByteBuffer dropped;
+            while ((dropped = queue.poll()) != null) {
+                queuedBytes.addAndGet(-dropped.remaining());
+            }
+        }
+
+        queue.add(ByteBuffer.wrap(data).asReadOnlyBuffer());
+        queuedBytes.addAndGet(data.length);
+
+        DataStreamChannel myChannel = channel;
+        if (myChannel != null) {
+            myChannel.requestOutput();
+        }
+    }
+
+    void enqueueIfIdle(byte[] data) {
+        if (queue.isEmpty() && ((current == null) || !current.hasRemaining())) {
+            enqueue(data, false);
+        }
+    }
+
+    @Override
+    public int available() {
+        int available = queuedBytes.get();
+        ByteBuffer myCurrent = current;
+        if (myCurrent != null) {
+            available += myCurrent.remaining();
+        }
+        return available;
+    }
+
+    @Override
+    public void produce(DataStreamChannel channel) throws IOException {
+        this.channel = channel;
+
+        while (true) {
+            if ((current == null) || !current.hasRemaining()) {
+                current = queue.poll();
+                if (current == null) {
+                    // nothing left to send, output will be requested again on next event
+                    return;
+                }
+                queuedBytes.addAndGet(-current.remaining());
+            }
+
+            channel.write(current);
+            if (current.hasRemaining()) {
+                // channel is saturated, we will be called again when it can accept more data
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void updateCapacity(CapacityChannel capacityChannel) throws IOException {
+        // requests have no content
+    }
+
+    @Override
+    public void consume(ByteBuffer src) throws IOException {
+        // requests have no content
+    }
+
+    @Override
+    public void streamEnd(List<? extends Header> trailers) throws HttpException, IOException {
+        // requests have no content
+    }
+
+    @Override
+    public void failed(Exception cause) {
+        LOGGER.debug("Event stream failed", cause);
+        publisher.unsubscribe(this);
+    }
+
+    @Override
+    public void releaseResources() {
+        publisher.unsubscribe(this);
+        queue.clear();
+        queuedBytes.set(0);
+        current = null;
+    }
+}
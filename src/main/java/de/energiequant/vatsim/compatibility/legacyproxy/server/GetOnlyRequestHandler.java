@@ -1,14 +1,23 @@
 package de.energiequant.vatsim.compatibility.legacyproxy.server;
 
 import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
 
 import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpRequest;
 import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.http.Message;
 import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncResponseProducer;
 import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
 import org.apache.hc.core5.http.nio.entity.AsyncEntityProducers;
 import org.apache.hc.core5.http.nio.entity.NoopEntityConsumer;
@@ -21,6 +30,17 @@ import org.slf4j.LoggerFactory;
 public abstract class GetOnlyRequestHandler implements AsyncServerRequestHandler<Message<HttpRequest, Void>> {
     private static final Logger LOGGER = LoggerFactory.getLogger(GetOnlyRequestHandler.class);
 
+    /**
+     * Warning as defined by RFC 7234 to indicate a stale document.
+     */
+    private static final String STALE_WARNING = "110 - \"Response is Stale\"";
+
+    /**
+     * Formats HTTP dates as preferred by RFC 7231 (IMF-fixdate).
+     */
+    private static final DateTimeFormatter HTTP_DATE_FORMATTER = DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US)
+                                                                                  .withZone(ZoneOffset.UTC);
+
     @Override
     public AsyncRequestConsumer<Message<HttpRequest, Void>> prepare(final HttpRequest request, final EntityDetails entityDetails, final HttpContext context) throws HttpException {
         return new BasicRequestConsumer<>(entityDetails != null ? new NoopEntityConsumer() : null);
@@ -46,4 +66,150 @@ public abstract class GetOnlyRequestHandler implements AsyncServerRequestHandler
     }
 
     protected abstract void handleGet(final Message<HttpRequest, Void> message, final ResponseTrigger responseTrigger, final HttpContext context) throws HttpException, IOException;
+
+    /**
+     * Creates a simple plain text response.
+     *
+     * @param statusCode HTTP status code
+     * @param text       plain text to respond with
+     * @return response to be submitted
+     */
+    protected static AsyncResponseProducer createTextResponse(int statusCode, String text) {
+        return AsyncResponseBuilder.create(statusCode)
+                                   .setEntity(AsyncEntityProducers.create(text, ContentType.TEXT_PLAIN))
+                                   .build();
+    }
+
+    /**
+     * Submits a response after {@link #handleGet(Message, ResponseTrigger, HttpContext)}
+     * has already returned, for example when an asynchronous operation completes.
+     * Errors cannot be propagated to the server at that point and are only logged.
+     *
+     * @param responseTrigger trigger as originally provided to the handler
+     * @param response        response to submit
+     * @param context         context as originally provided to the handler
+     */
+    protected static void submitResponseAsynchronously(ResponseTrigger responseTrigger, AsyncResponseProducer response, HttpContext context) {
+        try {
+            responseTrigger.submitResponse(response, context);
+        } catch (HttpException | IOException | RuntimeException ex) {
+            LOGGER.warn("Failed to submit response", ex);
+        }
+    }
+
+    /**
+     * Creates a response for the given {@link EncodedDocument} honoring
+     * conditional request headers. The document is served in the
+     * {@link ContentCoding} preferred by the client. If the client already holds
+     * the current document, a 304 response without body is created. All
+     * responses indicate the served variant's ETag and the last modification
+     * time. Stale documents are indicated by a Warning header.
+     *
+     * @param request           request to create a response for
+     * @param document          document to serve
+     * @param additionalHeaders further headers to add to the response
+     * @return response to be submitted
+     */
+    protected static AsyncResponseProducer createDocumentResponse(HttpRequest request, EncodedDocument document, Header... additionalHeaders) {
+        Header acceptEncoding = request.getFirstHeader(HttpHeaders.ACCEPT_ENCODING);
+        ContentCoding coding = ContentCoding.negotiate((acceptEncoding != null) ? acceptEncoding.getValue() : null);
+        EncodedDocument.Variant variant = document.getVariant(coding);
+
+        if (isNotModified(request, variant.getETag(), variant.getLastModified())) {
+            LOGGER.debug("Document has not been modified, responding without content");
+            AsyncResponseBuilder builder = AsyncResponseBuilder.create(HttpStatus.SC_NOT_MODIFIED)
+                                                               .setHeader(HttpHeaders.ETAG, variant.getETag())
+                                                               .setHeader(HttpHeaders.LAST_MODIFIED, formatHttpDate(variant.getLastModified()))
+                                                               .setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            for (Header header : additionalHeaders) {
+                builder.addHeader(header);
+            }
+            return builder.build();
+        }
+
+        AsyncResponseBuilder builder = AsyncResponseBuilder.create(HttpStatus.SC_OK)
+                                                           .setHeader(HttpHeaders.ETAG, variant.getETag())
+                                                           .setHeader(HttpHeaders.LAST_MODIFIED, formatHttpDate(variant.getLastModified()))
+                                                           .setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                                                           .setEntity(variant.createEntityProducer());
+
+        if (variant.getCoding() != ContentCoding.IDENTITY) {
+            builder.setHeader(HttpHeaders.CONTENT_ENCODING, variant.getCoding().getToken());
+        }
+
+        if (document.isStale()) {
+            builder.setHeader(HttpHeaders.WARNING, STALE_WARNING);
+        }
+
+        for (Header header : additionalHeaders) {
+            builder.addHeader(header);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Evaluates conditional request headers as specified by RFC 7232. If present,
+     * If-None-Match takes precedence over If-Modified-Since.
+     *
+     * @param request      request to check
+     * @param eTag         quoted ETag of the representation which would be served
+     * @param lastModified last modification time of the representation which would be served
+     * @return true if the client already holds the representation, false if it needs to be sent
+     */
+    static boolean isNotModified(HttpRequest request, String eTag, Instant lastModified) {
+        Header ifNoneMatch = request.getFirstHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return matchesAnyETag(ifNoneMatch.getValue(), eTag);
+        }
+
+        Header ifModifiedSince = request.getFirstHeader(HttpHeaders.IF_MODIFIED_SINCE);
+        if (ifModifiedSince != null) {
+            Instant since = parseHttpDate(ifModifiedSince.getValue());
+            return (since != null) && !lastModified.isAfter(since);
+        }
+
+        return false;
+    }
+
+    private static boolean matchesAnyETag(String headerValue, String eTag) {
+        if (headerValue == null) {
+            return false;
+        }
+
+        for (String candidate : headerValue.split(",")) {
+            candidate = candidate.trim();
+            if ("*".equals(candidate)) {
+                return true;
+            }
+
+            // If-None-Match uses weak comparison
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+
+            if (candidate.equals(eTag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    static String formatHttpDate(Instant instant) {
+        return HTTP_DATE_FORMATTER.format(instant);
+    }
+
+    private static Instant parseHttpDate(String s) {
+        if (s == null) {
+            return null;
+        }
+
+        try {
+            return ZonedDateTime.parse(s.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+        } catch (DateTimeParseException ex) {
+            LOGGER.debug("Ignoring unparseable HTTP date: \"{}\"", s);
+            return null;
+        }
+    }
 }
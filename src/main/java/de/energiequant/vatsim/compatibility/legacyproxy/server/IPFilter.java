@@ -5,6 +5,10 @@ import java.net.InetSocketAddress;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.hc.core5.http.EndpointDetails;
 import org.apache.hc.core5.http.EntityDetails;
@@ -23,26 +27,42 @@ import org.apache.hc.core5.http.protocol.HttpCoreContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Only allows requests from configured IP addresses or CIDR ranges. Allowed
+ * addresses are held in an immutable {@link AddressTrie} which is replaced as a
+ * whole on changes, so requests are checked without any locking.
+ */
 public class IPFilter implements AsyncFilterHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(IPFilter.class);
 
     public static final String LOCALHOST_IPV4 = "127.0.0.1";
     public static final String LOCALHOST_IPV6 = "0:0:0:0:0:0:0:1";
 
-    private final Collection<String> allowedAddresses = Collections.synchronizedCollection(new HashSet<String>());
+    /**
+     * Minimum time between two rejection log messages; rejections in between
+     * are only counted to protect the log from being flooded by scanners.
+     */
+    private static final long REJECTION_LOG_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private volatile Set<String> allowedAddresses = Collections.emptySet();
+    private volatile AddressTrie allowedAddressTrie = AddressTrie.of(Collections.emptySet());
+
+    private final AtomicLong nextRejectionLogMillis = new AtomicLong();
+    private final AtomicInteger suppressedRejections = new AtomicInteger();
 
     @Override
     public AsyncDataConsumer handle(HttpRequest request, EntityDetails entityDetails, HttpContext context, AsyncFilterChain.ResponseTrigger responseTrigger, AsyncFilterChain chain) throws HttpException, IOException {
         EndpointDetails details = ((HttpCoreContext) context).getEndpointDetails();
         InetSocketAddress addr = (InetSocketAddress) details.getRemoteAddress();
-        String ip = addr.getAddress().getHostAddress();
 
-        if (allowedAddresses.contains(ip)) {
-            LOGGER.debug("allowing connection from {}", ip);
+        if (allowedAddressTrie.matches(addr.getAddress())) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("allowing connection from {}", addr.getAddress().getHostAddress());
+            }
             return chain.proceed(request, entityDetails, context, responseTrigger);
         }
 
-        LOGGER.warn("rejecting connection from {}", ip);
+        logRejection(addr);
 
         final HttpResponse unauthorized = new BasicHttpResponse(HttpStatus.SC_FORBIDDEN);
         final AsyncEntityProducer responseContentProducer = AsyncEntityProducers.create("Forbidden");
@@ -51,16 +71,41 @@ public class IPFilter implements AsyncFilterHandler {
         return null;
     }
 
-    public IPFilter allow(String ip) {
-        allowedAddresses.add(ip);
-        LOGGER.info("Access is now allowed from {}", allowedAddresses);
+    private void logRejection(InetSocketAddress addr) {
+        long now = System.currentTimeMillis();
+        long next = nextRejectionLogMillis.get();
+        if ((now < next) || !nextRejectionLogMillis.compareAndSet(next, now + REJECTION_LOG_INTERVAL_MILLIS)) {
+            suppressedRejections.incrementAndGet();
+            return;
+        }
+
+        int suppressed = suppressedRejections.getAndSet(0);
+        if (suppressed > 0) {
+            LOGGER.warn(
+                "rejecting connection from {} ({} more rejections have not been logged)",
+                addr.getAddress().getHostAddress(),
+                suppressed
+            );
+        } else {
+            LOGGER.warn("rejecting connection from {}", addr.getAddress().getHostAddress());
+        }
+    }
+
+    public synchronized IPFilter allow(String ip) {
+        Set<String> newAllowedAddresses = new HashSet<>(allowedAddresses);
+        newAllowedAddresses.add(ip);
+        update(newAllowedAddresses);
         return this;
     }
 
-    public IPFilter allowOnly(Collection<String> ips) {
-        allowedAddresses.retainAll(ips);
-        allowedAddresses.addAll(ips);
-        LOGGER.info("Access is now allowed from {}", allowedAddresses);
+    public synchronized IPFilter allowOnly(Collection<String> ips) {
+        update(new HashSet<>(ips));
         return this;
     }
+
+    private void update(Set<String> newAllowedAddresses) {
+        allowedAddressTrie = AddressTrie.of(newAllowedAddresses);
+        allowedAddresses = Collections.unmodifiableSet(newAllowedAddresses);
+        LOGGER.info("Access is now allowed from {}", newAllowedAddresses);
+    }
 }
@@ -10,6 +10,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 
 import org.apache.hc.core5.http.ContentType;
@@ -28,6 +29,12 @@ import org.vatplanner.dataformats.vatsimpublic.parser.NetworkInformation;
 
 import de.energiequant.vatsim.compatibility.legacyproxy.ServiceEndpoints;
 
+/**
+ * Serves legacy network information merged from legacy and JSON upstream
+ * information, with the legacy data file URL replaced by the proxy's own. The
+ * document is only rendered when upstream information changes (see
+ * {@link #render()}); requests are answered from the last rendered document.
+ */
 public class InjectingLegacyNetworkInformationProxy extends GetOnlyRequestHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(InjectingLegacyNetworkInformationProxy.class);
 
@@ -37,6 +44,8 @@ public class InjectingLegacyNetworkInformationProxy extends GetOnlyRequestHandle
     private final Supplier<Optional<NetworkInformation>> jsonNetworkInformationSupplier;
     private final Supplier<Optional<List<String>>> startupMessagesSupplier;
 
+    private final AtomicReference<EncodedDocument> document = new AtomicReference<>();
+
     public InjectingLegacyNetworkInformationProxy(String localBaseUrl, Writer<NetworkInformation> writer, Supplier<Optional<NetworkInformation>> legacyNetworkInformationSupplier, Supplier<Optional<NetworkInformation>> jsonNetworkInformationSupplier, Supplier<Optional<List<String>>> startupMessagesSupplier) {
         this.localBaseUrl = localBaseUrl;
         this.writer = writer;
@@ -49,8 +58,8 @@ public class InjectingLegacyNetworkInformationProxy extends GetOnlyRequestHandle
     protected void handleGet(final Message<HttpRequest, Void> message, final ResponseTrigger responseTrigger, final HttpContext context) throws HttpException, IOException {
         LOGGER.debug("Processing request for legacy network information");
 
-        NetworkInformation legacy = legacyNetworkInformationSupplier.get().orElse(null);
-        if (legacy == null) {
+        EncodedDocument current = document.get();
+        if (current == null) {
             LOGGER.warn("upstream legacy network information is unavailable; unable to serve request");
 
             responseTrigger.submitResponse(
@@ -64,6 +73,33 @@ public class InjectingLegacyNetworkInformationProxy extends GetOnlyRequestHandle
             return;
         }
 
+        responseTrigger.submitResponse(createDocumentResponse(message.getHead(), current), context);
+    }
+
+    /**
+     * Restores a document from a previous run, e.g. from {@link WarmStartCache}.
+     * The document is only used until the first document has been rendered.
+     *
+     * @param restoredDocument document to restore, should be marked stale
+     */
+    public void restore(EncodedDocument restoredDocument) {
+        document.compareAndSet(null, restoredDocument);
+    }
+
+    /**
+     * Renders the document to be served from the latest upstream information.
+     * Intended to be called once initially and then by fetchers whenever they
+     * have retrieved new information.
+     *
+     * @return rendered document; empty if upstream information is not available yet
+     */
+    public synchronized Optional<EncodedDocument> render() {
+        NetworkInformation legacy = legacyNetworkInformationSupplier.get().orElse(null);
+        if (legacy == null) {
+            LOGGER.debug("upstream legacy network information is not available yet; unable to render");
+            return Optional.empty();
+        }
+
         NetworkInformation json = jsonNetworkInformationSupplier.get().orElse(null);
         if (json == null) {
             LOGGER.warn("upstream JSON network information is unavailable; served information may be incomplete");
@@ -108,16 +144,9 @@ public class InjectingLegacyNetworkInformationProxy extends GetOnlyRequestHandle
         LOGGER.debug("Encoding legacy network information");
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         writer.serialize(out, baos);
-        baos.flush();
-        byte[] bytes = baos.toByteArray();
-        baos = null;
-
-        responseTrigger.submitResponse(
-            AsyncResponseBuilder.create(HttpStatus.SC_OK)
-                                .setEntity(AsyncEntityProducers.create(bytes, ContentType.TEXT_PLAIN))
-                                .build(),
-            context
-        );
+        EncodedDocument rendered = new EncodedDocument(baos.toByteArray(), ContentType.TEXT_PLAIN, null).precompress();
+        document.set(rendered);
+        return Optional.of(rendered);
     }
 
     private void copy(List<URL> urls, NetworkInformation out, String key) {
@@ -1,183 +1,182 @@
 package de.energiequant.vatsim.compatibility.legacyproxy.server;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
-import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
+import java.net.URISyntaxException;
 import java.time.Duration;
-import java.util.Arrays;
-import java.util.concurrent.ExecutionException;
-import java.util.function.Consumer;
-import java.util.function.Supplier;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
 
-import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.HttpException;
 import org.apache.hc.core5.http.HttpRequest;
 import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.http.Message;
-import org.apache.hc.core5.http.nio.entity.AsyncEntityProducers;
-import org.apache.hc.core5.http.nio.support.AsyncResponseBuilder;
+import org.apache.hc.core5.http.NameValuePair;
 import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.net.URIBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.vatplanner.dataformats.vatsimpublic.export.LegacyDataFileWriter;
-import org.vatplanner.dataformats.vatsimpublic.export.Writer;
-import org.vatplanner.dataformats.vatsimpublic.parser.DataFile;
-import org.vatplanner.dataformats.vatsimpublic.parser.Parser;
-import org.vatplanner.dataformats.vatsimpublic.parser.ParserLogEntry;
-import org.vatplanner.dataformats.vatsimpublic.parser.ParserLogEntryCollector;
-
-import de.energiequant.common.webdataretrieval.DefaultHttpRetrievalDecoders;
-import de.energiequant.common.webdataretrieval.HttpPromiseBuilder;
-import de.energiequant.common.webdataretrieval.HttpRetrieval;
-import de.energiequant.vatsim.compatibility.legacyproxy.AppConstants;
-import de.energiequant.vatsim.compatibility.legacyproxy.Configuration;
-import de.energiequant.vatsim.compatibility.legacyproxy.Main;
-import de.energiequant.vatsim.compatibility.legacyproxy.fetching.OnlineTransceiversFileFetcher;
-import de.energiequant.vatsim.compatibility.legacyproxy.server.stationlocator.StationLocator;
-import de.energiequant.vatsim.compatibility.legacyproxy.server.stationlocator.StationLocator.Strategy;
 
+import de.energiequant.vatsim.compatibility.legacyproxy.AppConstants;
+import de.energiequant.vatsim.compatibility.legacyproxy.fetching.JsonDataFileFetcher;
+import de.energiequant.vatsim.compatibility.legacyproxy.utils.FutureHelper;
+
+/**
+ * Serves legacy data files as converted by {@link LegacyDataFileSnapshotter}.
+ * Requests only hand out the latest snapshot; upstream data is retrieved and
+ * converted in background by {@link JsonDataFileFetcher}. If no snapshot is
+ * available yet, the response is completed asynchronously once it has been
+ * converted, so the I/O reactor is never blocked.
+ * <p>
+ * Previous data files can be requested by time from the {@link SnapshotHistory}
+ * using an ISO-8601 timestamp: <code>?at=2021-06-12T10:20:30Z</code>
+ * </p>
+ */
 public class JsonToLegacyDataFileProxy extends GetOnlyRequestHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(JsonToLegacyDataFileProxy.class);
 
-    private final Supplier<String> jsonUrlSupplier;
-    private final Consumer<Duration> authoritativeMinimumDataUpdateIntervalConsumer;
-    private final HttpPromiseBuilder<DataFile> promiseBuilder;
-
-    private final StationLocator stationLocator;
-
-    private final Configuration config = Main.getConfiguration();
-    private final boolean isParserLogEnabled = config.isParserLogEnabled();
-    private final boolean isQuirkUtf8Enabled = config.isQuirkLegacyDataFileUtf8Enabled();
-    private final boolean shouldInjectLocations = config.getStationLocatorStrategy() != Strategy.DISABLE;
-
-    private static final Charset FALLBACK_CHARACTER_SET = StandardCharsets.UTF_8;
-
-    private final String header;
-
-    public JsonToLegacyDataFileProxy(Parser<DataFile> parser, OnlineTransceiversFileFetcher onlineTransceiversFileFetcher, Supplier<String> jsonUrlSupplier, Consumer<Duration> authoritativeMinimumDataUpdateIntervalConsumer) {
-        this.jsonUrlSupplier = jsonUrlSupplier;
-        this.authoritativeMinimumDataUpdateIntervalConsumer = authoritativeMinimumDataUpdateIntervalConsumer;
-        stationLocator = new StationLocator(onlineTransceiversFileFetcher);
-
-        header = stationLocator.usesVatSpySource()
-            ? AppConstants.SERVER_DISCLAIMER_HEADER +
-            (
-                stationLocator.isVatSpySourceExternal()
-                    ? AppConstants.SERVER_VAT_SPY_EXTERNAL_HEADER
-                    : AppConstants.SERVER_VAT_SPY_INTERNAL_HEADER
-            )
-            : AppConstants.SERVER_DISCLAIMER_HEADER;
-
-        DefaultHttpRetrievalDecoders decoders = new DefaultHttpRetrievalDecoders();
-        promiseBuilder = new HttpPromiseBuilder<>(
-            decoders.bodyAsStringWithHeaderCharacterSet(FALLBACK_CHARACTER_SET)
-                    .andThen(parser::deserialize)
-        ).withConfiguration(
-            new HttpRetrieval()
-                .setUserAgent(AppConstants.USER_AGENT)
-                .setTimeout(AppConstants.EXTERNAL_REQUEST_TIMEOUT)
-        );
+    private final JsonDataFileFetcher dataFileFetcher;
+    private final LegacyDataFileSnapshotter snapshotter;
+    private final ScheduledExecutorService timeoutScheduler;
+    private final SnapshotHistory history;
+
+    private static final String PARAMETER_AT = "at";
+
+    /**
+     * Snapshots older than this will not be served (fetcher may have been idle or
+     * upstream may have been failing for a long time).
+     */
+    static final Duration MAXIMUM_SNAPSHOT_AGE = Duration.ofMinutes(10);
+
+    /**
+     * How long to wait for a snapshot to become available if there is none yet.
+     */
+    static final Duration SNAPSHOT_WAIT_TIMEOUT = AppConstants.EXTERNAL_REQUEST_TIMEOUT;
+
+    /**
+     * Creates a new proxy.
+     *
+     * @param dataFileFetcher  fetcher to be notified about requests
+     * @param snapshotter      provides the latest snapshot
+     * @param timeoutScheduler schedules timeouts while waiting for a snapshot
+     * @param history          provides previous snapshots; null if disabled
+     */
+    public JsonToLegacyDataFileProxy(JsonDataFileFetcher dataFileFetcher, LegacyDataFileSnapshotter snapshotter, ScheduledExecutorService timeoutScheduler, SnapshotHistory history) {
+        this.dataFileFetcher = dataFileFetcher;
+        this.snapshotter = snapshotter;
+        this.timeoutScheduler = timeoutScheduler;
+        this.history = history;
     }
 
     @Override
     protected void handleGet(final Message<HttpRequest, Void> message, final ResponseTrigger responseTrigger, final HttpContext context) throws HttpException, IOException {
         LOGGER.debug("Processing request for legacy data file");
 
-        DataFile dataFile = null;
-        String url = jsonUrlSupplier.get();
-        if (url == null) {
-            LOGGER.warn("No upstream JSON URL is available; unable to serve request for data file");
-
-            responseTrigger.submitResponse(
-                AsyncResponseBuilder.create(HttpStatus.SC_SERVICE_UNAVAILABLE)
-                                    .setEntity(AsyncEntityProducers.create("No matching upstream JSON URLs known",
-                                                                           ContentType.TEXT_PLAIN
-                                    ))
-                                    .build(),
-                context
-            );
-            return;
+        // only parse the query if there is one, the live path should not be slowed down
+        if (message.getHead().getPath().indexOf('?') >= 0) {
+            String at = getQueryParameter(message.getHead(), PARAMETER_AT);
+            if (at != null) {
+                handleHistoryRequest(message, responseTrigger, context, at);
+                return;
+            }
         }
 
-        try {
-            LOGGER.debug("Retrieving JSON data file from {}", url);
-            dataFile = promiseBuilder.requestByGet(url).get();
-            logParserMessages(dataFile);
+        dataFileFetcher.markRequested();
 
-            Duration minimumDataFileRetrievalInterval = dataFile.getMetaData().getMinimumDataFileRetrievalInterval();
-            if (minimumDataFileRetrievalInterval != null) {
-                authoritativeMinimumDataUpdateIntervalConsumer.accept(minimumDataFileRetrievalInterval);
-            }
-        } catch (InterruptedException | ExecutionException ex) {
-            LOGGER.warn("Failed to retrieve JSON data file from {}", url, ex);
+        CompletableFuture<EncodedDocument> snapshotRequest = snapshotter.requestSnapshot(MAXIMUM_SNAPSHOT_AGE);
 
-            responseTrigger.submitResponse(
-                AsyncResponseBuilder.create(HttpStatus.SC_SERVICE_UNAVAILABLE)
-                                    .setEntity(AsyncEntityProducers.create("Failed to retrieve JSON data file",
-                                                                           ContentType.TEXT_PLAIN
-                                    ))
-                                    .build(),
-                context
-            );
-            return;
-        }
+        // a timeout only needs to be scheduled if the request actually has to wait for a snapshot
+        CompletableFuture<EncodedDocument> awaitedSnapshot = snapshotRequest.isDone()
+            ? snapshotRequest
+            : FutureHelper.withTimeout(snapshotRequest, SNAPSHOT_WAIT_TIMEOUT, timeoutScheduler);
 
-        if (shouldInjectLocations) {
-            stationLocator.injectTo(dataFile);
-        }
+        awaitedSnapshot.whenComplete((snapshot, ex) -> {
+            if (ex != null) {
+                LOGGER.warn("No legacy data file snapshot is available; unable to serve request for data file");
 
-        LOGGER.debug("Encoding legacy data file");
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        Writer<DataFile> writer = new LegacyDataFileWriter(header);
-        writer.serialize(dataFile, baos);
-        baos.flush();
-        byte[] bytes = baos.toByteArray();
-        baos = null;
+                // give up on the snapshot request, it is not needed any longer
+                snapshotRequest.cancel(false);
 
-        if (isQuirkUtf8Enabled) {
-            bytes = recodeLatinToUTF8(bytes);
-        }
+                submitResponseAsynchronously(
+                    responseTrigger,
+                    createTextResponse(HttpStatus.SC_SERVICE_UNAVAILABLE, "Data file is currently unavailable"),
+                    context
+                );
+                return;
+            }
 
-        responseTrigger.submitResponse(
-            AsyncResponseBuilder.create(HttpStatus.SC_OK)
-                                .setEntity(AsyncEntityProducers.create(bytes, ContentType.TEXT_PLAIN))
-                                .build(),
-            context
-        );
+            submitResponseAsynchronously(
+                responseTrigger,
+                createDocumentResponse(message.getHead(), snapshot),
+                context
+            );
+        });
     }
 
-    private void logParserMessages(ParserLogEntryCollector parserLogEntryCollector) {
-        // TODO: extract to helper class?
-
-        if (!isParserLogEnabled) {
+    private void handleHistoryRequest(final Message<HttpRequest, Void> message, final ResponseTrigger responseTrigger, final HttpContext context, String at) throws HttpException, IOException {
+        if (history == null) {
+            responseTrigger.submitResponse(
+                createTextResponse(HttpStatus.SC_NOT_FOUND, "History is disabled"),
+                context
+            );
             return;
         }
 
-        // exceptions/stack traces are not logged as they are only useful for
-        // development and would clutter the log in the main window beyond readability
-        for (ParserLogEntry entry : parserLogEntryCollector.getParserLogEntries()) {
-            LOGGER.warn(
-                "Failed to parse{}, section {}, {}: {}",
-                entry.isLineRejected() ? " (rejected)" : "",
-                entry.getSection(), entry.getMessage(), entry.getLineContent()
+        Instant time;
+        try {
+            time = OffsetDateTime.parse(at).toInstant();
+        } catch (DateTimeParseException ex) {
+            responseTrigger.submitResponse(
+                createTextResponse(HttpStatus.SC_BAD_REQUEST, "Invalid time, expected ISO-8601 format"),
+                context
             );
+            return;
         }
-    }
 
-    private byte[] recodeLatinToUTF8(byte[] bytes) {
-        String s = new String(bytes, StandardCharsets.ISO_8859_1);
-        return toByteArray(StandardCharsets.UTF_8.encode(CharBuffer.wrap(s)));
+        LOGGER.debug("Processing request for legacy data file at {}", time);
+
+        history.request(time)
+               .whenComplete((snapshot, ex) -> {
+                   if (ex != null) {
+                       LOGGER.warn("Failed to restore data file from history", ex);
+                       submitResponseAsynchronously(
+                           responseTrigger,
+                           createTextResponse(HttpStatus.SC_INTERNAL_SERVER_ERROR, "Failed to restore data file"),
+                           context
+                       );
+                       return;
+                   }
+
+                   if (!snapshot.isPresent()) {
+                       submitResponseAsynchronously(
+                           responseTrigger,
+                           createTextResponse(HttpStatus.SC_NOT_FOUND, "No data file available for requested time"),
+                           context
+                       );
+                       return;
+                   }
+
+                   submitResponseAsynchronously(
+                       responseTrigger,
+                       createDocumentResponse(message.getHead(), snapshot.get()),
+                       context
+                   );
+               });
     }
 
-    private byte[] toByteArray(ByteBuffer buffer) {
-        if (!buffer.hasArray()) {
-            throw new IllegalArgumentException("buffer must be backed by an array");
+    private static String getQueryParameter(HttpRequest request, String name) {
+        try {
+            for (NameValuePair parameter : new URIBuilder(request.getUri()).getQueryParams()) {
+                if (name.equals(parameter.getName())) {
+                    return parameter.getValue();
+                }
+            }
+        } catch (URISyntaxException ex) {
+            LOGGER.debug("Unable to parse request URI", ex);
         }
 
-        int offset = buffer.arrayOffset();
-        return Arrays.copyOfRange(buffer.array(), offset, offset + buffer.limit());
+        return null;
     }
 }
@@ -0,0 +1,98 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.hc.core5.http.ConnectionReuseStrategy;
+import org.apache.hc.core5.http.EndpointDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.impl.DefaultConnectionReuseStrategy;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http.protocol.HttpCoreContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides if client connections should be kept open for further requests.
+ * Connections are reused as negotiated by HTTP unless the maximum number of
+ * requests per connection has been reached or the client has been excluded by
+ * IP address or User-Agent (some legacy clients are unable to handle
+ * persistent connections correctly).
+ */
+public class KeepAliveStrategy implements ConnectionReuseStrategy {
+    private static final Logger LOGGER = LoggerFactory.getLogger(KeepAliveStrategy.class);
+
+    private final int maxRequestsPerConnection;
+    private final Set<String> excludedIps;
+    private final Collection<String> excludedUserAgents;
+
+    private static final ConnectionReuseStrategy DELEGATE = DefaultConnectionReuseStrategy.INSTANCE;
+
+    /**
+     * Creates a new strategy.
+     *
+     * @param maxRequestsPerConnection maximum number of requests to serve per connection; 0 for unlimited
+     * @param excludedIps              client IP addresses (exactly as logged) to never keep connections open for
+     * @param excludedUserAgents       parts of User-Agent headers identifying clients to never keep connections open for (case-insensitive)
+     */
+    public KeepAliveStrategy(int maxRequestsPerConnection, Collection<String> excludedIps, Collection<String> excludedUserAgents) {
+        this.maxRequestsPerConnection = maxRequestsPerConnection;
+        this.excludedIps = new HashSet<>(excludedIps);
+
+        this.excludedUserAgents = new ArrayList<>();
+        for (String userAgent : excludedUserAgents) {
+            this.excludedUserAgents.add(userAgent.toLowerCase());
+        }
+    }
+
+    @Override
+    public boolean keepAlive(HttpRequest request, HttpResponse response, HttpContext context) {
+        EndpointDetails endpointDetails = HttpCoreContext.adapt(context).getEndpointDetails();
+
+        if ((maxRequestsPerConnection > 0) && (endpointDetails != null) && (endpointDetails.getRequestCount() >= maxRequestsPerConnection)) {
+            LOGGER.debug("closing connection after {} requests", endpointDetails.getRequestCount());
+            return false;
+        }
+
+        if ((endpointDetails != null) && isExcludedIp(endpointDetails.getRemoteAddress())) {
+            return false;
+        }
+
+        if ((request != null) && isExcludedUserAgent(request.getFirstHeader(HttpHeaders.USER_AGENT))) {
+            return false;
+        }
+
+        return DELEGATE.keepAlive(request, response, context);
+    }
+
+    private boolean isExcludedIp(SocketAddress address) {
+        if (excludedIps.isEmpty() || !(address instanceof InetSocketAddress)) {
+            return false;
+        }
+
+        String ip = ((InetSocketAddress) address).getAddress().getHostAddress();
+        return excludedIps.contains(ip);
+    }
+
+    private boolean isExcludedUserAgent(Header header) {
+        if (excludedUserAgents.isEmpty() || (header == null) || (header.getValue() == null)) {
+            return false;
+        }
+
+        String userAgent = header.getValue().toLowerCase();
+        for (String excludedUserAgent : excludedUserAgents) {
+            if (userAgent.contains(excludedUserAgent)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
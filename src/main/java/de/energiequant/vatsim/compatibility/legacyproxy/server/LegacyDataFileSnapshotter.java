@@ -0,0 +1,232 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import org.apache.hc.core5.http.ContentType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vatplanner.dataformats.vatsimpublic.export.LegacyDataFileWriter;
+import org.vatplanner.dataformats.vatsimpublic.export.Writer;
+import org.vatplanner.dataformats.vatsimpublic.parser.DataFile;
+
+import de.energiequant.vatsim.compatibility.legacyproxy.AppConstants;
+import de.energiequant.vatsim.compatibility.legacyproxy.Configuration;
+import de.energiequant.vatsim.compatibility.legacyproxy.Main;
+import de.energiequant.vatsim.compatibility.legacyproxy.fetching.OnlineTransceiversFileFetcher;
+import de.energiequant.vatsim.compatibility.legacyproxy.metrics.Metrics;
+import de.energiequant.vatsim.compatibility.legacyproxy.server.stationlocator.StationLocator;
+import de.energiequant.vatsim.compatibility.legacyproxy.server.stationlocator.StationLocator.Strategy;
+import de.energiequant.vatsim.compatibility.legacyproxy.utils.Latin1ToUtf8OutputStream;
+
+/**
+ * Converts each {@link DataFile} retrieved from upstream exactly once to a
+ * legacy data file snapshot. The snapshot is encoded completely in advance and
+ * shared by all requests until the next {@link DataFile} has been converted.
+ * Compressed variants are generated together with the snapshot.
+ * <p>
+ * The writer streams directly into {@link ChunkedContent}; if the UTF-8 quirk
+ * is enabled, output is recoded on the fly. No intermediate copies of the
+ * whole document are created.
+ * </p>
+ */
+public class LegacyDataFileSnapshotter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LegacyDataFileSnapshotter.class);
+
+    private final StationLocator stationLocator;
+
+    private final boolean isQuirkUtf8Enabled;
+    private final boolean shouldInjectLocations;
+
+    private final String header;
+
+    private final Object snapshotLock = new Object();
+    private EncodedDocument snapshot = null;
+    private final List<CompletableFuture<EncodedDocument>> pendingRequests = new ArrayList<>();
+    private final Set<Consumer<EncodedDocument>> listeners = Collections.synchronizedSet(new HashSet<>());
+
+    public LegacyDataFileSnapshotter(OnlineTransceiversFileFetcher onlineTransceiversFileFetcher) {
+        this(Main.getConfiguration(), onlineTransceiversFileFetcher);
+    }
+
+    /**
+     * Creates a new snapshotter configured by the given {@link Configuration}
+     * instead of the application-wide one, e.g. for benchmarks.
+     *
+     * @param config                        configuration to apply
+     * @param onlineTransceiversFileFetcher provides online transceivers to locate stations by
+     */
+    public LegacyDataFileSnapshotter(Configuration config, OnlineTransceiversFileFetcher onlineTransceiversFileFetcher) {
+        isQuirkUtf8Enabled = config.isQuirkLegacyDataFileUtf8Enabled();
+        shouldInjectLocations = config.getStationLocatorStrategy() != Strategy.DISABLE;
+        stationLocator = new StationLocator(config, onlineTransceiversFileFetcher);
+
+        header = stationLocator.usesVatSpySource()
+            ? AppConstants.SERVER_DISCLAIMER_HEADER +
+            (
+                stationLocator.isVatSpySourceExternal()
+                    ? AppConstants.SERVER_VAT_SPY_EXTERNAL_HEADER
+                    : AppConstants.SERVER_VAT_SPY_INTERNAL_HEADER
+            )
+            : AppConstants.SERVER_DISCLAIMER_HEADER;
+    }
+
+    /**
+     * Converts the given {@link DataFile} to a new snapshot which will replace
+     * the previous one. Intended to be registered as a listener to the fetcher.
+     *
+     * @param dataFile newly retrieved {@link DataFile} to convert
+     */
+    public void onDataFile(DataFile dataFile) {
+        long startNanos = System.nanoTime();
+
+        if (shouldInjectLocations) {
+            stationLocator.injectTo(dataFile);
+        }
+
+        EncodedDocument newSnapshot = new EncodedDocument(
+            encode(dataFile),
+            ContentType.TEXT_PLAIN,
+            dataFile.getMetaData().getTimestamp()
+        ).precompress();
+
+        Metrics.DATA_FILE_CONVERSION_DURATION.get().observeSince(startNanos);
+
+        Collection<CompletableFuture<EncodedDocument>> waiting;
+        synchronized (snapshotLock) {
+            snapshot = newSnapshot;
+            waiting = new ArrayList<>(pendingRequests);
+            pendingRequests.clear();
+        }
+
+        LOGGER.debug("New legacy data file snapshot: {} bytes, data timestamp {}", newSnapshot.getSize(), newSnapshot.getDataTimestamp());
+
+        for (CompletableFuture<EncodedDocument> future : waiting) {
+            future.complete(newSnapshot);
+        }
+
+        notifyListeners(newSnapshot);
+    }
+
+    /**
+     * Restores a snapshot from a previous run, e.g. from {@link WarmStartCache}.
+     * The snapshot is only used if no snapshot has been converted yet; listeners
+     * are not notified.
+     *
+     * @param restoredSnapshot snapshot to restore, should be marked stale
+     */
+    public void restore(EncodedDocument restoredSnapshot) {
+        Collection<CompletableFuture<EncodedDocument>> waiting;
+        synchronized (snapshotLock) {
+            if (snapshot != null) {
+                return;
+            }
+
+            snapshot = restoredSnapshot;
+            waiting = new ArrayList<>(pendingRequests);
+            pendingRequests.clear();
+        }
+
+        for (CompletableFuture<EncodedDocument> future : waiting) {
+            future.complete(restoredSnapshot);
+        }
+    }
+
+    private void notifyListeners(EncodedDocument newSnapshot) {
+        Collection<Consumer<EncodedDocument>> copy = new ArrayList<>(listeners);
+        for (Consumer<EncodedDocument> listener : copy) {
+            try {
+                listener.accept(newSnapshot);
+            } catch (Exception ex) {
+                LOGGER.warn("Failed to notify snapshot listener", ex);
+            }
+        }
+    }
+
+    /**
+     * Serializes the given {@link DataFile} to the legacy format, recoded for the
+     * UTF-8 quirk if enabled. Station locations are not injected.
+     *
+     * @param dataFile {@link DataFile} to encode
+     * @return encoded legacy data file
+     */
+    ChunkedContent encode(DataFile dataFile) {
+        LOGGER.debug("Encoding legacy data file");
+        ChunkedOutputStream cos = new ChunkedOutputStream();
+        Writer<DataFile> writer = new LegacyDataFileWriter(header);
+        try (OutputStream os = isQuirkUtf8Enabled ? new Latin1ToUtf8OutputStream(cos) : cos) {
+            writer.serialize(dataFile, os);
+        } catch (IOException ex) {
+            // should not happen when writing to memory
+            throw new IllegalStateException("Failed to encode legacy data file", ex);
+        }
+
+        return cos.toChunkedContent();
+    }
+
+    /**
+     * Registers a listener to be called with every new snapshot. Listeners are
+     * called on the thread which converted the snapshot.
+     *
+     * @param listener will be called with every new snapshot
+     */
+    public void addListener(Consumer<EncodedDocument> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener previously added by {@link #addListener(Consumer)}.
+     *
+     * @param listener listener to remove
+     */
+    public void removeListener(Consumer<EncodedDocument> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Releases all subscriptions held by the snapshotter. Must be called when the
+     * snapshotter is no longer used, e.g. when the HTTP server stops.
+     */
+    public void close() {
+        stationLocator.close();
+    }
+
+    /**
+     * Requests a snapshot not older than the given age. If the current snapshot
+     * qualifies, the returned {@link CompletableFuture} is already completed.
+     * Otherwise it will complete as soon as the next snapshot has been converted.
+     * Callers are responsible to apply a timeout.
+     *
+     * @param maximumAge maximum age of a snapshot to be returned
+     * @return completes with a snapshot not older than the given age
+     */
+    public CompletableFuture<EncodedDocument> requestSnapshot(Duration maximumAge) {
+        CompletableFuture<EncodedDocument> future;
+        synchronized (snapshotLock) {
+            if ((snapshot != null) && !snapshot.isOlderThan(maximumAge)) {
+                return CompletableFuture.completedFuture(snapshot);
+            }
+
+            future = new CompletableFuture<>();
+            pendingRequests.add(future);
+        }
+
+        // requests may be completed by others (e.g. timeout), no need to keep them any longer
+        future.whenComplete((result, ex) -> {
+            synchronized (snapshotLock) {
+                pendingRequests.remove(future);
+            }
+        });
+
+        return future;
+    }
+}
@@ -0,0 +1,96 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.nio.AsyncDataConsumer;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+import org.apache.hc.core5.http.nio.AsyncFilterChain;
+import org.apache.hc.core5.http.nio.AsyncFilterHandler;
+import org.apache.hc.core5.http.nio.AsyncPushProducer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+
+import de.energiequant.vatsim.compatibility.legacyproxy.metrics.Metrics;
+
+/**
+ * Records request counts, latency and response sizes per endpoint. Latency is
+ * measured until the response has been submitted, so it includes waiting for
+ * upstream data but not the transmission to the client. Requests to unknown
+ * paths are recorded as <code>other</code> to keep the number of label values
+ * bounded.
+ */
+public class MetricsFilter implements AsyncFilterHandler {
+    private static final String OTHER_ENDPOINT = "other";
+
+    private final Set<String> knownEndpoints;
+
+    /**
+     * Creates a new filter.
+     *
+     * @param knownEndpoints paths to record individually
+     */
+    public MetricsFilter(Collection<String> knownEndpoints) {
+        this.knownEndpoints = new HashSet<>(knownEndpoints);
+    }
+
+    @Override
+    public AsyncDataConsumer handle(HttpRequest request, EntityDetails entityDetails, HttpContext context, AsyncFilterChain.ResponseTrigger responseTrigger, AsyncFilterChain chain) throws HttpException, IOException {
+        String endpoint = stripQuery(request.getPath());
+        if (!knownEndpoints.contains(endpoint)) {
+            endpoint = OTHER_ENDPOINT;
+        }
+
+        return chain.proceed(request, entityDetails, context, new RecordingResponseTrigger(responseTrigger, endpoint));
+    }
+
+    private static String stripQuery(String path) {
+        if (path == null) {
+            return null;
+        }
+
+        int queryIndex = path.indexOf('?');
+        return (queryIndex < 0) ? path : path.substring(0, queryIndex);
+    }
+
+    private static class RecordingResponseTrigger implements AsyncFilterChain.ResponseTrigger {
+        private final AsyncFilterChain.ResponseTrigger delegate;
+        private final String endpoint;
+        private final long startNanos = System.nanoTime();
+
+        private RecordingResponseTrigger(AsyncFilterChain.ResponseTrigger delegate, String endpoint) {
+            this.delegate = delegate;
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public void sendInformation(HttpResponse response) throws HttpException, IOException {
+            delegate.sendInformation(response);
+        }
+
+        @Override
+        public void submitResponse(HttpResponse response, AsyncEntityProducer entityProducer) throws HttpException, IOException {
+            Metrics.HTTP_REQUEST_DURATION.labels(endpoint).observeSince(startNanos);
+            Metrics.HTTP_REQUESTS.labels(endpoint, Integer.toString(response.getCode())).inc();
+
+            if (entityProducer != null) {
+                long length = entityProducer.getContentLength();
+                if (length > 0) {
+                    Metrics.HTTP_RESPONSE_BYTES.labels(endpoint).add(length);
+                }
+            }
+
+            delegate.submitResponse(response, entityProducer);
+        }
+
+        @Override
+        public void pushPromise(HttpRequest promise, AsyncPushProducer responseProducer) throws HttpException, IOException {
+            delegate.pushPromise(promise, responseProducer);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Collection;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EndpointDetails;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.nio.entity.AsyncEntityProducers;
+import org.apache.hc.core5.http.nio.support.AsyncResponseBuilder;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http.protocol.HttpCoreContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.energiequant.vatsim.compatibility.legacyproxy.metrics.MetricsRegistry;
+
+/**
+ * Serves all metrics in Prometheus text format. Access is restricted to its
+ * own set of addresses in addition to the general {@link IPFilter}, so
+ * monitoring can be limited to a scraper even if data is served publicly.
+ */
+public class MetricsRequestHandler extends GetOnlyRequestHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsRequestHandler.class);
+
+    private static final ContentType CONTENT_TYPE = ContentType.parse(MetricsRegistry.CONTENT_TYPE);
+
+    private final MetricsRegistry registry;
+    private final AddressTrie allowedAddresses;
+
+    /**
+     * Creates a new handler.
+     *
+     * @param registry         registry to expose
+     * @param allowedAddresses IP addresses or CIDR ranges allowed to request metrics
+     */
+    public MetricsRequestHandler(MetricsRegistry registry, Collection<String> allowedAddresses) {
+        this.registry = registry;
+        this.allowedAddresses = AddressTrie.of(allowedAddresses);
+    }
+
+    @Override
+    protected void handleGet(final Message<HttpRequest, Void> message, final ResponseTrigger responseTrigger, final HttpContext context) throws HttpException, IOException {
+        if (!isAllowed(context)) {
+            LOGGER.debug("rejecting metrics request from unlisted address");
+            responseTrigger.submitResponse(createTextResponse(HttpStatus.SC_FORBIDDEN, "Forbidden"), context);
+            return;
+        }
+
+        responseTrigger.submitResponse(
+            AsyncResponseBuilder.create(HttpStatus.SC_OK)
+                                .setEntity(AsyncEntityProducers.create(registry.render(), CONTENT_TYPE))
+                                .build(),
+            context
+        );
+    }
+
+    private boolean isAllowed(HttpContext context) {
+        EndpointDetails details = HttpCoreContext.adapt(context).getEndpointDetails();
+        if (details == null) {
+            return false;
+        }
+
+        SocketAddress address = details.getRemoteAddress();
+        return (address instanceof InetSocketAddress) && allowedAddresses.matches(((InetSocketAddress) address).getAddress());
+    }
+}
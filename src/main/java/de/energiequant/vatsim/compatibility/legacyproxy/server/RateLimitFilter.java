@@ -0,0 +1,278 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.apache.hc.core5.http.EndpointDetails;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.apache.hc.core5.http.nio.AsyncDataConsumer;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+import org.apache.hc.core5.http.nio.AsyncFilterChain;
+import org.apache.hc.core5.http.nio.AsyncFilterHandler;
+import org.apache.hc.core5.http.nio.AsyncPushProducer;
+import org.apache.hc.core5.http.nio.entity.AsyncEntityProducers;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http.protocol.HttpCoreContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Admission control for incoming requests. Each client address is given a
+ * token bucket limiting its request rate; clients exceeding it are answered
+ * with <code>429 Too Many Requests</code>. Additionally, the number of requests
+ * processed concurrently can be limited per endpoint; requests beyond that
+ * limit are rejected immediately with <code>503 Service Unavailable</code>
+ * instead of being queued, so a single misbehaving client cannot delay
+ * responses to others.
+ * <p>
+ * Rejections indicate a <code>Retry-After</code> based on the minimum interval
+ * at which upstream data is updated as there is no point for clients to request
+ * again any sooner.
+ * </p>
+ */
+public class RateLimitFilter implements AsyncFilterHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RateLimitFilter.class);
+
+    /**
+     * Number of client buckets to keep before idle ones are removed.
+     */
+    private static final int MAX_TRACKED_CLIENTS = 1000;
+
+    private static final long CLEANUP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final double tokensPerNano;
+    private final int burst;
+    private final int maxConcurrentRequestsPerEndpoint;
+    private final Supplier<Duration> retryAfterSupplier;
+
+    private final Map<InetAddress, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong nextCleanupNanos = new AtomicLong(System.nanoTime());
+    private final Map<String, AtomicInteger> activeRequestsByEndpoint;
+
+    private static class TokenBucket {
+        private final double tokensPerNano;
+        private final int capacity;
+
+        private double tokens;
+        private long lastRefillNanos;
+
+        private TokenBucket(double tokensPerNano, int capacity, long nowNanos) {
+            this.tokensPerNano = tokensPerNano;
+            this.capacity = capacity;
+            this.tokens = capacity;
+            this.lastRefillNanos = nowNanos;
+        }
+
+        private void refill(long nowNanos) {
+            long elapsed = nowNanos - lastRefillNanos;
+            if (elapsed > 0) {
+                tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+                lastRefillNanos = nowNanos;
+            }
+        }
+
+        synchronized boolean tryAcquire(long nowNanos) {
+            refill(nowNanos);
+
+            if (tokens < 1.0) {
+                return false;
+            }
+
+            tokens -= 1.0;
+            return true;
+        }
+
+        synchronized boolean isFull(long nowNanos) {
+            refill(nowNanos);
+            return tokens >= capacity;
+        }
+    }
+
+    /**
+     * Creates a new filter.
+     *
+     * @param requestsPerMinute                sustained number of requests allowed per client address; 0 for unlimited
+     * @param burst                            number of requests a client may issue at once before being limited
+     * @param maxConcurrentRequestsPerEndpoint maximum number of requests to process at the same time per endpoint; 0 for unlimited
+     * @param limitedEndpoints                 request paths to apply the concurrency limit to
+     * @param retryAfterSupplier               provides the minimum interval at which data is updated
+     */
+    public RateLimitFilter(int requestsPerMinute, int burst, int maxConcurrentRequestsPerEndpoint, Collection<String> limitedEndpoints, Supplier<Duration> retryAfterSupplier) {
+        this.tokensPerNano = requestsPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.burst = Math.max(1, burst);
+        this.maxConcurrentRequestsPerEndpoint = maxConcurrentRequestsPerEndpoint;
+        this.retryAfterSupplier = retryAfterSupplier;
+
+        Map<String, AtomicInteger> activeRequestsByEndpoint = new HashMap<>();
+        if (maxConcurrentRequestsPerEndpoint > 0) {
+            for (String endpoint : limitedEndpoints) {
+                activeRequestsByEndpoint.put(endpoint, new AtomicInteger());
+            }
+        }
+        this.activeRequestsByEndpoint = Collections.unmodifiableMap(activeRequestsByEndpoint);
+    }
+
+    @Override
+    public AsyncDataConsumer handle(HttpRequest request, EntityDetails entityDetails, HttpContext context, AsyncFilterChain.ResponseTrigger responseTrigger, AsyncFilterChain chain) throws HttpException, IOException {
+        InetAddress clientAddress = getClientAddress(context);
+        if ((clientAddress != null) && !tryAcquireToken(clientAddress)) {
+            LOGGER.debug("rate limit exceeded by {}", clientAddress.getHostAddress());
+            reject(HttpStatus.SC_TOO_MANY_REQUESTS, "Too Many Requests", responseTrigger);
+            return null;
+        }
+
+        AtomicInteger activeRequests = activeRequestsByEndpoint.get(stripQuery(request.getPath()));
+        if (activeRequests == null) {
+            return chain.proceed(request, entityDetails, context, responseTrigger);
+        }
+
+        if (activeRequests.incrementAndGet() > maxConcurrentRequestsPerEndpoint) {
+            activeRequests.decrementAndGet();
+            LOGGER.debug("too many concurrent requests to {}", request.getPath());
+            reject(HttpStatus.SC_SERVICE_UNAVAILABLE, "Service Unavailable", responseTrigger);
+            return null;
+        }
+
+        ReleasingResponseTrigger releasingResponseTrigger = new ReleasingResponseTrigger(responseTrigger, activeRequests);
+        try {
+            return chain.proceed(request, entityDetails, context, releasingResponseTrigger);
+        } catch (HttpException | IOException | RuntimeException ex) {
+            releasingResponseTrigger.release();
+            throw ex;
+        }
+    }
+
+    private InetAddress getClientAddress(HttpContext context) {
+        if (tokensPerNano <= 0.0) {
+            return null;
+        }
+
+        EndpointDetails details = HttpCoreContext.adapt(context).getEndpointDetails();
+        if (details == null) {
+            return null;
+        }
+
+        SocketAddress address = details.getRemoteAddress();
+        if (!(address instanceof InetSocketAddress)) {
+            return null;
+        }
+
+        return ((InetSocketAddress) address).getAddress();
+    }
+
+    private boolean tryAcquireToken(InetAddress clientAddress) {
+        long now = System.nanoTime();
+
+        TokenBucket bucket = buckets.get(clientAddress);
+        if (bucket == null) {
+            removeIdleBuckets(now);
+            bucket = buckets.computeIfAbsent(clientAddress, x -> new TokenBucket(tokensPerNano, burst, now));
+        }
+
+        return bucket.tryAcquire(now);
+    }
+
+    private void removeIdleBuckets(long now) {
+        if (buckets.size() < MAX_TRACKED_CLIENTS) {
+            return;
+        }
+
+        // only one thread needs to clean up, others continue immediately
+        long next = nextCleanupNanos.get();
+        if ((now - next < 0) || !nextCleanupNanos.compareAndSet(next, now + CLEANUP_INTERVAL_NANOS)) {
+            return;
+        }
+
+        // a full bucket is indistinguishable from a new one, so it can be dropped
+        buckets.values().removeIf(bucket -> bucket.isFull(now));
+        LOGGER.debug("rate limit is tracking {} clients after clean up", buckets.size());
+    }
+
+    private static String stripQuery(String path) {
+        if (path == null) {
+            return null;
+        }
+
+        int queryIndex = path.indexOf('?');
+        return (queryIndex < 0) ? path : path.substring(0, queryIndex);
+    }
+
+    private void reject(int statusCode, String message, AsyncFilterChain.ResponseTrigger responseTrigger) throws HttpException, IOException {
+        HttpResponse response = new BasicHttpResponse(statusCode);
+        response.addHeader(HttpHeaders.RETRY_AFTER, Long.toString(getRetryAfterSeconds()));
+
+        AsyncEntityProducer responseContentProducer = AsyncEntityProducers.create(message);
+        responseTrigger.submitResponse(response, responseContentProducer);
+    }
+
+    private long getRetryAfterSeconds() {
+        Duration retryAfter = retryAfterSupplier.get();
+        if (retryAfter == null) {
+            return 1;
+        }
+
+        // round up to full seconds
+        long seconds = retryAfter.getSeconds();
+        if (retryAfter.getNano() > 0) {
+            seconds++;
+        }
+
+        return Math.max(1, seconds);
+    }
+
+    /**
+     * Releases the concurrency slot held by a request as soon as its response
+     * has been submitted.
+     */
+    private static class ReleasingResponseTrigger implements AsyncFilterChain.ResponseTrigger {
+        private final AsyncFilterChain.ResponseTrigger delegate;
+        private final AtomicInteger activeRequests;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private ReleasingResponseTrigger(AsyncFilterChain.ResponseTrigger delegate, AtomicInteger activeRequests) {
+            this.delegate = delegate;
+            this.activeRequests = activeRequests;
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                activeRequests.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void sendInformation(HttpResponse response) throws HttpException, IOException {
+            delegate.sendInformation(response);
+        }
+
+        @Override
+        public void submitResponse(HttpResponse response, AsyncEntityProducer entityProducer) throws HttpException, IOException {
+            release();
+            delegate.submitResponse(response, entityProducer);
+        }
+
+        @Override
+        public void pushPromise(HttpRequest promise, AsyncPushProducer responseProducer) throws HttpException, IOException {
+            delegate.pushPromise(promise, responseProducer);
+        }
+    }
+}
@@ -1,37 +1,52 @@
 package de.energiequant.vatsim.compatibility.legacyproxy.server;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.InetSocketAddress;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
 
 import org.apache.hc.core5.http.ConnectionReuseStrategy;
 import org.apache.hc.core5.http.ContentType;
-import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpStatus;
-import org.apache.hc.core5.http.Message;
 import org.apache.hc.core5.http.URIScheme;
 import org.apache.hc.core5.http.impl.bootstrap.AsyncServerBootstrap;
 import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
-import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
 import org.apache.hc.core5.io.CloseMode;
 import org.apache.hc.core5.reactor.IOReactorConfig;
 import org.apache.hc.core5.reactor.ListenerEndpoint;
+import org.apache.hc.core5.util.Timeout;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.vatplanner.dataformats.vatsimpublic.export.LegacyNetworkInformationWriter;
+import org.vatplanner.dataformats.vatsimpublic.parser.DataFile;
 import org.vatplanner.dataformats.vatsimpublic.parser.DataFileParserFactory;
 import org.vatplanner.dataformats.vatsimpublic.parser.OnlineTransceiversFile;
 
@@ -39,9 +54,14 @@ import de.energiequant.vatsim.compatibility.legacyproxy.AppConstants;
 import de.energiequant.vatsim.compatibility.legacyproxy.Configuration;
 import de.energiequant.vatsim.compatibility.legacyproxy.Main;
 import de.energiequant.vatsim.compatibility.legacyproxy.ServiceEndpoints;
+import de.energiequant.vatsim.compatibility.legacyproxy.fetching.JsonDataFileFetcher;
 import de.energiequant.vatsim.compatibility.legacyproxy.fetching.JsonNetworkInformationFetcher;
 import de.energiequant.vatsim.compatibility.legacyproxy.fetching.LegacyNetworkInformationFetcher;
 import de.energiequant.vatsim.compatibility.legacyproxy.fetching.OnlineTransceiversFileFetcher;
+import de.energiequant.vatsim.compatibility.legacyproxy.fetching.UpstreamClient;
+import de.energiequant.vatsim.compatibility.legacyproxy.fetching.UpstreamResponse;
+import de.energiequant.vatsim.compatibility.legacyproxy.metrics.Metrics;
+import de.energiequant.vatsim.compatibility.legacyproxy.utils.NamedThreadFactory;
 
 public class Server {
     private static final Logger LOGGER = LoggerFactory.getLogger(Server.class);
@@ -53,6 +73,37 @@ public class Server {
     private static final Duration ONLINE_TRANSCEIVERS_RETRY_INTERVAL = Duration.ofMinutes(1);
     private static final Duration ONLINE_TRANSCEIVERS_IDLE_TIMEOUT = Duration.ofMinutes(5);
 
+    private static final Duration DATA_FILE_RETRY_INTERVAL = Duration.ofSeconds(30);
+    private static final Duration DATA_FILE_IDLE_TIMEOUT = Duration.ofMinutes(5);
+
+    /**
+     * Number of threads used to perform CPU-bound work (encoding) on behalf of
+     * request handlers.
+     */
+    private static final int WORKER_POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Maximum number of tasks waiting for a worker; further requests are rejected
+     * instead of piling up unbounded.
+     */
+    private static final int WORKER_QUEUE_CAPACITY = 100;
+
+    private static final Duration WORKER_KEEP_ALIVE = Duration.ofMinutes(1);
+
+    /**
+     * The socket timeout also applies while a client is waiting for a response,
+     * so it must not be shorter than the time needed to retrieve data from
+     * upstream.
+     */
+    private static final Duration MINIMUM_SOCKET_TIMEOUT = AppConstants.EXTERNAL_REQUEST_TIMEOUT.plusSeconds(5);
+
+    /**
+     * Data file snapshots are replaced every few seconds; persisting each of them
+     * would only cause I/O while the cache is only needed to bridge a restart.
+     * The latest snapshot is stored in any case when the HTTP server is stopped.
+     */
+    private static final Duration WARM_START_DATA_FILE_STORE_INTERVAL = Duration.ofMinutes(5);
+
     /**
      * Default interval until we got at least one data file which tells us the
      * actual data retrieval interval requested by upstream.
@@ -62,8 +113,23 @@ public class Server {
     private final LegacyNetworkInformationFetcher legacyNetworkInformationFetcher;
     private final JsonNetworkInformationFetcher jsonNetworkInformationFetcher;
     private final OnlineTransceiversFileFetcher onlineTransceiversFileFetcher;
+    private final JsonDataFileFetcher jsonDataFileFetcher;
     private final AtomicReference<HttpAsyncServer> httpServer = new AtomicReference<>();
+    private final AtomicReference<Consumer<DataFile>> dataFileListener = new AtomicReference<>();
+    private final AtomicReference<LegacyDataFileSnapshotter> legacyDataFileSnapshotter = new AtomicReference<>();
+    private final AtomicReference<EncodedDocument> unstoredDataFileSnapshot = new AtomicReference<>();
+    private final AtomicReference<Instant> nextDataFileSnapshotStore = new AtomicReference<>(Instant.MIN);
+    private final AtomicReference<Runnable> networkInformationListener = new AtomicReference<>();
+    private final AtomicReference<SnapshotEventPublisher> snapshotEventPublisher = new AtomicReference<>();
     private final IPFilter ipFilter = new IPFilter();
+    private final WarmStartCache warmStartCache = Main.getConfiguration()
+                                                     .getWarmStartCacheDirectory()
+                                                     .map(WarmStartCache::new)
+                                                     .orElse(null);
+
+    private final ThreadPoolExecutor workerPool = createWorkerPool();
+    private final UpstreamClient upstreamClient = new UpstreamClient();
+    private final ScheduledExecutorService timeoutScheduler = createTimeoutScheduler();
 
     private static final ConnectionReuseStrategy NEVER_REUSE_CONNECTIONS = (request, response, context) -> false;
 
@@ -119,13 +185,15 @@ public class Server {
         legacyNetworkInformationFetcher = new LegacyNetworkInformationFetcher(
             upstreamBaseUrl + ServiceEndpoints.NETWORK_INFORMATION_LEGACY,
             NETWORK_INFORMATION_UPDATE_INTERVAL,
-            NETWORK_INFORMATION_RETRY_INTERVAL
+            NETWORK_INFORMATION_RETRY_INTERVAL,
+            upstreamClient
         );
 
         jsonNetworkInformationFetcher = new JsonNetworkInformationFetcher(
             upstreamBaseUrl + ServiceEndpoints.NETWORK_INFORMATION_JSON,
             NETWORK_INFORMATION_UPDATE_INTERVAL,
-            NETWORK_INFORMATION_RETRY_INTERVAL
+            NETWORK_INFORMATION_RETRY_INTERVAL,
+            upstreamClient
         );
 
         onlineTransceiversFileFetcher = new OnlineTransceiversFileFetcher(
@@ -157,7 +225,43 @@ public class Server {
                 );
             },
             ONLINE_TRANSCEIVERS_RETRY_INTERVAL,
-            ONLINE_TRANSCEIVERS_IDLE_TIMEOUT
+            ONLINE_TRANSCEIVERS_IDLE_TIMEOUT,
+            upstreamClient
+        );
+
+        if (warmStartCache != null) {
+            restoreOnlineTransceiversFile();
+            onlineTransceiversFileFetcher.addRawResponseListener(
+                response -> runInBackground(() -> storeOnlineTransceiversFile(response))
+            );
+        }
+
+        jsonDataFileFetcher = new JsonDataFileFetcher(
+            new DataFileParserFactory().createDataFileParser(AppConstants.UPSTREAM_DATA_FILE_FORMAT),
+            () -> {
+                Set<URL> combined = new HashSet<>();
+                combined.addAll(
+                    jsonNetworkInformationFetcher.getLastFetchedNetworkInformation()
+                                                 .map(x -> x.getDataUrls(AppConstants.UPSTREAM_DATA_FILE_FORMAT))
+                                                 .orElse(new ArrayList<>())
+                );
+                combined.addAll(
+                    legacyNetworkInformationFetcher.getLastFetchedNetworkInformation()
+                                                   .map(x -> x.getDataUrls(AppConstants.UPSTREAM_DATA_FILE_FORMAT))
+                                                   .orElse(new ArrayList<>())
+                );
+
+                if (combined.isEmpty()) {
+                    return null;
+                }
+
+                return pickRandomItem(combined).toString();
+            },
+            authoritativeMinimumDataUpdateInterval::get,
+            this::setAuthoritativeMinimumDataUpdateInterval,
+            DATA_FILE_RETRY_INTERVAL,
+            DATA_FILE_IDLE_TIMEOUT,
+            upstreamClient
         );
 
         LOGGER.info("Starting NetworkInformation fetcher threads");
@@ -170,6 +274,88 @@ public class Server {
         commandThread.start();
     }
 
+    private void restoreOnlineTransceiversFile() {
+        warmStartCache.load(WarmStartCache.ONLINE_TRANSCEIVERS).ifPresent(entry -> {
+            try (
+                Reader reader = new InputStreamReader(
+                    new GZIPInputStream(entry.getContent().openInputStream()),
+                    StandardCharsets.UTF_8
+                )
+            ) {
+                onlineTransceiversFileFetcher.restore(reader);
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.warn("Failed to restore online transceivers from warm-start cache", ex);
+            }
+        });
+    }
+
+    private void storeOnlineTransceiversFile(UpstreamResponse response) {
+        // upstream usually sends gzip already, such bodies can be stored as received
+        boolean isGzipped = response.getFirstHeaderValue(HttpHeaders.CONTENT_ENCODING)
+                                    .map(String::trim)
+                                    .filter(ContentCoding.GZIP::matches)
+                                    .isPresent();
+        if (isGzipped) {
+            warmStartCache.store(
+                WarmStartCache.ONLINE_TRANSCEIVERS,
+                ChunkedContent.wrap(response.getBody()),
+                response.getRetrievalTimestamp()
+            );
+            return;
+        }
+
+        try (InputStream is = response.openBodyStream()) {
+            warmStartCache.storeGzipped(WarmStartCache.ONLINE_TRANSCEIVERS, is, response.getRetrievalTimestamp());
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to store online transceivers to warm-start cache", ex);
+        }
+    }
+
+    private void onDataFileSnapshot(EncodedDocument snapshot) {
+        unstoredDataFileSnapshot.set(snapshot);
+
+        Instant now = Instant.now();
+        Instant next = nextDataFileSnapshotStore.get();
+        if (now.isBefore(next) || !nextDataFileSnapshotStore.compareAndSet(next, now.plus(WARM_START_DATA_FILE_STORE_INTERVAL))) {
+            return;
+        }
+
+        runInBackground(this::storeUnstoredDataFileSnapshot);
+    }
+
+    private void storeUnstoredDataFileSnapshot() {
+        EncodedDocument snapshot = unstoredDataFileSnapshot.getAndSet(null);
+        if (snapshot != null) {
+            storeDocument(WarmStartCache.DATA_FILE_LEGACY, snapshot);
+        }
+    }
+
+    private void runInBackground(Runnable runnable) {
+        try {
+            workerPool.execute(runnable);
+        } catch (RejectedExecutionException ex) {
+            LOGGER.warn("Worker pool is exhausted, skipping warm-start cache update");
+        }
+    }
+
+    private Optional<EncodedDocument> restoreDocument(String name) {
+        if (warmStartCache == null) {
+            return Optional.empty();
+        }
+
+        return warmStartCache.load(name)
+                             .map(entry -> new EncodedDocument(entry.getContent(), ContentType.TEXT_PLAIN, entry.getTimestamp())
+                                 .precompress()
+                                 .markStale()
+                             );
+    }
+
+    private void storeDocument(String name, EncodedDocument document) {
+        if (warmStartCache != null) {
+            warmStartCache.store(name, document);
+        }
+    }
+
     private void updateIPFilter() {
         ipFilter.allowOnly(Main.getConfiguration().getAllowedIps());
     }
@@ -199,7 +385,7 @@ public class Server {
         String localHostname = config.getLocalHostName();
         int localPort = config.getServerPort();
 
-        AsyncServerRequestHandler<Message<HttpRequest, Void>> legacyNetworkInformationRequestHandler = new InjectingLegacyNetworkInformationProxy(
+        InjectingLegacyNetworkInformationProxy legacyNetworkInformationRequestHandler = new InjectingLegacyNetworkInformationProxy(
             "http://" + localHostname + ":" + localPort,
             new LegacyNetworkInformationWriter(AppConstants.SERVER_DISCLAIMER_HEADER),
             legacyNetworkInformationFetcher::getLastFetchedNetworkInformation,
@@ -207,40 +393,112 @@ public class Server {
             legacyNetworkInformationFetcher::getLastAggregatedStartupMessages
         );
 
-        HttpAsyncServer myHttpServer = AsyncServerBootstrap
+        // documents from a previous run are served until upstream data is available again
+        restoreDocument(WarmStartCache.NETWORK_INFORMATION_LEGACY).ifPresent(legacyNetworkInformationRequestHandler::restore);
+
+        // network information is only rendered when it changes, initially it may already be available
+        Runnable newNetworkInformationListener = () -> legacyNetworkInformationRequestHandler
+            .render()
+            .ifPresent(document -> storeDocument(WarmStartCache.NETWORK_INFORMATION_LEGACY, document));
+        networkInformationListener.set(newNetworkInformationListener);
+        legacyNetworkInformationFetcher.addUpdateListener(newNetworkInformationListener);
+        jsonNetworkInformationFetcher.addUpdateListener(newNetworkInformationListener);
+        newNetworkInformationListener.run();
+
+        LegacyDataFileSnapshotter legacyDataFileSnapshotter = new LegacyDataFileSnapshotter(onlineTransceiversFileFetcher);
+        this.legacyDataFileSnapshotter.set(legacyDataFileSnapshotter);
+        restoreDocument(WarmStartCache.DATA_FILE_LEGACY).ifPresent(legacyDataFileSnapshotter::restore);
+        if (warmStartCache != null) {
+            legacyDataFileSnapshotter.addListener(this::onDataFileSnapshot);
+        }
+        Consumer<DataFile> newDataFileListener = legacyDataFileSnapshotter::onDataFile;
+        dataFileListener.set(newDataFileListener);
+        jsonDataFileFetcher.addListener(newDataFileListener);
+
+        // subscribers to the event stream need data to keep being fetched even without requests
+        SnapshotEventPublisher newSnapshotEventPublisher = new SnapshotEventPublisher(
+            timeoutScheduler,
+            jsonDataFileFetcher::markRequested
+        );
+        snapshotEventPublisher.set(newSnapshotEventPublisher);
+        legacyDataFileSnapshotter.addListener(newSnapshotEventPublisher::onSnapshot);
+
+        SnapshotHistory snapshotHistory = null;
+        int historyMemoryBudgetMegabytes = config.getHistoryMemoryBudgetMegabytes();
+        if (historyMemoryBudgetMegabytes > 0) {
+            snapshotHistory = new SnapshotHistory(historyMemoryBudgetMegabytes * 1024L * 1024L, workerPool);
+            legacyDataFileSnapshotter.addListener(snapshotHistory::onSnapshot);
+        }
+
+        DataFileDeltaProxy dataFileDeltaProxy = new DataFileDeltaProxy(
+            jsonDataFileFetcher,
+            legacyDataFileSnapshotter,
+            timeoutScheduler
+        );
+        legacyDataFileSnapshotter.addListener(dataFileDeltaProxy::onSnapshot);
+
+        IOReactorConfig.Builder ioReactorConfigBuilder = IOReactorConfig.custom()
+                                                                        .setSoReuseAddress(true);
+
+        ConnectionReuseStrategy connectionReuseStrategy = NEVER_REUSE_CONNECTIONS;
+        if (config.isKeepAliveEnabled()) {
+            Duration idleTimeout = max(
+                Duration.ofSeconds(config.getKeepAliveIdleTimeoutSeconds()),
+                MINIMUM_SOCKET_TIMEOUT
+            );
+            LOGGER.info("Keeping connections alive for up to {} seconds of inactivity", idleTimeout.getSeconds());
+            ioReactorConfigBuilder.setSoTimeout(Timeout.ofMilliseconds(idleTimeout.toMillis()));
+
+            connectionReuseStrategy = new KeepAliveStrategy(
+                config.getKeepAliveMaxRequestsPerConnection(),
+                config.getKeepAliveExcludedIps(),
+                config.getKeepAliveExcludedUserAgents()
+            );
+        }
+
+        AsyncServerBootstrap bootstrap = AsyncServerBootstrap
             .bootstrap()
-            .setIOReactorConfig(IOReactorConfig.custom()
-                                               .setSoReuseAddress(true)
-                                               .build()
-            )
+            .setIOReactorConfig(ioReactorConfigBuilder.build())
+            .setIOSessionListener(new ConnectionLimiter(config.getMaxConnections()))
             .addFilterFirst("ipFilter", ipFilter)
+            .addFilterBefore(
+                "ipFilter",
+                "metrics",
+                new MetricsFilter(Arrays.asList(
+                    ServiceEndpoints.DATA_FILE_LEGACY,
+                    ServiceEndpoints.DATA_FILE_DELTA,
+                    ServiceEndpoints.DATA_FILE_EVENTS,
+                    ServiceEndpoints.NETWORK_INFORMATION_JSON,
+                    ServiceEndpoints.NETWORK_INFORMATION_LEGACY,
+                    ServiceEndpoints.METRICS,
+                    "/"
+                ))
+            )
+            .addFilterAfter(
+                "ipFilter",
+                "rateLimit",
+                new RateLimitFilter(
+                    config.getRateLimitRequestsPerMinute(),
+                    config.getRateLimitBurst(),
+                    config.getRateLimitMaxConcurrentRequestsPerEndpoint(),
+                    Arrays.asList(
+                        ServiceEndpoints.DATA_FILE_LEGACY,
+                        ServiceEndpoints.DATA_FILE_DELTA,
+                        ServiceEndpoints.NETWORK_INFORMATION_JSON,
+                        ServiceEndpoints.NETWORK_INFORMATION_LEGACY
+                    ),
+                    authoritativeMinimumDataUpdateInterval::get
+                )
+            )
             .setCanonicalHostName(localHostname)
-            .setConnectionReuseStrategy(NEVER_REUSE_CONNECTIONS)
+            .setConnectionReuseStrategy(connectionReuseStrategy)
             .register(
                 ServiceEndpoints.DATA_FILE_LEGACY,
                 new JsonToLegacyDataFileProxy(
-                    new DataFileParserFactory().createDataFileParser(AppConstants.UPSTREAM_DATA_FILE_FORMAT),
-                    onlineTransceiversFileFetcher,
-                    () -> {
-                        Set<URL> combined = new HashSet<>();
-                        combined.addAll(
-                            jsonNetworkInformationFetcher.getLastFetchedNetworkInformation()
-                                                         .map(x -> x.getDataUrls(AppConstants.UPSTREAM_DATA_FILE_FORMAT))
-                                                         .orElse(new ArrayList<>())
-                        );
-                        combined.addAll(
-                            legacyNetworkInformationFetcher.getLastFetchedNetworkInformation()
-                                                           .map(x -> x.getDataUrls(AppConstants.UPSTREAM_DATA_FILE_FORMAT))
-                                                           .orElse(new ArrayList<>())
-                        );
-
-                        if (combined.isEmpty()) {
-                            return null;
-                        }
-
-                        return pickRandomItem(combined).toString();
-                    },
-                    this::setAuthoritativeMinimumDataUpdateInterval
+                    jsonDataFileFetcher,
+                    legacyDataFileSnapshotter,
+                    timeoutScheduler,
+                    snapshotHistory
                 )
             )
             .register(
@@ -248,11 +506,25 @@ public class Server {
                 new DirectProxy(
                     upstreamBaseUrl + ServiceEndpoints.NETWORK_INFORMATION_JSON,
                     StandardCharsets.UTF_8,
-                    ContentType.APPLICATION_JSON
+                    ContentType.APPLICATION_JSON,
+                    upstreamClient,
+                    Duration.ofSeconds(config.getNetworkInformationJsonCacheSeconds()),
+                    workerPool
                 )
             )
+            .register(ServiceEndpoints.DATA_FILE_DELTA, dataFileDeltaProxy)
+            .register(ServiceEndpoints.DATA_FILE_EVENTS, newSnapshotEventPublisher::createHandler)
             .register(ServiceEndpoints.NETWORK_INFORMATION_LEGACY, legacyNetworkInformationRequestHandler)
-            .register("/", legacyNetworkInformationRequestHandler)
+            .register("/", legacyNetworkInformationRequestHandler);
+
+        if (config.isMetricsEnabled()) {
+            bootstrap.register(
+                ServiceEndpoints.METRICS,
+                new MetricsRequestHandler(Metrics.REGISTRY, config.getMetricsAllowedIps())
+            );
+        }
+
+        HttpAsyncServer myHttpServer = bootstrap
             .register("*", new SimpleErrorResponse(HttpStatus.SC_NOT_FOUND, "not found"))
             .create();
 
@@ -289,6 +561,18 @@ public class Server {
         LOGGER.info("Stopping HTTP server");
         httpServer.get().close(CloseMode.IMMEDIATE);
 
+        // data files are only converted for the currently running HTTP server;
+        // the fetcher will be started again on next request
+        jsonDataFileFetcher.removeListener(dataFileListener.getAndSet(null));
+        legacyDataFileSnapshotter.getAndSet(null).close();
+        storeUnstoredDataFileSnapshot();
+        snapshotEventPublisher.getAndSet(null).close();
+
+        Runnable oldNetworkInformationListener = networkInformationListener.getAndSet(null);
+        legacyNetworkInformationFetcher.removeUpdateListener(oldNetworkInformationListener);
+        jsonNetworkInformationFetcher.removeUpdateListener(oldNetworkInformationListener);
+        jsonDataFileFetcher.stop();
+
         LOGGER.info("Stopped HTTP server");
         setState(State.HTTP_SERVER_STOPPED);
     }
@@ -302,13 +586,42 @@ public class Server {
         legacyNetworkInformationFetcher.stop();
         jsonNetworkInformationFetcher.stop();
         onlineTransceiversFileFetcher.stop();
+        jsonDataFileFetcher.stop();
 
         _stopHttpServer();
 
+        upstreamClient.close();
+
+        LOGGER.info("Stopping worker threads");
+        workerPool.shutdownNow();
+        timeoutScheduler.shutdownNow();
+
         LOGGER.info("Shutdown complete");
         setState(State.FULLY_STOPPED);
     }
 
+    private static ThreadPoolExecutor createWorkerPool() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            WORKER_POOL_SIZE,
+            WORKER_POOL_SIZE,
+            WORKER_KEEP_ALIVE.toMillis(),
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(WORKER_QUEUE_CAPACITY),
+            new NamedThreadFactory("worker")
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ScheduledExecutorService createTimeoutScheduler() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("timeout"));
+
+        // timeouts are cancelled for almost every request, they must not pile up until they would have expired
+        executor.setRemoveOnCancelPolicy(true);
+
+        return executor;
+    }
+
     private static <T> T pickRandomItem(Collection<T> items) {
         List<T> modifiableList = new ArrayList<T>(items);
         Collections.shuffle(modifiableList);
@@ -0,0 +1,149 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hc.core5.http.nio.AsyncServerExchangeHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Announces new legacy data file snapshots to all clients subscribed via
+ * Server-Sent Events. Clients can thus fetch the data file only when it has
+ * actually changed instead of polling blindly.
+ * <p>
+ * Each event carries the snapshot's ETag (also used as event ID) and data
+ * timestamp. Events are encoded only once and shared by all subscribers.
+ * Subscribers are served by the I/O reactor without any thread of their own;
+ * a periodic heartbeat keeps idle connections open.
+ * </p>
+ */
+public class SnapshotEventPublisher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotEventPublisher.class);
+
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
+    private static final Duration CLIENT_RECONNECT_DELAY = Duration.ofSeconds(10);
+
+    private static final String EVENT_NAME = "snapshot";
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PREAMBLE = ("retry: " + CLIENT_RECONNECT_DELAY.toMillis() + "\n\n").getBytes(StandardCharsets.UTF_8);
+
+    private final Set<EventStreamHandler> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicReference<Event> lastEvent = new AtomicReference<>();
+    private final Runnable subscriberKeepAlive;
+    private final ScheduledFuture<?> heartbeat;
+
+    private static class Event {
+        final String id;
+        final byte[] encoded;
+
+        Event(String id, byte[] encoded) {
+            this.id = id;
+            this.encoded = encoded;
+        }
+    }
+
+    /**
+     * Creates a new publisher.
+     *
+     * @param scheduler           used to send heartbeats
+     * @param subscriberKeepAlive called on subscription and heartbeat while clients are subscribed, should keep data being updated
+     */
+    public SnapshotEventPublisher(ScheduledExecutorService scheduler, Runnable subscriberKeepAlive) {
+        this.subscriberKeepAlive = subscriberKeepAlive;
+
+        long intervalMillis = HEARTBEAT_INTERVAL.toMillis();
+        this.heartbeat = scheduler.scheduleAtFixedRate(this::sendHeartbeat, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new handler for a client connecting to the event stream.
+     * Intended to be registered as supplier to the HTTP server.
+     *
+     * @return new handler
+     */
+    public AsyncServerExchangeHandler createHandler() {
+        return new EventStreamHandler(this);
+    }
+
+    /**
+     * Announces the given snapshot to all subscribers. Intended to be
+     * registered as a listener to {@link LegacyDataFileSnapshotter}.
+     *
+     * @param snapshot new snapshot
+     */
+    public void onSnapshot(EncodedDocument snapshot) {
+        Event event = encode(snapshot);
+        lastEvent.set(event);
+
+        LOGGER.debug("Announcing new snapshot {} to {} subscribers", event.id, subscribers.size());
+        for (EventStreamHandler subscriber : subscribers) {
+            subscriber.enqueue(event.encoded, true);
+        }
+    }
+
+    private static Event encode(EncodedDocument snapshot) {
+        String eTag = snapshot.getETag();
+        Instant timestamp = (snapshot.getDataTimestamp() != null) ? snapshot.getDataTimestamp() : snapshot.getLastModified();
+
+        String encoded = "id: " + eTag + "\n"
+            + "event: " + EVENT_NAME + "\n"
+            + "data: {\"etag\":\"" + eTag.replace("\"", "\\\"") + "\",\"timestamp\":\"" + timestamp + "\"}\n"
+            + "\n";
+
+        return new Event(eTag, encoded.getBytes(StandardCharsets.UTF_8));
+    }
+
+    void subscribe(EventStreamHandler subscriber, String lastEventId) {
+        subscriber.enqueue(PREAMBLE, false);
+
+        // reconnecting clients only need to be informed if they missed an update
+        Event event = lastEvent.get();
+        if ((event != null) && !event.id.equals(lastEventId)) {
+            subscriber.enqueue(event.encoded, true);
+        }
+
+        subscribers.add(subscriber);
+        LOGGER.debug("Event stream subscribed, {} subscribers", subscribers.size());
+
+        subscriberKeepAlive.run();
+    }
+
+    void unsubscribe(EventStreamHandler subscriber) {
+        if (subscribers.remove(subscriber)) {
+            LOGGER.debug("Event stream unsubscribed, {} subscribers", subscribers.size());
+        }
+    }
+
+    private void sendHeartbeat() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+
+        subscriberKeepAlive.run();
+
+        for (EventStreamHandler subscriber : subscribers) {
+            subscriber.enqueueIfIdle(HEARTBEAT);
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Stops sending heartbeats and forgets all subscribers. Connections are
+     * expected to be closed by the HTTP server.
+     */
+    public void close() {
+        heartbeat.cancel(false);
+        subscribers.clear();
+    }
+}
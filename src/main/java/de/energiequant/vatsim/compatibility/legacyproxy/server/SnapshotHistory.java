@@ -0,0 +1,161 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.hc.core5.http.ContentType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded history of previous legacy data file snapshots which can be looked up
+ * by time.
+ * <p>
+ * Only the gzip variant of each snapshot is retained; it has already been
+ * compressed for serving anyway, so recording a snapshot costs no extra work
+ * and holds roughly a fifth of the memory of the plain file. Oldest snapshots
+ * are dropped once the memory budget is exceeded. Requested snapshots are
+ * decompressed on the worker pool, never on the live serving path; the last
+ * restored snapshot is kept to serve repeated requests for the same time.
+ * </p>
+ */
+public class SnapshotHistory {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotHistory.class);
+
+    private final long memoryBudgetBytes;
+    private final Executor workerPool;
+
+    private final Deque<Entry> entries = new ArrayDeque<>();
+    private long totalBytes = 0;
+
+    private final AtomicReference<EncodedDocument> lastRestored = new AtomicReference<>();
+
+    private static class Entry {
+        private final Instant timestamp;
+        private final Instant dataTimestamp;
+        private final String eTag;
+        private final ContentType contentType;
+        private final ContentCoding coding;
+        private final ChunkedContent content;
+
+        private Entry(EncodedDocument snapshot) {
+            EncodedDocument.Variant variant = snapshot.getVariant(ContentCoding.GZIP);
+
+            this.dataTimestamp = snapshot.getDataTimestamp();
+            this.timestamp = (dataTimestamp != null) ? dataTimestamp : snapshot.getEncodingTimestamp();
+            this.eTag = snapshot.getETag();
+            this.contentType = snapshot.getContentType();
+            this.coding = variant.getCoding();
+            this.content = variant.getEncodedContent();
+        }
+    }
+
+    /**
+     * Creates a new history.
+     *
+     * @param memoryBudgetBytes maximum number of compressed bytes to retain
+     * @param workerPool        executes decompression of requested snapshots
+     */
+    public SnapshotHistory(long memoryBudgetBytes, Executor workerPool) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.workerPool = workerPool;
+    }
+
+    /**
+     * Records a new snapshot. Intended to be registered as a listener to
+     * {@link LegacyDataFileSnapshotter}.
+     *
+     * @param snapshot new snapshot
+     */
+    public void onSnapshot(EncodedDocument snapshot) {
+        Entry entry = new Entry(snapshot);
+
+        synchronized (entries) {
+            entries.addLast(entry);
+            totalBytes += entry.content.size();
+
+            while ((totalBytes > memoryBudgetBytes) && !entries.isEmpty()) {
+                Entry removed = entries.removeFirst();
+                totalBytes -= removed.content.size();
+            }
+
+            LOGGER.debug("History holds {} snapshots using {} bytes", entries.size(), totalBytes);
+        }
+    }
+
+    /**
+     * Returns the number of snapshots currently held.
+     *
+     * @return number of snapshots
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Looks up the snapshot which was current at the given time.
+     *
+     * @param time time to look up
+     * @return completes with the snapshot current at that time; empty if the history does not reach back that far
+     */
+    public CompletableFuture<Optional<EncodedDocument>> request(Instant time) {
+        Entry found = find(time);
+        if (found == null) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        EncodedDocument restored = lastRestored.get();
+        if ((restored != null) && restored.getETag().equals(found.eTag)) {
+            return CompletableFuture.completedFuture(Optional.of(restored));
+        }
+
+        return CompletableFuture.supplyAsync(() -> Optional.of(restore(found)), workerPool);
+    }
+
+    private Entry find(Instant time) {
+        synchronized (entries) {
+            Iterator<Entry> it = entries.descendingIterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (!entry.timestamp.isAfter(time)) {
+                    return entry;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private EncodedDocument restore(Entry entry) {
+        ChunkedContent content = entry.content;
+        if (entry.coding == ContentCoding.GZIP) {
+            ChunkedOutputStream cos = new ChunkedOutputStream();
+            try (InputStream is = new GZIPInputStream(entry.content.openInputStream())) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = is.read(buffer)) >= 0) {
+                    cos.write(buffer, 0, read);
+                }
+            } catch (IOException ex) {
+                // should not happen when reading from memory
+                throw new IllegalStateException("Failed to decompress snapshot " + entry.eTag, ex);
+            }
+            content = cos.toChunkedContent();
+        }
+
+        EncodedDocument restored = new EncodedDocument(content, entry.contentType, entry.dataTimestamp);
+        lastRestored.set(restored);
+        return restored;
+    }
+}
@@ -0,0 +1,199 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists the last successfully retrieved or generated documents to a local
+ * directory so they can be served immediately after a restart, before
+ * upstream data has been retrieved again.
+ * <p>
+ * Files are first written to a temporary file in the same directory and then
+ * renamed, so a crash while writing never leaves a partially written file
+ * behind. The data timestamp is recorded as the file's modification time.
+ * Failures are only logged; the cache is a convenience and must never stop the
+ * proxy from working.
+ * </p>
+ */
+public class WarmStartCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WarmStartCache.class);
+
+    public static final String NETWORK_INFORMATION_LEGACY = "status.txt";
+    public static final String DATA_FILE_LEGACY = "vatsim-data.txt";
+    public static final String ONLINE_TRANSCEIVERS = "transceivers-data.json.gz";
+
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final Map<String, String> storedETags = new ConcurrentHashMap<>();
+
+    /**
+     * Entry restored from cache.
+     */
+    public static class Entry {
+        private final ChunkedContent content;
+        private final Instant timestamp;
+
+        private Entry(ChunkedContent content, Instant timestamp) {
+            this.content = content;
+            this.timestamp = timestamp;
+        }
+
+        public ChunkedContent getContent() {
+            return content;
+        }
+
+        /**
+         * Returns the timestamp of the data as indicated when stored.
+         *
+         * @return data timestamp
+         */
+        public Instant getTimestamp() {
+            return timestamp;
+        }
+    }
+
+    /**
+     * Creates a cache using the given directory. The directory is created on
+     * first write if it does not exist yet.
+     *
+     * @param directory directory to hold cached files
+     */
+    public WarmStartCache(File directory) {
+        this.directory = directory.toPath();
+    }
+
+    /**
+     * Stores the given document unless it has already been stored before.
+     *
+     * @param name     name of cache entry
+     * @param document document to store
+     */
+    public void store(String name, EncodedDocument document) {
+        String eTag = document.getETag();
+        if (eTag.equals(storedETags.get(name))) {
+            return;
+        }
+
+        Instant timestamp = document.getDataTimestamp();
+        if (store(name, document.getContent(), (timestamp != null) ? timestamp : document.getEncodingTimestamp())) {
+            storedETags.put(name, eTag);
+        }
+    }
+
+    /**
+     * Compresses the given content by gzip and stores it, replacing any previous
+     * entry of the same name. The stream is read but not closed.
+     *
+     * @param name      name of cache entry
+     * @param is        uncompressed content to store
+     * @param timestamp timestamp of the data
+     * @return true if stored successfully, false on error
+     */
+    public boolean storeGzipped(String name, InputStream is, Instant timestamp) {
+        ChunkedOutputStream cos = new ChunkedOutputStream();
+        try (OutputStream os = new GZIPOutputStream(cos)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) >= 0) {
+                os.write(buffer, 0, read);
+            }
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to compress warm-start cache file {}", name, ex);
+            return false;
+        }
+
+        return store(name, cos.toChunkedContent(), timestamp);
+    }
+
+    /**
+     * Stores the given content, replacing any previous entry of the same name.
+     *
+     * @param name      name of cache entry
+     * @param content   content to store
+     * @param timestamp timestamp of the data
+     * @return true if stored successfully, false on error
+     */
+    public synchronized boolean store(String name, ChunkedContent content, Instant timestamp) {
+        Path target = directory.resolve(name);
+        Path temporary = null;
+        try {
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, name, TEMPORARY_FILE_SUFFIX);
+
+            try (OutputStream os = Files.newOutputStream(temporary)) {
+                content.writeTo(os);
+            }
+            Files.setLastModifiedTime(temporary, FileTime.from(timestamp));
+
+            try {
+                Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                LOGGER.debug("Atomic move is not supported for {}, replacing non-atomically", target);
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            LOGGER.debug("Stored {} bytes to {}", content.size(), target);
+            return true;
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to store warm-start cache file {}", target, ex);
+
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ex2) {
+                    LOGGER.debug("Failed to delete temporary file {}", temporary, ex2);
+                }
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Loads the given entry.
+     *
+     * @param name name of cache entry
+     * @return cached entry; empty if not available
+     */
+    public synchronized Optional<Entry> load(String name) {
+        Path source = directory.resolve(name);
+        ChunkedOutputStream cos = new ChunkedOutputStream();
+        try {
+            Instant timestamp = Files.getLastModifiedTime(source).toInstant();
+
+            try (InputStream is = Files.newInputStream(source)) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = is.read(buffer)) >= 0) {
+                    cos.write(buffer, 0, read);
+                }
+            }
+
+            LOGGER.info("Restored {} from warm-start cache, data timestamp {}", name, timestamp);
+            return Optional.of(new Entry(cos.toChunkedContent(), timestamp));
+        } catch (NoSuchFileException ex) {
+            LOGGER.debug("No warm-start cache file {}", source);
+            return Optional.empty();
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to load warm-start cache file {}", source, ex);
+            return Optional.empty();
+        }
+    }
+}
@@ -144,6 +144,10 @@ public class Cache<K, C, M> {
         return Optional.ofNullable(entry);
     }
 
+    public synchronized int size() {
+        return entriesIndexedByKey.size();
+    }
+
     public synchronized void clear() {
         LOGGER.trace("clearing cache");
         entriesIndexedByKey.clear();
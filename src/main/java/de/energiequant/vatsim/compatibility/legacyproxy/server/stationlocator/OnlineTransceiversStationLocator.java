@@ -2,24 +2,22 @@ package de.energiequant.vatsim.compatibility.legacyproxy.server.stationlocator;
 
 import java.time.Duration;
 import java.time.Instant;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.vatplanner.commons.geo.GeoMath;
 import org.vatplanner.commons.geo.GeoPoint2D;
-import org.vatplanner.dataformats.vatsimpublic.parser.OnlineTransceiverStation;
-import org.vatplanner.dataformats.vatsimpublic.parser.OnlineTransceiversFile;
-import org.vatplanner.dataformats.vatsimpublic.parser.ParserLogEntry;
-import org.vatplanner.dataformats.vatsimpublic.parser.ParserLogEntryCollector;
 
+import de.energiequant.vatsim.compatibility.legacyproxy.Configuration;
 import de.energiequant.vatsim.compatibility.legacyproxy.Main;
+import de.energiequant.vatsim.compatibility.legacyproxy.fetching.OnlineTransceiverPositions;
 import de.energiequant.vatsim.compatibility.legacyproxy.fetching.OnlineTransceiversFileFetcher;
 
 /**
@@ -27,34 +25,50 @@ import de.energiequant.vatsim.compatibility.legacyproxy.fetching.OnlineTransceiv
  * {@link OnlineTransceiversFileFetcher}.
  *
  * <p>
- * A cache local to this instance is maintained in addition to the cache used by
- * the fetcher. This extra caching is done because {@link #locate(String)} is
- * being called per station (not for batched stations in bulk) so repeated
- * indexing and synchronized access became necessary.
- * {@link #LOCAL_CACHE_LIFETIME} determines how long that cache will be reused.
+ * Stations are looked up by callsign on {@link OnlineTransceiverPositions}
+ * which are already indexed when extracted by the fetcher, so
+ * {@link #locate(String)} can be called per station (not for batched stations
+ * in bulk). New positions are picked up as soon as the fetcher announces them.
+ * The fetcher is only requested (which also keeps it running) after
+ * {@link #LOCAL_CACHE_LIFETIME} has passed.
  * </p>
  */
 public class OnlineTransceiversStationLocator {
     private static final Logger LOGGER = LoggerFactory.getLogger(OnlineTransceiversStationLocator.class);
 
     private final OnlineTransceiversFileFetcher onlineTransceiversFileFetcher;
+    private final Consumer<OnlineTransceiverPositions> positionsListener = this::update;
     private final boolean isParserLogEnabled;
 
     private static final Duration LOCAL_CACHE_LIFETIME = Duration.ofSeconds(5);
     private static final Duration FETCH_TIMEOUT = Duration.ofSeconds(10);
 
     private Instant cacheExpiration = Instant.now();
-    private Map<String, List<OnlineTransceiverStation>> transceiverStationsByCallsign = new HashMap<>();
+    private OnlineTransceiverPositions positions = null;
 
     public OnlineTransceiversStationLocator(OnlineTransceiversFileFetcher onlineTransceiversFileFetcher) {
+        this(Main.getConfiguration(), onlineTransceiversFileFetcher);
+    }
+
+    public OnlineTransceiversStationLocator(Configuration config, OnlineTransceiversFileFetcher onlineTransceiversFileFetcher) {
         this.onlineTransceiversFileFetcher = onlineTransceiversFileFetcher;
-        isParserLogEnabled = Main.getConfiguration().isParserLogEnabled();
+        isParserLogEnabled = config.isParserLogEnabled();
+
+        onlineTransceiversFileFetcher.addListener(positionsListener);
     }
 
-    private synchronized Map<String, List<OnlineTransceiverStation>> getCachedTransceiverStationsByCallsign() {
+    /**
+     * Unsubscribes from the fetcher. Must be called when the locator is no longer
+     * used as the fetcher otherwise keeps updating it.
+     */
+    public void close() {
+        onlineTransceiversFileFetcher.removeListener(positionsListener);
+    }
+
+    private synchronized Optional<OnlineTransceiverPositions> getCachedPositions() {
         maintainLocalCache();
 
-        return transceiverStationsByCallsign;
+        return Optional.ofNullable(positions);
     }
 
     private synchronized void maintainLocalCache() {
@@ -64,27 +78,44 @@ public class OnlineTransceiversStationLocator {
 
         LOGGER.debug("updating local cache");
 
-        OnlineTransceiversFile file = onlineTransceiversFileFetcher.waitForOnlineTransceiversFile(FETCH_TIMEOUT)
-                                                                   .orElse(null);
+        OnlineTransceiverPositions retrieved = null;
+        try {
+            retrieved = onlineTransceiversFileFetcher.requestOnlineTransceiverPositions()
+                                                     .get(FETCH_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException ex) {
+            LOGGER.debug("waiting for online transceivers failed", ex);
+        }
 
-        if (file == null) {
+        if (retrieved == null) {
             LOGGER.warn("Online transceivers are currently unavailable.");
         } else {
-            logParserMessages(file);
-
-            transceiverStationsByCallsign = file.getStations()
-                                                .stream()
-                                                .collect(Collectors.groupingBy(OnlineTransceiverStation::getCallsign));
+            update(retrieved);
         }
 
         cacheExpiration = Instant.now().plus(LOCAL_CACHE_LIFETIME);
     }
 
+    private synchronized void update(OnlineTransceiverPositions positions) {
+        if (positions == this.positions) {
+            return;
+        }
+
+        if (isParserLogEnabled && positions.getSkippedTransceiverCount() > 0) {
+            LOGGER.warn(
+                "Skipped {} online transceivers with incomplete position",
+                positions.getSkippedTransceiverCount()
+            );
+        }
+
+        this.positions = positions;
+    }
+
     public Optional<Station> locate(String callsign) {
         LOGGER.trace("locating \"{}\"", callsign);
 
-        List<OnlineTransceiverStation> transceiverStations = getCachedTransceiverStationsByCallsign().get(callsign);
-        if (transceiverStations == null) {
+        OnlineTransceiverPositions positions = getCachedPositions().orElse(null);
+        int[] stationIndexes = (positions != null) ? positions.getStationIndexes(callsign) : new int[0];
+        if (stationIndexes.length == 0) {
             LOGGER.trace("no transceivers for \"{}\"", callsign);
             return Optional.empty();
         }
@@ -94,11 +125,14 @@ public class OnlineTransceiversStationLocator {
         // file)
         Set<GeoPoint2D> transceiverCenterPoints = new HashSet<>();
 
-        for (OnlineTransceiverStation transceiverStation : transceiverStations) {
-            Set<GeoPoint2D> transceiverPoints = transceiverStation.getTransceivers()
-                                                                  .stream()
-                                                                  .map(transceiver -> new GeoPoint2D(transceiver.getLatitude(), transceiver.getLongitude()))
-                                                                  .collect(Collectors.toSet());
+        for (int stationIndex : stationIndexes) {
+            Set<GeoPoint2D> transceiverPoints = new HashSet<>();
+            for (int i = 0; i < positions.getTransceiverCount(stationIndex); i++) {
+                transceiverPoints.add(new GeoPoint2D(
+                    positions.getLatitude(stationIndex, i),
+                    positions.getLongitude(stationIndex, i)
+                ));
+            }
 
             if (!transceiverPoints.isEmpty()) {
                 GeoPoint2D transceiverGroupCenterPoint = GeoMath.average(transceiverPoints);
@@ -137,22 +171,4 @@ public class OnlineTransceiversStationLocator {
             )
         );
     }
-
-    private void logParserMessages(ParserLogEntryCollector parserLogEntryCollector) {
-        // TODO: extract to helper class?
-
-        if (!isParserLogEnabled) {
-            return;
-        }
-
-        // exceptions/stack traces are not logged as they are only useful for
-        // development and would clutter the log in the main window beyond readability
-        for (ParserLogEntry entry : parserLogEntryCollector.getParserLogEntries()) {
-            LOGGER.warn(
-                "Failed to parse online transceiver{}, section {}, {}: {}",
-                entry.isLineRejected() ? " (rejected)" : "",
-                entry.getSection(), entry.getMessage(), entry.getLineContent()
-            );
-        }
-    }
 }
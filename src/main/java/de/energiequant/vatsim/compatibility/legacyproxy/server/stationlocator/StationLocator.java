@@ -14,6 +14,7 @@ import org.vatplanner.dataformats.vatsimpublic.parser.DataFile;
 import de.energiequant.vatsim.compatibility.legacyproxy.Configuration;
 import de.energiequant.vatsim.compatibility.legacyproxy.Main;
 import de.energiequant.vatsim.compatibility.legacyproxy.fetching.OnlineTransceiversFileFetcher;
+import de.energiequant.vatsim.compatibility.legacyproxy.metrics.Metrics;
 import de.energiequant.vatsim.compatibility.legacyproxy.server.stationlocator.Cache.Entry;
 
 public class StationLocator {
@@ -27,15 +28,14 @@ public class StationLocator {
     private final VatSpyStationLocator vatSpyStationLocator;
     private final OnlineTransceiversStationLocator onlineTransceiversStationLocator;
 
-    private final Configuration config = Main.getConfiguration();
-    private final Strategy strategy = config.getStationLocatorStrategy();
-    private final boolean shouldIdentifyObserverByCallsign = config.shouldIdentifyObserverByCallsign();
-    private final boolean shouldWarnAboutUnlocatableATC = config.shouldWarnAboutUnlocatableATC();
-    private final boolean shouldWarnAboutUnlocatableObserver = config.shouldWarnAboutUnlocatableObserver();
-    private final boolean shouldLocateObserverByVatSpy = config.shouldLocateObserverByVatSpy();
-    private final boolean shouldLocateObserverByTransceivers = config.shouldLocateObserverByTransceivers();
-    private final boolean shouldLocateObserver = shouldLocateObserverByTransceivers || shouldLocateObserverByVatSpy;
-    private final boolean shouldIgnorePlaceholderFrequency = config.shouldIgnorePlaceholderFrequency();
+    private final Strategy strategy;
+    private final boolean shouldIdentifyObserverByCallsign;
+    private final boolean shouldWarnAboutUnlocatableATC;
+    private final boolean shouldWarnAboutUnlocatableObserver;
+    private final boolean shouldLocateObserverByVatSpy;
+    private final boolean shouldLocateObserverByTransceivers;
+    private final boolean shouldLocateObserver;
+    private final boolean shouldIgnorePlaceholderFrequency;
 
     public static enum Strategy {
         DISABLE(
@@ -103,15 +103,34 @@ public class StationLocator {
     }
 
     public StationLocator(OnlineTransceiversFileFetcher onlineTransceiversFileFetcher) {
+        this(Main.getConfiguration(), onlineTransceiversFileFetcher);
+    }
+
+    /**
+     * Creates a new locator configured by the given {@link Configuration} instead
+     * of the application-wide one.
+     *
+     * @param config                        configuration to apply
+     * @param onlineTransceiversFileFetcher provides online transceivers to locate stations by
+     */
+    public StationLocator(Configuration config, OnlineTransceiversFileFetcher onlineTransceiversFileFetcher) {
+        this.strategy = config.getStationLocatorStrategy();
+        this.shouldIdentifyObserverByCallsign = config.shouldIdentifyObserverByCallsign();
+        this.shouldWarnAboutUnlocatableATC = config.shouldWarnAboutUnlocatableATC();
+        this.shouldWarnAboutUnlocatableObserver = config.shouldWarnAboutUnlocatableObserver();
+        this.shouldLocateObserverByVatSpy = config.shouldLocateObserverByVatSpy();
+        this.shouldLocateObserverByTransceivers = config.shouldLocateObserverByTransceivers();
+        this.shouldLocateObserver = shouldLocateObserverByTransceivers || shouldLocateObserverByVatSpy;
+        this.shouldIgnorePlaceholderFrequency = config.shouldIgnorePlaceholderFrequency();
+
         this.vatSpyStationLocator = strategy.enablesVatSpy()
-            ? initializeVatSpyStationLocator()
+            ? initializeVatSpyStationLocator(config)
             : null;
 
-        this.onlineTransceiversStationLocator = new OnlineTransceiversStationLocator(onlineTransceiversFileFetcher);
+        this.onlineTransceiversStationLocator = new OnlineTransceiversStationLocator(config, onlineTransceiversFileFetcher);
     }
 
-    private VatSpyStationLocator initializeVatSpyStationLocator() {
-        Configuration config = Main.getConfiguration();
+    private VatSpyStationLocator initializeVatSpyStationLocator(Configuration config) {
         boolean isExternalDirectoryEnabled = config.isVatSpyBaseDirectoryEnabled();
         if (isExternalDirectoryEnabled) {
             File vatSpyBaseDir = config.getVatSpyBaseDirectory().orElse(null);
@@ -119,7 +138,7 @@ public class StationLocator {
                 LOGGER.info("Loading external VAT-Spy data from {}", vatSpyBaseDir.getAbsolutePath());
 
                 try {
-                    return new VatSpyStationLocator(vatSpyBaseDir);
+                    return new VatSpyStationLocator(config, vatSpyBaseDir);
                 } catch (Exception ex) {
                     LOGGER.warn(
                         "Failed to load external VAT-Spy data from {}, switching to included data",
@@ -131,7 +150,7 @@ public class StationLocator {
 
         LOGGER.debug("Loading included VAT-Spy data");
         try {
-            return new VatSpyStationLocator();
+            return new VatSpyStationLocator(config);
         } catch (Exception ex) {
             LOGGER.warn("Failed to load included VAT-Spy data", ex);
         }
@@ -143,6 +162,7 @@ public class StationLocator {
         Entry<String, Station, Source> cached = cache.get(callsign).orElse(null);
         if (cached != null) {
             LOGGER.trace("location for \"{}\" was available from cache, source: {}", callsign, cached.getMetaData());
+            recordLookup(true, cached.getMetaData());
             return Optional.of(cached.getContent());
         }
 
@@ -166,14 +186,20 @@ public class StationLocator {
         if (station != null) {
             LOGGER.trace("location for \"{}\" was available from {}, caching", callsign, station.getSource());
             cache.add(callsign, station, station.getSource(), POSITIVE_RESULT_TIMEOUT);
+            recordLookup(false, station.getSource());
             return Optional.of(station);
         }
 
         // TODO: negative cache?
 
+        recordLookup(false, Source.NONE);
         return Optional.empty();
     }
 
+    private static void recordLookup(boolean isCacheHit, Source source) {
+        Metrics.STATION_LOCATOR_LOOKUPS.labels(isCacheHit ? "hit" : "miss", source.name().toLowerCase()).inc();
+    }
+
     public void injectTo(DataFile dataFile) {
         LOGGER.debug("Injecting station locations...");
         for (Client client : dataFile.getClients()) {
@@ -218,6 +244,8 @@ public class StationLocator {
                 client.setLongitude(longitude);
             }
         }
+
+        Metrics.STATION_LOCATOR_CACHE_ENTRIES.get().set(cache.size());
     }
 
     /**
@@ -243,4 +271,12 @@ public class StationLocator {
     public boolean isVatSpySourceExternal() {
         return (vatSpyStationLocator != null) && vatSpyStationLocator.usesExternalDataSource();
     }
+
+    /**
+     * Releases all subscriptions held by the locator. Must be called when the
+     * locator is no longer used.
+     */
+    public void close() {
+        onlineTransceiversStationLocator.close();
+    }
 }
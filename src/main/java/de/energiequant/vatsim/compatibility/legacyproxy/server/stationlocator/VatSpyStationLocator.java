@@ -1,5 +1,7 @@
 package de.energiequant.vatsim.compatibility.legacyproxy.server.stationlocator;
 
+import static de.energiequant.vatsim.compatibility.legacyproxy.utils.ParserLogHelper.logParserMessages;
+
 import java.io.File;
 import java.io.FileReader;
 import java.io.Reader;
@@ -20,8 +22,6 @@ import org.slf4j.LoggerFactory;
 import org.vatplanner.commons.geo.GeoMath;
 import org.vatplanner.commons.geo.GeoPoint2D;
 import org.vatplanner.dataformats.vatsimpublic.parser.Parser;
-import org.vatplanner.dataformats.vatsimpublic.parser.ParserLogEntry;
-import org.vatplanner.dataformats.vatsimpublic.parser.ParserLogEntryCollector;
 import org.vatplanner.dataformats.vatsimpublic.parser.vatspy.Airport;
 import org.vatplanner.dataformats.vatsimpublic.parser.vatspy.FIRBoundary;
 import org.vatplanner.dataformats.vatsimpublic.parser.vatspy.FIRBoundaryFile;
@@ -51,8 +51,8 @@ public class VatSpyStationLocator {
     private static final String INCLUDED_FIR_BOUNDARIES_DAT_PATH = "com/github/vatsimnetwork/vatspy-data-project/"
         + EXPECTED_FILE_NAME_FIR_BOUNDARIES_DAT;
 
-    private final Configuration config = Main.getConfiguration();
-    private final boolean shouldAliasUSStations = config.shouldVatSpyAliasUSStations();
+    private final Configuration config;
+    private final boolean shouldAliasUSStations;
 
     private final Map<String, GeoPoint2D> centerPointsByCallsignPrefix = new HashMap<>();
 
@@ -72,10 +72,16 @@ public class VatSpyStationLocator {
     }
 
     public VatSpyStationLocator(File baseDirectory) throws LoadingFailed {
-        this(baseDirectory, true);
+        this(Main.getConfiguration(), baseDirectory);
+    }
+
+    public VatSpyStationLocator(Configuration config, File baseDirectory) throws LoadingFailed {
+        this(config, baseDirectory, true);
     }
 
-    private VatSpyStationLocator(File baseDirectory, boolean isLoggingAllowed) throws LoadingFailed {
+    private VatSpyStationLocator(Configuration config, File baseDirectory, boolean isLoggingAllowed) throws LoadingFailed {
+        this.config = config;
+        this.shouldAliasUSStations = config.shouldVatSpyAliasUSStations();
         this.isLoggingAllowed = isLoggingAllowed;
         this.usesExternalDataSource = true;
 
@@ -97,6 +103,12 @@ public class VatSpyStationLocator {
     }
 
     public VatSpyStationLocator() throws LoadingFailed {
+        this(Main.getConfiguration());
+    }
+
+    public VatSpyStationLocator(Configuration config) throws LoadingFailed {
+        this.config = config;
+        this.shouldAliasUSStations = config.shouldVatSpyAliasUSStations();
         this.isLoggingAllowed = true;
         this.usesExternalDataSource = false;
         warnAboutOldVatSpyData();
@@ -134,7 +146,7 @@ public class VatSpyStationLocator {
 
         VatSpyStationLocator locator = null;
         try {
-            locator = new VatSpyStationLocator(baseDirectory, false);
+            locator = new VatSpyStationLocator(Main.getConfiguration(), baseDirectory, false);
         } catch (Exception ex) {
             return Optional.of(ex.getMessage());
         }
@@ -151,17 +163,17 @@ public class VatSpyStationLocator {
     }
 
     private void load(VatSpyFile vatSpyFile, FIRBoundaryFile firBoundaryFile) {
-        if (isLoggingAllowed && Main.getConfiguration().isParserLogEnabled()) {
-            logParserMessages(EXPECTED_FILE_NAME_VATSPY_DAT, vatSpyFile);
-            logParserMessages(EXPECTED_FILE_NAME_FIR_BOUNDARIES_DAT, firBoundaryFile);
+        if (isLoggingAllowed && config.isParserLogEnabled()) {
+            logParserMessages(LOGGER, EXPECTED_FILE_NAME_VATSPY_DAT, vatSpyFile);
+            logParserMessages(LOGGER, EXPECTED_FILE_NAME_FIR_BOUNDARIES_DAT, firBoundaryFile);
         }
 
         Map<String, GeoPoint2D> centerPointsByBoundaryId = indexCenterPointsByBoundaryId(firBoundaryFile);
         centerPointsByCallsignPrefix.putAll(indexCenterPointsByCallsignPrefix(vatSpyFile, centerPointsByBoundaryId));
     }
 
-    private static void warnAboutOldVatSpyData() {
-        if (!Main.getConfiguration().shouldWarnAboutOldIntegratedVatSpyDatabase()) {
+    private void warnAboutOldVatSpyData() {
+        if (!config.shouldWarnAboutOldIntegratedVatSpyDatabase()) {
             return;
         }
 
@@ -412,20 +424,6 @@ public class VatSpyStationLocator {
         }
     }
 
-    private void logParserMessages(String fileName, ParserLogEntryCollector logCollector) {
-        // exceptions/stack traces are not logged as they are only useful for
-        // development and would clutter the log in the main window beyond readability
-        for (ParserLogEntry entry : logCollector.getParserLogEntries()) {
-            warn(
-                "Failed to parse from {} ({}), section {}, {}: {}",
-                fileName,
-                entry.isLineRejected() ? "rejected" : "accepted",
-                entry.getSection(), entry.getMessage(),
-                entry.getLineContent() != null ? entry.getLineContent() : "(line content not logged)"
-            );
-        }
-    }
-
     public Optional<Station> locate(String callsign) {
         trace("locating \"{}\"", callsign);
 
@@ -0,0 +1,51 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.utils;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Helper methods to work with {@link CompletableFuture}s.
+ */
+public class FutureHelper {
+    private FutureHelper() {
+        // utility class, hide constructor
+    }
+
+    /**
+     * Returns a {@link CompletableFuture} which completes with the result of the
+     * given future or exceptionally with a {@link TimeoutException} if the given
+     * future did not complete within the specified timeout. The original future
+     * is not affected by the timeout.
+     *
+     * @param future    future to wait for
+     * @param timeout   maximum time to wait
+     * @param scheduler used to trigger the timeout
+     * @param <T>       result type
+     * @return future completing with the original result or failing on timeout
+     */
+    public static <T> CompletableFuture<T> withTimeout(CompletableFuture<T> future, Duration timeout, ScheduledExecutorService scheduler) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+
+        ScheduledFuture<?> scheduledTimeout = scheduler.schedule(
+            () -> result.completeExceptionally(new TimeoutException("timed out after " + timeout)),
+            timeout.toMillis(),
+            TimeUnit.MILLISECONDS
+        );
+
+        future.whenComplete((value, ex) -> {
+            scheduledTimeout.cancel(false);
+
+            if (ex != null) {
+                result.completeExceptionally(ex);
+            } else {
+                result.complete(value);
+            }
+        });
+
+        return result;
+    }
+}
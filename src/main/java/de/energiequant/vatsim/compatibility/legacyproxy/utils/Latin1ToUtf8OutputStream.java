@@ -0,0 +1,127 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Streaming stage recoding ISO-8859-1 (Latin-1) bytes to UTF-8 while they are
+ * being written, so output does not need to be decoded into a {@link String}
+ * and encoded again as a whole.
+ * <p>
+ * Recoding works on bytes directly: All Latin-1 characters have the same code
+ * point as their byte value, so ASCII bytes are kept unchanged and only bytes
+ * above 0x7F need to be expanded to a sequence of two bytes. Long runs of
+ * ASCII are passed through to the target without being copied.
+ * </p>
+ * <p>
+ * {@link #close()} or {@link #flush()} must be called to write all data to the
+ * target stream. Closing this stream also closes the target. Not thread-safe.
+ * </p>
+ */
+public class Latin1ToUtf8OutputStream extends OutputStream {
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final OutputStream target;
+    private final byte[] buffer;
+    private int bufferLength;
+
+    public Latin1ToUtf8OutputStream(OutputStream target) {
+        this(target, DEFAULT_BUFFER_SIZE);
+    }
+
+    public Latin1ToUtf8OutputStream(OutputStream target, int bufferSize) {
+        if (bufferSize < 2) {
+            throw new IllegalArgumentException("buffer must be able to hold at least one expanded character");
+        }
+
+        this.target = target;
+        this.buffer = new byte[bufferSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (buffer.length - bufferLength < 2) {
+            flushBuffer();
+        }
+
+        if ((b & 0x80) == 0) {
+            buffer[bufferLength++] = (byte) b;
+        } else {
+            buffer[bufferLength++] = (byte) (0xC0 | ((b & 0xFF) >> 6));
+            buffer[bufferLength++] = (byte) (0x80 | (b & 0x3F));
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if ((off < 0) || (len < 0) || (off + len > b.length)) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        int end = off + len;
+        int i = off;
+        while (i < end) {
+            // find end of ASCII run
+            int runStart = i;
+            while ((i < end) && (b[i] >= 0)) {
+                i++;
+            }
+
+            int runLength = i - runStart;
+            if (runLength > 0) {
+                writeAscii(b, runStart, runLength);
+            }
+
+            // expand all following high bytes
+            while ((i < end) && (b[i] < 0)) {
+                if (buffer.length - bufferLength < 2) {
+                    flushBuffer();
+                }
+
+                int value = b[i++] & 0xFF;
+                buffer[bufferLength++] = (byte) (0xC0 | (value >> 6));
+                buffer[bufferLength++] = (byte) (0x80 | (value & 0x3F));
+            }
+        }
+    }
+
+    private void writeAscii(byte[] b, int off, int len) throws IOException {
+        if (len <= buffer.length - bufferLength) {
+            System.arraycopy(b, off, buffer, bufferLength, len);
+            bufferLength += len;
+            return;
+        }
+
+        flushBuffer();
+
+        if (len >= buffer.length) {
+            // no need to copy large runs, just pass them through
+            target.write(b, off, len);
+        } else {
+            System.arraycopy(b, off, buffer, 0, len);
+            bufferLength = len;
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (bufferLength > 0) {
+            target.write(buffer, 0, bufferLength);
+            bufferLength = 0;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        target.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            target.close();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.utils;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates daemon threads named by a common prefix and a sequential number so
+ * they can be identified easily in thread dumps and logs.
+ */
+public class NamedThreadFactory implements ThreadFactory {
+    private final String namePrefix;
+    private final AtomicInteger nextThreadNumber = new AtomicInteger(1);
+
+    public NamedThreadFactory(String namePrefix) {
+        this.namePrefix = namePrefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, namePrefix + "-" + nextThreadNumber.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,38 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.utils;
+
+import org.slf4j.Logger;
+import org.vatplanner.dataformats.vatsimpublic.parser.ParserLogEntry;
+import org.vatplanner.dataformats.vatsimpublic.parser.ParserLogEntryCollector;
+
+/**
+ * Helper methods to report messages collected while parsing upstream files.
+ */
+public class ParserLogHelper {
+    private ParserLogHelper() {
+        // utility class, hide constructor
+    }
+
+    /**
+     * Logs all entries of the given collector as warnings.
+     * <p>
+     * Exceptions/stack traces are not logged as they are only useful for
+     * development and would clutter the log in the main window beyond
+     * readability.
+     * </p>
+     *
+     * @param logger    logger to write to
+     * @param source    describes the parsed file (e.g. file name or URL)
+     * @param collector holds the messages collected while parsing
+     */
+    public static void logParserMessages(Logger logger, String source, ParserLogEntryCollector collector) {
+        for (ParserLogEntry entry : collector.getParserLogEntries()) {
+            logger.warn(
+                "Failed to parse from {} ({}), section {}, {}: {}",
+                source,
+                entry.isLineRejected() ? "rejected" : "accepted",
+                entry.getSection(), entry.getMessage(),
+                entry.getLineContent() != null ? entry.getLineContent() : "(line content not logged)"
+            );
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent requests for the same key into a single execution.
+ * While an action is in flight for a key, all further requests for that key
+ * share its result instead of starting another execution. As soon as the
+ * action completes, the next request will start a new execution.
+ *
+ * @param <K> key identifying equal requests
+ * @param <V> result type
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Starts the given action unless there is already an action in flight for
+     * the same key, in which case the result of that action will be shared.
+     * <p>
+     * Every caller receives its own dependent {@link CompletableFuture}, so
+     * cancelling it does not affect other callers.
+     * </p>
+     *
+     * @param key    identifies equal requests
+     * @param action starts the actual execution; only called if nothing is in flight for the key
+     * @return result of either the started or the shared execution
+     */
+    public CompletableFuture<V> request(K key, Supplier<CompletableFuture<V>> action) {
+        CompletableFuture<V> shared = new CompletableFuture<>();
+        CompletableFuture<V> previous = inFlight.putIfAbsent(key, shared);
+        if (previous != null) {
+            return dependentOn(previous);
+        }
+
+        CompletableFuture<V> execution;
+        try {
+            execution = action.get();
+        } catch (Exception ex) {
+            inFlight.remove(key, shared);
+            shared.completeExceptionally(ex);
+            return dependentOn(shared);
+        }
+
+        execution.whenComplete((result, ex) -> {
+            // remove first so late requests do not receive an already completed result
+            inFlight.remove(key, shared);
+
+            if (ex != null) {
+                shared.completeExceptionally(ex);
+            } else {
+                shared.complete(result);
+            }
+        });
+
+        return dependentOn(shared);
+    }
+
+    /**
+     * Returns the number of keys currently in flight.
+     *
+     * @return number of keys currently in flight
+     */
+    public int size() {
+        return inFlight.size();
+    }
+
+    private CompletableFuture<V> dependentOn(CompletableFuture<V> future) {
+        return future.thenApply(result -> result);
+    }
+}
@@ -0,0 +1,68 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.fetching;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.junit.jupiter.api.Test;
+
+public class CacheValidatorsTest {
+    private static final String URL = "http://localhost/status.json";
+    private static final String OTHER_URL = "http://127.0.0.1/status.json";
+    private static final String ETAG = "\"abc123\"";
+    private static final String LAST_MODIFIED = "Sat, 12 Jun 2021 10:20:30 GMT";
+
+    private static UpstreamResponse response(Header... headers) {
+        return new UpstreamResponse(HttpStatus.SC_OK, new byte[0], null, headers);
+    }
+
+    @Test
+    public void testFrom_noValidators_returnsNone() {
+        // Arrange
+        UpstreamResponse response = response();
+
+        // Act
+        CacheValidators validators = CacheValidators.from(URL, response);
+
+        // Assert
+        assertThat(validators).isSameAs(CacheValidators.NONE);
+        assertThat(validators.isApplicableTo(URL)).isFalse();
+    }
+
+    @Test
+    public void testApplyTo_sameUrl_setsConditionalHeaders() {
+        // Arrange
+        CacheValidators validators = CacheValidators.from(URL, response(
+            new BasicHeader(HttpHeaders.ETAG, ETAG),
+            new BasicHeader(HttpHeaders.LAST_MODIFIED, LAST_MODIFIED)
+        ));
+        SimpleRequestBuilder builder = SimpleRequestBuilder.get(URL);
+
+        // Act
+        validators.applyTo(URL, builder);
+
+        // Assert
+        SimpleHttpRequest request = builder.build();
+        assertThat(request.getFirstHeader(HttpHeaders.IF_NONE_MATCH).getValue()).isEqualTo(ETAG);
+        assertThat(request.getFirstHeader(HttpHeaders.IF_MODIFIED_SINCE).getValue()).isEqualTo(LAST_MODIFIED);
+    }
+
+    @Test
+    public void testApplyTo_otherUrl_setsNoHeaders() {
+        // Arrange
+        CacheValidators validators = CacheValidators.from(URL, response(new BasicHeader(HttpHeaders.ETAG, ETAG)));
+        SimpleRequestBuilder builder = SimpleRequestBuilder.get(OTHER_URL);
+
+        // Act
+        validators.applyTo(OTHER_URL, builder);
+
+        // Assert
+        SimpleHttpRequest request = builder.build();
+        assertThat(request.getFirstHeader(HttpHeaders.IF_NONE_MATCH)).isNull();
+        assertThat(request.getFirstHeader(HttpHeaders.IF_MODIFIED_SINCE)).isNull();
+    }
+}
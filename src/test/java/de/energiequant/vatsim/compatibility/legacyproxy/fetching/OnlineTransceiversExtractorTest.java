@@ -0,0 +1,145 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.fetching;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class OnlineTransceiversExtractorTest {
+    private static final String FILE = "[\n"
+        + "  {\"callsign\": \"EDDT_TWR\", \"transceivers\": [\n"
+        + "    {\"id\": 0, \"frequency\": 118705000, \"latDeg\": 52.5, \"lonDeg\": 13.3, \"heightMslM\": 40.0, \"heightAglM\": 10.0},\n"
+        + "    {\"id\": 1, \"frequency\": 118705000, \"latDeg\": 52.6, \"lonDeg\": 13.4, \"heightMslM\": 40.0, \"heightAglM\": 10.0}\n"
+        + "  ]},\n"
+        + "  {\"callsign\": \"DLH123\", \"transceivers\": [{\"id\": 0, \"latDeg\": -1.25e1, \"lonDeg\": -0.5}]},\n"
+        + "  {\"callsign\": \"EDDT_TWR\", \"transceivers\": [{\"latDeg\": 50.0, \"lonDeg\": 10.0}]}\n"
+        + "]";
+
+    private final OnlineTransceiversExtractor extractor = new OnlineTransceiversExtractor();
+
+    private OnlineTransceiverPositions extract(String json) throws IOException {
+        return extractor.extract(new StringReader(json));
+    }
+
+    @Test
+    public void testExtract_validFile_extractsAllStationsInOrder() throws Exception {
+        // Arrange (nothing to arrange)
+
+        // Act
+        OnlineTransceiverPositions positions = extract(FILE);
+
+        // Assert
+        assertThat(positions.getStationCount()).isEqualTo(3);
+        assertThat(positions.getCallsign(0)).isEqualTo("EDDT_TWR");
+        assertThat(positions.getCallsign(1)).isEqualTo("DLH123");
+        assertThat(positions.getCallsign(2)).isEqualTo("EDDT_TWR");
+    }
+
+    @Test
+    public void testExtract_validFile_extractsCoordinatesPerStation() throws Exception {
+        // Arrange (nothing to arrange)
+
+        // Act
+        OnlineTransceiverPositions positions = extract(FILE);
+
+        // Assert
+        assertThat(positions.getTransceiverCount(0)).isEqualTo(2);
+        assertThat(positions.getLatitude(0, 1)).isEqualTo(52.6);
+        assertThat(positions.getLongitude(0, 1)).isEqualTo(13.4);
+        assertThat(positions.getTransceiverCount(1)).isEqualTo(1);
+        assertThat(positions.getLatitude(1, 0)).isEqualTo(-12.5);
+        assertThat(positions.getLongitude(1, 0)).isEqualTo(-0.5);
+    }
+
+    @Test
+    public void testGetStationIndexes_duplicateCallsign_returnsAllStationsInOrder() throws Exception {
+        // Arrange
+        OnlineTransceiverPositions positions = extract(FILE);
+
+        // Act
+        int[] result = positions.getStationIndexes("EDDT_TWR");
+
+        // Assert
+        assertThat(result).containsExactly(0, 2);
+    }
+
+    @Test
+    public void testGetStationIndexes_unknownCallsign_returnsEmpty() throws Exception {
+        // Arrange
+        OnlineTransceiverPositions positions = extract(FILE);
+
+        // Act
+        int[] result = positions.getStationIndexes("EDDT_GND");
+
+        // Assert
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    public void testExtract_unknownAttributesOfAnyType_ignoresAttributes() throws Exception {
+        // Arrange
+        String json = "[{\"extra\": {\"a\": [1, true, null, \"x\\\"y\"]}, \"callsign\": \"EDDT_\\u0054WR\", "
+            + "\"transceivers\": [{\"latDeg\": 1.0, \"other\": [], \"lonDeg\": 2.0}], \"more\": false}]";
+
+        // Act
+        OnlineTransceiverPositions positions = extract(json);
+
+        // Assert
+        assertThat(positions.getStationIndexes("EDDT_TWR")).containsExactly(0);
+        assertThat(positions.getLatitude(0, 0)).isEqualTo(1.0);
+        assertThat(positions.getLongitude(0, 0)).isEqualTo(2.0);
+    }
+
+    @Test
+    public void testExtract_incompletePositions_skipsTransceiversAndStationsWithoutCallsign() throws Exception {
+        // Arrange
+        String json = "[{\"callsign\": \"A\", \"transceivers\": [{\"latDeg\": 1.0}, {\"latDeg\": 1.0, \"lonDeg\": null}, "
+            + "{\"latDeg\": 3.0, \"lonDeg\": 4.0}]}, {\"transceivers\": [{\"latDeg\": 5.0, \"lonDeg\": 6.0}]}, "
+            + "{\"callsign\": \"B\", \"transceivers\": null}]";
+
+        // Act
+        OnlineTransceiverPositions positions = extract(json);
+
+        // Assert
+        assertThat(positions.getStationCount()).isEqualTo(2);
+        assertThat(positions.getTransceiverCount(0)).isEqualTo(1);
+        assertThat(positions.getLatitude(0, 0)).isEqualTo(3.0);
+        assertThat(positions.getTransceiverCount(1)).isZero();
+        assertThat(positions.getSkippedTransceiverCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testExtract_emptyArray_returnsNoStations() throws Exception {
+        // Arrange (nothing to arrange)
+
+        // Act
+        OnlineTransceiverPositions positions = extract(" [ ] ");
+
+        // Assert
+        assertThat(positions.getStationCount()).isZero();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "",
+        "{}",
+        "[{\"callsign\": \"A\"}",
+        "[{\"callsign\": \"A\", \"transceivers\": [{\"latDeg\": 1..0, \"lonDeg\": 2.0}]}]",
+        "[{\"callsign\" \"A\"}]",
+        "[] []",
+    })
+    public void testExtract_malformed_throwsIOException(String json) {
+        // Arrange (nothing to arrange)
+
+        // Act
+        Throwable thrown = catchThrowable(() -> extract(json));
+
+        // Assert
+        assertThat(thrown).isInstanceOf(IOException.class);
+    }
+}
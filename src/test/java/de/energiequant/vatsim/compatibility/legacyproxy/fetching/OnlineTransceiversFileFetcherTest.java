@@ -0,0 +1,74 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.fetching;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class OnlineTransceiversFileFetcherTest {
+    private static final String FILE = "[{\"callsign\":\"EDDT_TWR\",\"transceivers\":[{\"id\":0,\"frequency\":118705000,"
+        + "\"latDeg\":52.5,\"lonDeg\":13.3,\"heightMslM\":40.0,\"heightAglM\":10.0}]}]";
+
+    private UpstreamClient upstreamClient;
+    private OnlineTransceiversFileFetcher fetcher;
+
+    @BeforeEach
+    public void setUp() {
+        // no URL is available, so nothing is ever retrieved from upstream
+        upstreamClient = new UpstreamClient();
+        fetcher = new OnlineTransceiversFileFetcher(
+            () -> null,
+            () -> Duration.ofMinutes(1),
+            Duration.ofMinutes(1),
+            Duration.ofMinutes(1),
+            upstreamClient
+        );
+    }
+
+    @AfterEach
+    public void tearDown() {
+        fetcher.stop();
+        upstreamClient.close();
+    }
+
+    @Test
+    public void testRequestOnlineTransceiverPositions_noPositionsAvailable_isPending() {
+        // Arrange (nothing to arrange)
+
+        // Act
+        CompletableFuture<OnlineTransceiverPositions> future = fetcher.requestOnlineTransceiverPositions();
+
+        // Assert
+        assertThat(future).isNotDone();
+    }
+
+    @Test
+    public void testRequestOnlineTransceiverPositions_restoredWhilePending_completesWithRestoredPositions() throws Exception {
+        // Arrange
+        CompletableFuture<OnlineTransceiverPositions> future = fetcher.requestOnlineTransceiverPositions();
+
+        // Act
+        fetcher.restore(new StringReader(FILE));
+
+        // Assert
+        assertThat(future).isCompleted();
+        assertThat(future.join().getStationIndexes("EDDT_TWR")).containsExactly(0);
+    }
+
+    @Test
+    public void testRequestOnlineTransceiverPositions_restoredBefore_isCompleted() throws Exception {
+        // Arrange
+        fetcher.restore(new StringReader(FILE));
+
+        // Act
+        CompletableFuture<OnlineTransceiverPositions> future = fetcher.requestOnlineTransceiverPositions();
+
+        // Assert
+        assertThat(future).isCompleted();
+    }
+}
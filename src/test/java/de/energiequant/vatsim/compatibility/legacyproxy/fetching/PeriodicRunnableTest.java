@@ -0,0 +1,171 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.fetching;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+public class PeriodicRunnableTest {
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private static class RecordingRunnable extends PeriodicRunnable {
+        private final Semaphore wakeups = new Semaphore(0);
+        private final Consumer<RecordingRunnable> action;
+
+        RecordingRunnable(Consumer<RecordingRunnable> action) {
+            this.action = action;
+        }
+
+        @Override
+        protected Duration onPeriodicWakeup() {
+            action.accept(this);
+            wakeups.release();
+            return Duration.ofMinutes(1);
+        }
+
+        boolean awaitWakeup() throws InterruptedException {
+            return wakeups.tryAcquire(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testStart_notStarted_wakesUpImmediately() throws Exception {
+        // Arrange
+        RecordingRunnable runnable = new RecordingRunnable(x -> {
+        });
+
+        // Act
+        runnable.start();
+
+        // Assert
+        try {
+            assertThat(runnable.awaitWakeup()).isTrue();
+            assertThat(runnable.isAlive()).isTrue();
+        } finally {
+            runnable.stop();
+        }
+    }
+
+    @Test
+    public void testStop_waitingForNextWakeup_stopsImmediately() throws Exception {
+        // Arrange
+        RecordingRunnable runnable = new RecordingRunnable(x -> {
+        });
+        runnable.start();
+        runnable.awaitWakeup();
+
+        // Act
+        runnable.stop();
+
+        // Assert
+        assertThat(runnable.isAlive()).isFalse();
+    }
+
+    @Test
+    public void testStart_afterStop_wakesUpAgain() throws Exception {
+        // Arrange
+        RecordingRunnable runnable = new RecordingRunnable(x -> {
+        });
+        runnable.start();
+        runnable.awaitWakeup();
+        runnable.stop();
+
+        // Act
+        runnable.start();
+
+        // Assert
+        try {
+            assertThat(runnable.awaitWakeup()).isTrue();
+        } finally {
+            runnable.stop();
+        }
+    }
+
+    @Test
+    public void testStop_calledDuringWakeup_stopsAfterWakeup() throws Exception {
+        // Arrange
+        RecordingRunnable runnable = new RecordingRunnable(PeriodicRunnable::stop);
+
+        // Act
+        runnable.start();
+        boolean hasWokenUp = runnable.awaitWakeup();
+
+        // Assert
+        assertThat(hasWokenUp).isTrue();
+        assertThat(runnable.isAlive()).isFalse();
+    }
+
+    @Test
+    public void testStop_otherThreadDuringWakeup_interruptsWakeup() throws Exception {
+        // Arrange
+        CountDownLatch wakeupStarted = new CountDownLatch(1);
+        AtomicBoolean wasInterrupted = new AtomicBoolean();
+        RecordingRunnable runnable = new RecordingRunnable(x -> {
+            wakeupStarted.countDown();
+            try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS * 2));
+            } catch (InterruptedException ex) {
+                wasInterrupted.set(true);
+            }
+        });
+        runnable.start();
+        wakeupStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        // Act
+        runnable.stop();
+
+        // Assert
+        assertThat(runnable.isAlive()).isFalse();
+        assertThat(runnable.awaitWakeup()).isTrue();
+        assertThat(wasInterrupted).isTrue();
+    }
+
+    @Test
+    public void testStart_calledDuringShutdown_restartsAfterShutdown() throws Exception {
+        // Arrange
+        AtomicInteger numWakeups = new AtomicInteger();
+        RecordingRunnable runnable = new RecordingRunnable(x -> {
+            if (numWakeups.incrementAndGet() == 1) {
+                x.stop();
+                x.start();
+            }
+        });
+
+        // Act
+        runnable.start();
+
+        // Assert
+        try {
+            assertThat(runnable.awaitWakeup()).isTrue();
+            assertThat(runnable.awaitWakeup()).isTrue();
+            assertThat(runnable.isAlive()).isTrue();
+        } finally {
+            runnable.stop();
+        }
+    }
+
+    @Test
+    public void testStop_calledAgainDuringShutdown_cancelsPendingRestart() throws Exception {
+        // Arrange
+        RecordingRunnable runnable = new RecordingRunnable(x -> {
+            x.stop();
+            x.start();
+            x.stop();
+        });
+
+        // Act
+        runnable.start();
+        boolean hasWokenUp = runnable.awaitWakeup();
+
+        // Assert
+        assertThat(hasWokenUp).isTrue();
+        assertThat(runnable.isAlive()).isFalse();
+    }
+}
@@ -0,0 +1,130 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.fetching;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.junit.jupiter.api.Test;
+
+public class StreamingResponseConsumerTest {
+    private static final String URL = "http://localhost/vatsim-data.json";
+    private static final String CONTENT = "{\"general\":{\"version\":3},\"pilots\":[],\"controllers\":[]}";
+
+    private static class ResultCallback implements FutureCallback<StreamedUpstreamResponse> {
+        private final CompletableFuture<StreamedUpstreamResponse> future = new CompletableFuture<>();
+
+        @Override
+        public void completed(StreamedUpstreamResponse result) {
+            future.complete(result);
+        }
+
+        @Override
+        public void failed(Exception ex) {
+            future.completeExceptionally(ex);
+        }
+
+        @Override
+        public void cancelled() {
+            future.cancel(false);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (OutputStream os = new GZIPOutputStream(baos)) {
+            os.write(bytes);
+        }
+        return baos.toByteArray();
+    }
+
+    private static String readFully(Reader reader) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[16];
+        int read;
+        while ((read = reader.read(buffer)) >= 0) {
+            sb.append(buffer, 0, read);
+        }
+        return sb.toString();
+    }
+
+    private static ByteArrayEntity entity(byte[] body, String contentEncoding) {
+        return new ByteArrayEntity(body, ContentType.APPLICATION_JSON, contentEncoding);
+    }
+
+    @Test
+    public void testConsume_gzipInChunks_readsDecompressedBodyAndCountsTransferredBytes() throws Exception {
+        // Arrange
+        byte[] compressed = gzip(CONTENT.getBytes(StandardCharsets.UTF_8));
+        StreamingResponseConsumer consumer = new StreamingResponseConsumer(URL);
+        ResultCallback callback = new ResultCallback();
+
+        consumer.consumeResponse(new BasicHttpResponse(HttpStatus.SC_OK), entity(compressed, "gzip"), null, callback);
+        for (int offset = 0; offset < compressed.length; offset += 10) {
+            consumer.consume(ByteBuffer.wrap(compressed, offset, Math.min(10, compressed.length - offset)));
+        }
+        consumer.streamEnd(Collections.emptyList());
+
+        // Act
+        String result;
+        StreamedUpstreamResponse response = callback.future.get();
+        try (Reader reader = response.openBodyReader(StandardCharsets.ISO_8859_1)) {
+            result = readFully(reader);
+        }
+
+        // Assert
+        assertThat(result).isEqualTo(CONTENT);
+        assertThat(response.getReceivedBytes()).isEqualTo(compressed.length);
+    }
+
+    @Test
+    public void testConsumeResponse_statusNotOk_failsCallback() {
+        // Arrange
+        StreamingResponseConsumer consumer = new StreamingResponseConsumer(URL);
+        ResultCallback callback = new ResultCallback();
+
+        // Act
+        consumer.consumeResponse(
+            new BasicHttpResponse(HttpStatus.SC_SERVICE_UNAVAILABLE),
+            entity(new byte[]{1, 2, 3}, null),
+            null,
+            callback
+        );
+
+        // Assert
+        assertThat(callback.future).isCompletedExceptionally();
+    }
+
+    @Test
+    public void testRead_failedDuringTransfer_throwsIOException() throws Exception {
+        // Arrange
+        byte[] body = CONTENT.getBytes(StandardCharsets.UTF_8);
+        StreamingResponseConsumer consumer = new StreamingResponseConsumer(URL);
+        ResultCallback callback = new ResultCallback();
+
+        consumer.consumeResponse(new BasicHttpResponse(HttpStatus.SC_OK), entity(body, null), null, callback);
+        consumer.consume(ByteBuffer.wrap(body, 0, 10));
+        consumer.failed(new IOException("connection reset"));
+
+        Reader reader = callback.future.get().openBodyReader(StandardCharsets.UTF_8);
+
+        // Act
+        Throwable thrown = catchThrowable(() -> readFully(reader));
+
+        // Assert
+        assertThat(thrown).isInstanceOf(IOException.class);
+    }
+}
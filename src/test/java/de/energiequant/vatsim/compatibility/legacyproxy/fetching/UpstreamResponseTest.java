@@ -0,0 +1,121 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.fetching;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class UpstreamResponseTest {
+    private static final String CONTENT = "{\"callsign\":\"EDDT_TWR\",\"name\":\"Jürgen\"}";
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (OutputStream os = new GZIPOutputStream(baos)) {
+            os.write(bytes);
+        }
+        return baos.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] bytes) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (OutputStream os = new DeflaterOutputStream(baos)) {
+            os.write(bytes);
+        }
+        return baos.toByteArray();
+    }
+
+    private static UpstreamResponse response(byte[] body, ContentType contentType, Header... headers) {
+        return new UpstreamResponse(HttpStatus.SC_OK, body, contentType, headers);
+    }
+
+    @Test
+    public void testGetBodyAsString_noContentEncoding_returnsBodyAsIs() {
+        // Arrange
+        UpstreamResponse response = response(CONTENT.getBytes(StandardCharsets.UTF_8), null);
+
+        // Act
+        String result = response.getBodyAsString(StandardCharsets.UTF_8);
+
+        // Assert
+        assertThat(result).isEqualTo(CONTENT);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"gzip", "x-gzip", " GZIP "})
+    public void testGetBodyAsString_gzip_returnsDecompressed(String contentEncoding) throws Exception {
+        // Arrange
+        UpstreamResponse response = response(
+            gzip(CONTENT.getBytes(StandardCharsets.UTF_8)),
+            null,
+            new BasicHeader(HttpHeaders.CONTENT_ENCODING, contentEncoding)
+        );
+
+        // Act
+        String result = response.getBodyAsString(StandardCharsets.UTF_8);
+
+        // Assert
+        assertThat(result).isEqualTo(CONTENT);
+    }
+
+    @Test
+    public void testGetBodyAsString_deflate_returnsDecompressed() throws Exception {
+        // Arrange
+        UpstreamResponse response = response(
+            deflate(CONTENT.getBytes(StandardCharsets.UTF_8)),
+            null,
+            new BasicHeader(HttpHeaders.CONTENT_ENCODING, "deflate")
+        );
+
+        // Act
+        String result = response.getBodyAsString(StandardCharsets.UTF_8);
+
+        // Assert
+        assertThat(result).isEqualTo(CONTENT);
+    }
+
+    @Test
+    public void testGetBodyAsString_gzipWithIndicatedCharset_decodesIndicatedCharset() throws Exception {
+        // Arrange
+        UpstreamResponse response = response(
+            gzip(CONTENT.getBytes(StandardCharsets.ISO_8859_1)),
+            ContentType.TEXT_PLAIN.withCharset(StandardCharsets.ISO_8859_1),
+            new BasicHeader(HttpHeaders.CONTENT_ENCODING, "gzip")
+        );
+
+        // Act
+        String result = response.getBodyAsString(StandardCharsets.UTF_8);
+
+        // Assert
+        assertThat(result).isEqualTo(CONTENT);
+    }
+
+    @Test
+    public void testOpenBodyStream_unsupportedContentEncoding_throwsIOException() {
+        // Arrange
+        UpstreamResponse response = response(
+            new byte[]{1, 2, 3},
+            null,
+            new BasicHeader(HttpHeaders.CONTENT_ENCODING, "br")
+        );
+
+        // Act
+        Throwable thrown = catchThrowable(response::openBodyStream);
+
+        // Assert
+        assertThat(thrown).isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,65 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import org.junit.jupiter.api.Test;
+
+public class MetricsRegistryTest {
+    @Test
+    public void testRender_counterWithLabels_rendersEscapedSamplesSorted() {
+        // Arrange
+        MetricsRegistry registry = new MetricsRegistry();
+        Counter.Family family = registry.counter("test_total", "Some help.", "endpoint", "status");
+        family.labels("/b", "200").add(3);
+        family.labels("/a \"quoted\"", "404").inc();
+
+        // Act
+        String result = registry.render();
+
+        // Assert
+        assertThat(result).isEqualTo(
+            "# HELP test_total Some help.\n"
+                + "# TYPE test_total counter\n"
+                + "test_total{endpoint=\"/a \\\"quoted\\\"\",status=\"404\"} 1\n"
+                + "test_total{endpoint=\"/b\",status=\"200\"} 3\n"
+        );
+    }
+
+    @Test
+    public void testRender_histogram_rendersCumulativeBuckets() {
+        // Arrange
+        MetricsRegistry registry = new MetricsRegistry();
+        Histogram histogram = registry.histogram("test_seconds", "Durations.", new double[] { 0.1, 1 }).get();
+        histogram.observe(0.05);
+        histogram.observe(0.1);
+        histogram.observe(0.5);
+        histogram.observe(2.5);
+
+        // Act
+        String result = registry.render();
+
+        // Assert
+        assertThat(result).isEqualTo(
+            "# HELP test_seconds Durations.\n"
+                + "# TYPE test_seconds histogram\n"
+                + "test_seconds_bucket{le=\"0.1\"} 2\n"
+                + "test_seconds_bucket{le=\"1\"} 3\n"
+                + "test_seconds_bucket{le=\"+Inf\"} 4\n"
+                + "test_seconds_sum 3.15\n"
+                + "test_seconds_count 4\n"
+        );
+    }
+
+    @Test
+    public void testLabels_wrongNumberOfValues_throwsIllegalArgumentException() {
+        // Arrange
+        Counter.Family family = new MetricsRegistry().counter("test_total", "help", "endpoint");
+
+        // Act
+        Throwable thrown = catchThrowable(() -> family.labels("a", "b"));
+
+        // Assert
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,83 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class AddressTrieTest {
+    @CsvSource(value = {
+        // exact addresses
+        "'127.0.0.1', 127.0.0.1, true",
+        "'127.0.0.1', 127.0.0.2, false",
+        "'0:0:0:0:0:0:0:1', ::1, true",
+        "'::1', 0:0:0:0:0:0:0:1, true",
+        "'::1', ::2, false",
+
+        // ranges
+        "'192.168.0.0/24', 192.168.0.0, true",
+        "'192.168.0.0/24', 192.168.0.255, true",
+        "'192.168.0.0/24', 192.168.1.0, false",
+        "'10.0.0.0/8', 10.123.45.67, true",
+        "'10.0.0.0/8', 11.0.0.1, false",
+        "'0.0.0.0/0', 203.0.113.5, true",
+        "'0.0.0.0/0', ::1, false",
+        "'fd00::/8', fd12:3456::1, true",
+        "'fd00::/8', fe80::1, false",
+        "'::/0', 2001:db8::1, true",
+
+        // multiple entries
+        "'127.0.0.1;192.168.0.0/16', 192.168.12.34, true",
+        "'192.168.0.0/16;192.168.1.0/24', 192.168.2.1, true",
+        "'192.168.1.0/24;192.168.0.0/16', 192.168.2.1, true",
+
+        // invalid entries are ignored
+        "'256.0.0.1;127.0.0.1', 127.0.0.1, true",
+        "'1.2.3.4/33', 1.2.3.4, false",
+        "'1.2.3/24', 1.2.3.0, false",
+        "'localhost', 127.0.0.1, false",
+        "'1.2.3.4/x', 1.2.3.4, false",
+        "'', 127.0.0.1, false",
+    })
+    @ParameterizedTest
+    public void testMatches_always_returnsExpectedResult(String entries, String address, boolean expectedResult) throws UnknownHostException {
+        // Arrange
+        AddressTrie trie = AddressTrie.of(Arrays.asList(entries.split(";")));
+
+        // Act
+        boolean result = trie.matches(InetAddress.getByName(address));
+
+        // Assert
+        assertThat(result).isEqualTo(expectedResult);
+    }
+
+    @ValueSource(strings = {"127.0.0.1", " 192.168.0.0/24 ", "::1", "fd00::/8", "0.0.0.0/0"})
+    @ParameterizedTest
+    public void testValidate_validEntry_doesNotThrow(String entry) {
+        // Arrange (nothing to arrange)
+
+        // Act
+        Throwable thrown = catchThrowable(() -> AddressTrie.validate(entry));
+
+        // Assert
+        assertThat(thrown).isNull();
+    }
+
+    @ValueSource(strings = {"256.0.0.1", "1.2.3.4/33", "1.2.3/24", "localhost", "1.2.3.4/x", "fd00::/129", ""})
+    @ParameterizedTest
+    public void testValidate_invalidEntry_throwsIllegalArgumentException(String entry) {
+        // Arrange (nothing to arrange)
+
+        // Act
+        Throwable thrown = catchThrowable(() -> AddressTrie.validate(entry));
+
+        // Assert
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,122 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.nio.DataStreamChannel;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+public class ChunkedEntityProducerTest {
+    private static byte[] createBytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+
+    private static ChunkedContent createContent(byte[] bytes, int chunkSize, int writeSize) {
+        ChunkedOutputStream cos = new ChunkedOutputStream(chunkSize);
+        for (int offset = 0; offset < bytes.length; offset += writeSize) {
+            cos.write(bytes, offset, Math.min(writeSize, bytes.length - offset));
+        }
+        return cos.toChunkedContent();
+    }
+
+    /**
+     * Records all written data while accepting at most the given number of bytes
+     * per call to {@link ChunkedEntityProducer#produce(DataStreamChannel)}.
+     */
+    private static byte[] produce(ChunkedEntityProducer producer, int maxBytesPerCall) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        AtomicBoolean ended = new AtomicBoolean();
+        int[] remainingCapacity = new int[1];
+        DataStreamChannel channel = new DataStreamChannel() {
+            @Override
+            public void requestOutput() {
+                // not needed
+            }
+
+            @Override
+            public int write(ByteBuffer src) {
+                int length = Math.min(src.remaining(), remainingCapacity[0]);
+                byte[] bytes = new byte[length];
+                src.get(bytes);
+                baos.write(bytes, 0, length);
+                remainingCapacity[0] -= length;
+                return length;
+            }
+
+            @Override
+            public void endStream() {
+                ended.set(true);
+            }
+
+            @Override
+            public void endStream(List<? extends Header> trailers) {
+                ended.set(true);
+            }
+        };
+
+        while (!ended.get()) {
+            remainingCapacity[0] = maxBytesPerCall;
+            producer.produce(channel);
+        }
+
+        return baos.toByteArray();
+    }
+
+    @CsvSource({
+        // length, chunk size, write size, max bytes per produce call
+        "0, 16, 1, 100",
+        "1, 16, 1, 100",
+        "16, 16, 16, 100",
+        "17, 16, 5, 100",
+        "100, 16, 7, 3",
+        "100, 16, 100, 16",
+        "1000, 64, 1, 1000",
+        "1000, 1000, 333, 7",
+    })
+    @ParameterizedTest
+    public void testProduce_anyChunking_producesOriginalContent(int length, int chunkSize, int writeSize, int maxBytesPerCall) throws IOException {
+        // Arrange
+        byte[] expected = createBytes(length);
+        ChunkedContent content = createContent(expected, chunkSize, writeSize);
+        ChunkedEntityProducer producer = new ChunkedEntityProducer(content, ContentType.TEXT_PLAIN);
+
+        // Act
+        byte[] result = produce(producer, maxBytesPerCall);
+
+        // Assert
+        assertThat(result).containsExactly(expected);
+        assertThat(producer.getContentLength()).isEqualTo(length);
+        assertThat(producer.available()).isEqualTo(0);
+    }
+
+    @CsvSource({
+        "100, 16",
+        "5, 16",
+    })
+    @ParameterizedTest
+    public void testProduce_afterReleasingResources_producesContentAgain(int length, int chunkSize) throws IOException {
+        // Arrange
+        byte[] expected = createBytes(length);
+        ChunkedEntityProducer producer = new ChunkedEntityProducer(createContent(expected, chunkSize, length), ContentType.TEXT_PLAIN);
+        produce(producer, Integer.MAX_VALUE);
+        producer.releaseResources();
+
+        // Act
+        byte[] result = produce(producer, Integer.MAX_VALUE);
+
+        // Assert
+        assertThat(result).containsExactly(expected);
+    }
+}
@@ -0,0 +1,37 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+public class ContentCodingTest {
+    @CsvSource(value = {
+        "NULL, IDENTITY",
+        "'', IDENTITY",
+        "identity, IDENTITY",
+        "gzip, GZIP",
+        "x-gzip, GZIP",
+        "GZip, GZIP",
+        "deflate, DEFLATE",
+        "'deflate, gzip', GZIP",
+        "'gzip;q=0.5, deflate', DEFLATE",
+        "'gzip; q=0.5, deflate;q=0.8', DEFLATE",
+        "'gzip;q=0, deflate;q=0', IDENTITY",
+        "'br', IDENTITY",
+        "'*', GZIP",
+        "'*;q=0.1, gzip;q=0', DEFLATE",
+        "'identity;q=1, gzip;q=0.5', IDENTITY",
+        "'gzip;q=invalid', IDENTITY",
+    }, nullValues = "NULL")
+    @ParameterizedTest
+    public void testNegotiate_always_returnsExpectedResult(String acceptEncoding, ContentCoding expectedResult) {
+        // Arrange (nothing to do)
+
+        // Act
+        ContentCoding result = ContentCoding.negotiate(acceptEncoding);
+
+        // Assert
+        assertThat(result).isEqualTo(expectedResult);
+    }
+}
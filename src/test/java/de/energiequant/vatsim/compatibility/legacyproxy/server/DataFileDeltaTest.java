@@ -0,0 +1,155 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+public class DataFileDeltaTest {
+    private static final String BASE_ETAG = "\"base\"";
+    private static final String TARGET_ETAG = "\"target\"";
+
+    private static String clientLine(String callsign, String logonTime, String latitude) {
+        String[] fields = new String[42];
+        Arrays.fill(fields, "");
+        fields[0] = callsign;
+        fields[5] = latitude;
+        fields[37] = logonTime;
+        return String.join(":", fields);
+    }
+
+    private static ChunkedContent content(String... lines) {
+        return ChunkedContent.wrap((String.join("\n", lines) + "\n").getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static DataFileDelta.Index index(ChunkedContent content) {
+        return DataFileDelta.compute(BASE_ETAG, content, Collections.emptyList()).getIndex();
+    }
+
+    private static String delta(ChunkedContent base, ChunkedContent target) {
+        DataFileDelta.Result result = DataFileDelta.compute(TARGET_ETAG, target, Collections.singletonList(index(base)));
+        return asString(result.getDeltasByBaseETag().get(BASE_ETAG));
+    }
+
+    private static String asString(ChunkedContent delta) {
+        byte[] bytes = new byte[delta.size()];
+        int offset = 0;
+        for (int i = 0; i < delta.getChunkCount(); i++) {
+            byte[] chunk = delta.getChunk(i);
+            System.arraycopy(chunk, 0, bytes, offset, chunk.length);
+            offset += chunk.length;
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "'UPDATE = 20210612102030', UPDATE",
+        "'ABC123:1234567:Some Name:PILOT', ABC123",
+        "'no separator at all', 'no separator at all'",
+    })
+    public void testKeyOf_shortLine_returnsNameOrCallsign(String line, String expectedKey) {
+        // Arrange (nothing to do)
+
+        // Act
+        String result = DataFileDelta.keyOf(line);
+
+        // Assert
+        assertThat(result).isEqualTo(expectedKey);
+    }
+
+    @Test
+    public void testKeyOf_clientLine_returnsCallsignAndLogonTime() {
+        // Arrange
+        String line = clientLine("ABC123", "20210612102030", "12.3");
+
+        // Act
+        String result = DataFileDelta.keyOf(line);
+
+        // Assert
+        assertThat(result).isEqualTo("ABC123:20210612102030");
+    }
+
+    @Test
+    public void testEmpty_always_containsOnlyHeaderWithSameBaseAndTarget() {
+        // Arrange (nothing to do)
+
+        // Act
+        String result = asString(DataFileDelta.empty(TARGET_ETAG));
+
+        // Assert
+        assertThat(result).contains("!DELTA:\nBASE = \"target\"\nTARGET = \"target\"\n")
+                          .doesNotContain("\n+", "\n-");
+    }
+
+    @Test
+    public void testCompute_unchanged_containsOnlyHeader() {
+        // Arrange
+        ChunkedContent base = content(
+            "; comment",
+            "!GENERAL:",
+            "VERSION = 8",
+            "!CLIENTS:",
+            clientLine("ABC123", "20210612102030", "12.3")
+        );
+        ChunkedContent target = content(
+            "; other comment",
+            "!GENERAL:",
+            "VERSION = 8",
+            "!CLIENTS:",
+            clientLine("ABC123", "20210612102030", "12.3")
+        );
+
+        // Act
+        String result = delta(base, target);
+
+        // Assert
+        assertThat(result).contains("!DELTA:\nBASE = \"base\"\nTARGET = \"target\"\n")
+                          .doesNotContain("!GENERAL:", "!CLIENTS:");
+    }
+
+    @Test
+    public void testCompute_changes_listsChangedAddedAndRemovedLinesBySection() {
+        // Arrange
+        String moved = clientLine("ABC123", "20210612102030", "12.4");
+        String reconnected = clientLine("DEF456", "20210612110000", "50.0");
+        ChunkedContent base = content(
+            "!GENERAL:",
+            "UPDATE = 20210612102030",
+            "!CLIENTS:",
+            clientLine("ABC123", "20210612102030", "12.3"),
+            clientLine("DEF456", "20210612100000", "50.0"),
+            clientLine("GHI789", "20210612100000", "1.0"),
+            "!SERVERS:",
+            "SERVER1:a:b:c"
+        );
+        ChunkedContent target = content(
+            "!GENERAL:",
+            "UPDATE = 20210612102045",
+            "!CLIENTS:",
+            moved,
+            clientLine("GHI789", "20210612100000", "1.0"),
+            reconnected
+        );
+
+        // Act
+        String result = delta(base, target);
+
+        // Assert
+        assertThat(result).endsWith(
+            "!GENERAL:\n"
+                + "+UPDATE = 20210612102045\n"
+                + "!CLIENTS:\n"
+                + "+" + moved + "\n"
+                + "+" + reconnected + "\n"
+                + "-DEF456:20210612100000\n"
+                + "!SERVERS:\n"
+                + "-SERVER1\n"
+        );
+    }
+}
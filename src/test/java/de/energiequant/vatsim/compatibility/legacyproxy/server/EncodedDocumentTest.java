@@ -0,0 +1,130 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+import org.apache.hc.core5.http.nio.DataStreamChannel;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+public class EncodedDocumentTest {
+    private static final String CONTENT = repeat("ABCD:1234:some repetitive content\n", 100);
+
+    private static String repeat(String s, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+
+    private static byte[] produce(AsyncEntityProducer producer) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        AtomicBoolean ended = new AtomicBoolean();
+        DataStreamChannel channel = new DataStreamChannel() {
+            @Override
+            public void requestOutput() {
+                // not needed
+            }
+
+            @Override
+            public int write(ByteBuffer src) {
+                int length = src.remaining();
+                byte[] bytes = new byte[length];
+                src.get(bytes);
+                baos.write(bytes, 0, length);
+                return length;
+            }
+
+            @Override
+            public void endStream() {
+                ended.set(true);
+            }
+
+            @Override
+            public void endStream(List<? extends Header> trailers) {
+                ended.set(true);
+            }
+        };
+
+        while (!ended.get()) {
+            producer.produce(channel);
+        }
+
+        return baos.toByteArray();
+    }
+
+    private static byte[] decode(ContentCoding coding, byte[] bytes) throws IOException {
+        InputStream is = new ByteArrayInputStream(bytes);
+        if (coding == ContentCoding.GZIP) {
+            is = new GZIPInputStream(is);
+        } else if (coding == ContentCoding.DEFLATE) {
+            is = new InflaterInputStream(is);
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = is.read(buffer)) >= 0) {
+            baos.write(buffer, 0, read);
+        }
+        return baos.toByteArray();
+    }
+
+    @EnumSource(ContentCoding.class)
+    @ParameterizedTest
+    public void testGetVariant_any_decodesToOriginalContent(ContentCoding coding) throws IOException {
+        // Arrange
+        EncodedDocument document = new EncodedDocument(CONTENT.getBytes(StandardCharsets.UTF_8), ContentType.TEXT_PLAIN, null);
+
+        // Act
+        EncodedDocument.Variant variant = document.getVariant(coding);
+
+        // Assert
+        assertThat(variant.getCoding()).isEqualTo(coding);
+        assertThat(decode(coding, produce(variant.createEntityProducer()))).asString(StandardCharsets.UTF_8).isEqualTo(CONTENT);
+    }
+
+    @EnumSource(value = ContentCoding.class, names = {"GZIP", "DEFLATE"})
+    @ParameterizedTest
+    public void testGetVariant_compressed_hasOwnETagAndIsReused(ContentCoding coding) {
+        // Arrange
+        EncodedDocument document = new EncodedDocument(CONTENT.getBytes(StandardCharsets.UTF_8), ContentType.TEXT_PLAIN, null);
+
+        // Act
+        EncodedDocument.Variant first = document.getVariant(coding);
+        EncodedDocument.Variant second = document.getVariant(coding);
+
+        // Assert
+        assertThat(first).isSameAs(second);
+        assertThat(first.getETag()).isNotEqualTo(document.getETag());
+        assertThat(first.getSize()).isLessThan(document.getSize());
+    }
+
+    @EnumSource(ContentCoding.class)
+    @ParameterizedTest
+    public void testGetVariant_smallDocument_returnsIdentity(ContentCoding coding) {
+        // Arrange
+        EncodedDocument document = new EncodedDocument("small".getBytes(StandardCharsets.UTF_8), ContentType.TEXT_PLAIN, null);
+
+        // Act
+        EncodedDocument.Variant variant = document.getVariant(coding);
+
+        // Assert
+        assertThat(variant.getCoding()).isEqualTo(ContentCoding.IDENTITY);
+        assertThat(variant.getETag()).isEqualTo(document.getETag());
+    }
+}
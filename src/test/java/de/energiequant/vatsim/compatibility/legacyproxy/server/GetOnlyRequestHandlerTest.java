@@ -0,0 +1,114 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.message.BasicHttpRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+public class GetOnlyRequestHandlerTest {
+    private static final Instant DATA_TIMESTAMP = Instant.parse("2021-06-12T10:20:30Z");
+
+    private static EncodedDocument createDocument(String content) {
+        return new EncodedDocument(content.getBytes(StandardCharsets.UTF_8), ContentType.TEXT_PLAIN, DATA_TIMESTAMP);
+    }
+
+    private static HttpRequest createRequest() {
+        return new BasicHttpRequest("GET", "/vatsim-data.txt");
+    }
+
+    @Test
+    public void testIsNotModified_noConditions_returnsFalse() {
+        // Arrange
+        EncodedDocument document = createDocument("test");
+        HttpRequest request = createRequest();
+
+        // Act
+        boolean result = GetOnlyRequestHandler.isNotModified(request, document.getETag(), document.getLastModified());
+
+        // Assert
+        assertThat(result).isFalse();
+    }
+
+    @Test
+    public void testIsNotModified_matchingETag_returnsTrue() {
+        // Arrange
+        EncodedDocument document = createDocument("test");
+        HttpRequest request = createRequest();
+        request.setHeader(HttpHeaders.IF_NONE_MATCH, "\"other\", " + document.getETag());
+
+        // Act
+        boolean result = GetOnlyRequestHandler.isNotModified(request, document.getETag(), document.getLastModified());
+
+        // Assert
+        assertThat(result).isTrue();
+    }
+
+    @Test
+    public void testIsNotModified_eTagOfDifferentContent_returnsFalse() {
+        // Arrange
+        EncodedDocument document = createDocument("test");
+        HttpRequest request = createRequest();
+        request.setHeader(HttpHeaders.IF_NONE_MATCH, createDocument("changed").getETag());
+
+        // Act
+        boolean result = GetOnlyRequestHandler.isNotModified(request, document.getETag(), document.getLastModified());
+
+        // Assert
+        assertThat(result).isFalse();
+    }
+
+    @Test
+    public void testIsNotModified_nonMatchingETagButNotModifiedSince_returnsFalse() {
+        // Arrange
+        EncodedDocument document = createDocument("test");
+        HttpRequest request = createRequest();
+        request.setHeader(HttpHeaders.IF_NONE_MATCH, "\"other\"");
+        request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, "Sat, 12 Jun 2021 10:20:30 GMT");
+
+        // Act
+        boolean result = GetOnlyRequestHandler.isNotModified(request, document.getETag(), document.getLastModified());
+
+        // Assert
+        assertThat(result).isFalse();
+    }
+
+    @CsvSource({
+        "'Sat, 12 Jun 2021 10:20:29 GMT', false",
+        "'Sat, 12 Jun 2021 10:20:30 GMT', true",
+        "'Sat, 12 Jun 2021 10:20:31 GMT', true",
+        "'invalid', false",
+    })
+    @ParameterizedTest
+    public void testIsNotModified_ifModifiedSince_returnsExpectedResult(String ifModifiedSince, boolean expectedResult) {
+        // Arrange
+        EncodedDocument document = createDocument("test");
+        HttpRequest request = createRequest();
+        request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, ifModifiedSince);
+
+        // Act
+        boolean result = GetOnlyRequestHandler.isNotModified(request, document.getETag(), document.getLastModified());
+
+        // Assert
+        assertThat(result).isEqualTo(expectedResult);
+    }
+
+    @Test
+    public void testFormatHttpDate_singleDigitDay_returnsFixedLengthDate() {
+        // Arrange
+        Instant instant = Instant.parse("2021-06-05T01:02:03Z");
+
+        // Act
+        String result = GetOnlyRequestHandler.formatHttpDate(instant);
+
+        // Assert
+        assertThat(result).isEqualTo("Sat, 05 Jun 2021 01:02:03 GMT");
+    }
+}
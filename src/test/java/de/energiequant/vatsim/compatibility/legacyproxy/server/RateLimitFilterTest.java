@@ -0,0 +1,138 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.impl.BasicEndpointDetails;
+import org.apache.hc.core5.http.message.BasicHttpRequest;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+import org.apache.hc.core5.http.nio.AsyncFilterChain;
+import org.apache.hc.core5.http.nio.AsyncPushProducer;
+import org.apache.hc.core5.http.protocol.HttpCoreContext;
+import org.junit.jupiter.api.Test;
+
+public class RateLimitFilterTest {
+    private static final String ENDPOINT = "/vatsim-data.txt";
+    private static final Duration RETRY_AFTER = Duration.ofMillis(15500);
+
+    private static class RecordingResponseTrigger implements AsyncFilterChain.ResponseTrigger {
+        private final List<HttpResponse> responses = new ArrayList<>();
+
+        @Override
+        public void sendInformation(HttpResponse response) {
+            // not needed
+        }
+
+        @Override
+        public void submitResponse(HttpResponse response, AsyncEntityProducer entityProducer) {
+            responses.add(response);
+        }
+
+        @Override
+        public void pushPromise(HttpRequest promise, AsyncPushProducer responseProducer) {
+            // not needed
+        }
+    }
+
+    private static HttpCoreContext createContext(String clientIp) {
+        HttpCoreContext context = HttpCoreContext.create();
+        context.setEndpointDetails(new BasicEndpointDetails(
+            new InetSocketAddress(clientIp, 12345),
+            new InetSocketAddress("127.0.0.1", 8080),
+            null,
+            null
+        ));
+        return context;
+    }
+
+    private static AsyncFilterChain respondingChain() {
+        return (request, entityDetails, context, responseTrigger) -> {
+            responseTrigger.submitResponse(new BasicHttpResponse(HttpStatus.SC_OK), null);
+            return null;
+        };
+    }
+
+    private static AsyncFilterChain hangingChain() {
+        return (request, entityDetails, context, responseTrigger) -> null;
+    }
+
+    @Test
+    public void testHandle_exceedingBurst_respondsTooManyRequestsWithRetryAfter() throws Exception {
+        // Arrange
+        RateLimitFilter filter = new RateLimitFilter(1, 2, 0, Collections.emptyList(), () -> RETRY_AFTER);
+        RecordingResponseTrigger responseTrigger = new RecordingResponseTrigger();
+        AsyncFilterChain chain = respondingChain();
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            filter.handle(new BasicHttpRequest("GET", ENDPOINT), null, createContext("192.168.0.1"), responseTrigger, chain);
+        }
+
+        // Assert
+        assertThat(responseTrigger.responses).extracting(HttpResponse::getCode)
+                                             .containsExactly(HttpStatus.SC_OK, HttpStatus.SC_OK, HttpStatus.SC_TOO_MANY_REQUESTS);
+        assertThat(responseTrigger.responses.get(2).getFirstHeader(HttpHeaders.RETRY_AFTER).getValue()).isEqualTo("16");
+    }
+
+    @Test
+    public void testHandle_otherClientExceededLimit_passes() throws Exception {
+        // Arrange
+        RateLimitFilter filter = new RateLimitFilter(1, 1, 0, Collections.emptyList(), () -> RETRY_AFTER);
+        RecordingResponseTrigger responseTrigger = new RecordingResponseTrigger();
+        AsyncFilterChain chain = respondingChain();
+        filter.handle(new BasicHttpRequest("GET", ENDPOINT), null, createContext("192.168.0.1"), responseTrigger, chain);
+        filter.handle(new BasicHttpRequest("GET", ENDPOINT), null, createContext("192.168.0.1"), responseTrigger, chain);
+        responseTrigger.responses.clear();
+
+        // Act
+        filter.handle(new BasicHttpRequest("GET", ENDPOINT), null, createContext("192.168.0.2"), responseTrigger, chain);
+
+        // Assert
+        assertThat(responseTrigger.responses).extracting(HttpResponse::getCode)
+                                             .containsExactly(HttpStatus.SC_OK);
+    }
+
+    @Test
+    public void testHandle_tooManyConcurrentRequests_respondsServiceUnavailable() throws Exception {
+        // Arrange
+        RateLimitFilter filter = new RateLimitFilter(0, 1, 2, Collections.singleton(ENDPOINT), () -> RETRY_AFTER);
+        RecordingResponseTrigger responseTrigger = new RecordingResponseTrigger();
+        AsyncFilterChain chain = hangingChain();
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            filter.handle(new BasicHttpRequest("GET", ENDPOINT + "?x=" + i), null, createContext("192.168.0.1"), responseTrigger, chain);
+        }
+
+        // Assert
+        assertThat(responseTrigger.responses).extracting(HttpResponse::getCode)
+                                             .containsExactly(HttpStatus.SC_SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    public void testHandle_concurrentRequestsCompleted_passes() throws Exception {
+        // Arrange
+        RateLimitFilter filter = new RateLimitFilter(0, 1, 1, Collections.singleton(ENDPOINT), () -> RETRY_AFTER);
+        RecordingResponseTrigger responseTrigger = new RecordingResponseTrigger();
+        AsyncFilterChain chain = respondingChain();
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            filter.handle(new BasicHttpRequest("GET", ENDPOINT), null, createContext("192.168.0.1"), responseTrigger, chain);
+        }
+
+        // Assert
+        assertThat(responseTrigger.responses).extracting(HttpResponse::getCode)
+                                             .containsExactly(HttpStatus.SC_OK, HttpStatus.SC_OK, HttpStatus.SC_OK);
+    }
+}
@@ -0,0 +1,146 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.nio.DataStreamChannel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SnapshotEventPublisherTest {
+    private static final Instant DATA_TIMESTAMP = Instant.parse("2021-06-12T10:20:30Z");
+
+    private ScheduledExecutorService scheduler;
+    private SnapshotEventPublisher publisher;
+
+    @BeforeEach
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        publisher = new SnapshotEventPublisher(scheduler, () -> {
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        publisher.close();
+        scheduler.shutdownNow();
+    }
+
+    private static EncodedDocument createSnapshot(String content) {
+        return new EncodedDocument(content.getBytes(StandardCharsets.UTF_8), ContentType.TEXT_PLAIN, DATA_TIMESTAMP);
+    }
+
+    private static String produce(EventStreamHandler handler) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        handler.produce(new DataStreamChannel() {
+            @Override
+            public void requestOutput() {
+                // not needed
+            }
+
+            @Override
+            public int write(ByteBuffer src) {
+                int length = src.remaining();
+                byte[] bytes = new byte[length];
+                src.get(bytes);
+                baos.write(bytes, 0, length);
+                return length;
+            }
+
+            @Override
+            public void endStream() {
+                // not needed
+            }
+
+            @Override
+            public void endStream(List<? extends Header> trailers) {
+                // not needed
+            }
+        });
+        return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testSubscribe_snapshotAvailable_sendsLatestSnapshot() throws IOException {
+        // Arrange
+        EncodedDocument snapshot = createSnapshot("test");
+        publisher.onSnapshot(snapshot);
+        EventStreamHandler handler = (EventStreamHandler) publisher.createHandler();
+
+        // Act
+        publisher.subscribe(handler, null);
+        String result = produce(handler);
+
+        // Assert
+        assertThat(result).startsWith("retry: ")
+                          .contains("id: " + snapshot.getETag() + "\n")
+                          .contains("event: snapshot\n")
+                          .contains("\"timestamp\":\"2021-06-12T10:20:30Z\"")
+                          .endsWith("\n\n");
+    }
+
+    @Test
+    public void testSubscribe_lastEventIdIsLatest_doesNotRepeatSnapshot() throws IOException {
+        // Arrange
+        EncodedDocument snapshot = createSnapshot("test");
+        publisher.onSnapshot(snapshot);
+        EventStreamHandler handler = (EventStreamHandler) publisher.createHandler();
+
+        // Act
+        publisher.subscribe(handler, snapshot.getETag());
+        String result = produce(handler);
+
+        // Assert
+        assertThat(result).startsWith("retry: ")
+                          .doesNotContain("event: snapshot");
+    }
+
+    @Test
+    public void testOnSnapshot_subscribed_sendsEventToSubscriber() throws IOException {
+        // Arrange
+        EventStreamHandler handler = (EventStreamHandler) publisher.createHandler();
+        publisher.subscribe(handler, null);
+        produce(handler);
+        EncodedDocument snapshot = createSnapshot("new");
+
+        // Act
+        publisher.onSnapshot(snapshot);
+        String result = produce(handler);
+
+        // Assert
+        assertThat(result).isEqualTo(
+            "id: " + snapshot.getETag() + "\n"
+                + "event: snapshot\n"
+                + "data: {\"etag\":\"" + snapshot.getETag().replace("\"", "\\\"") + "\",\"timestamp\":\"2021-06-12T10:20:30Z\"}\n"
+                + "\n"
+        );
+    }
+
+    @Test
+    public void testOnSnapshot_unsubscribed_sendsNothing() throws IOException {
+        // Arrange
+        EventStreamHandler handler = (EventStreamHandler) publisher.createHandler();
+        publisher.subscribe(handler, null);
+        produce(handler);
+        handler.releaseResources();
+
+        // Act
+        publisher.onSnapshot(createSnapshot("new"));
+        String result = produce(handler);
+
+        // Assert
+        assertThat(result).isEmpty();
+        assertThat(publisher.getSubscriberCount()).isEqualTo(0);
+    }
+}
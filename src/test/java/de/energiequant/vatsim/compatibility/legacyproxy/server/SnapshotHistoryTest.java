@@ -0,0 +1,77 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Optional;
+
+import org.apache.hc.core5.http.ContentType;
+import org.junit.jupiter.api.Test;
+
+public class SnapshotHistoryTest {
+    private static final Instant T0 = Instant.parse("2021-06-12T10:00:00Z");
+
+    private static EncodedDocument createSnapshot(Instant timestamp) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append("line ").append(i).append(" at ").append(timestamp).append('\n');
+        }
+        return new EncodedDocument(sb.toString().getBytes(StandardCharsets.ISO_8859_1), ContentType.TEXT_PLAIN, timestamp)
+            .precompress();
+    }
+
+    private static Optional<EncodedDocument> request(SnapshotHistory history, Instant time) throws Exception {
+        return history.request(time).get();
+    }
+
+    @Test
+    public void testRequest_betweenSnapshots_returnsRestoredPreviousSnapshot() throws Exception {
+        // Arrange
+        SnapshotHistory history = new SnapshotHistory(Long.MAX_VALUE, Runnable::run);
+        EncodedDocument first = createSnapshot(T0);
+        EncodedDocument second = createSnapshot(T0.plusSeconds(15));
+        history.onSnapshot(first);
+        history.onSnapshot(second);
+        history.onSnapshot(createSnapshot(T0.plusSeconds(30)));
+
+        // Act
+        Optional<EncodedDocument> result = request(history, T0.plusSeconds(20));
+
+        // Assert
+        assertThat(result).hasValueSatisfying(document -> {
+            assertThat(document.getETag()).isEqualTo(second.getETag());
+            assertThat(document.getDataTimestamp()).isEqualTo(second.getDataTimestamp());
+        });
+    }
+
+    @Test
+    public void testRequest_beforeOldestSnapshot_returnsEmpty() throws Exception {
+        // Arrange
+        SnapshotHistory history = new SnapshotHistory(Long.MAX_VALUE, Runnable::run);
+        history.onSnapshot(createSnapshot(T0));
+
+        // Act
+        Optional<EncodedDocument> result = request(history, T0.minusSeconds(1));
+
+        // Assert
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    public void testOnSnapshot_budgetExceeded_dropsOldestSnapshots() throws Exception {
+        // Arrange
+        EncodedDocument first = createSnapshot(T0);
+        int compressedSize = first.getVariant(ContentCoding.GZIP).getSize();
+        SnapshotHistory history = new SnapshotHistory(compressedSize * 2L + 10, Runnable::run);
+
+        // Act
+        history.onSnapshot(first);
+        history.onSnapshot(createSnapshot(T0.plusSeconds(15)));
+        history.onSnapshot(createSnapshot(T0.plusSeconds(30)));
+
+        // Assert
+        assertThat(history.size()).isEqualTo(2);
+        assertThat(request(history, T0.plusSeconds(5))).isEmpty();
+    }
+}
@@ -0,0 +1,97 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.hc.core5.http.ContentType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class WarmStartCacheTest {
+    @TempDir
+    File tempDirectory;
+
+    @Test
+    public void testLoad_stored_returnsContentAndTimestamp() {
+        // Arrange
+        File directory = new File(tempDirectory, "cache");
+        Instant timestamp = Instant.parse("2021-06-12T10:20:30Z");
+        new WarmStartCache(directory).store(
+            WarmStartCache.DATA_FILE_LEGACY,
+            ChunkedContent.wrap("some content".getBytes(StandardCharsets.UTF_8)),
+            timestamp
+        );
+
+        // Act
+        Optional<WarmStartCache.Entry> result = new WarmStartCache(directory).load(WarmStartCache.DATA_FILE_LEGACY);
+
+        // Assert
+        assertThat(result).hasValueSatisfying(entry -> {
+            assertThat(entry.getContent().openInputStream()).hasBinaryContent("some content".getBytes(StandardCharsets.UTF_8));
+            assertThat(entry.getTimestamp()).isEqualTo(timestamp);
+        });
+    }
+
+    @Test
+    public void testStore_replacing_leavesOnlyTargetFile() {
+        // Arrange
+        WarmStartCache cache = new WarmStartCache(tempDirectory);
+        cache.store(
+            WarmStartCache.NETWORK_INFORMATION_LEGACY,
+            new EncodedDocument("old".getBytes(StandardCharsets.UTF_8), ContentType.TEXT_PLAIN, null)
+        );
+
+        // Act
+        cache.store(
+            WarmStartCache.NETWORK_INFORMATION_LEGACY,
+            new EncodedDocument("new".getBytes(StandardCharsets.UTF_8), ContentType.TEXT_PLAIN, null)
+        );
+
+        // Assert
+        assertThat(tempDirectory.list()).containsExactly(WarmStartCache.NETWORK_INFORMATION_LEGACY);
+        assertThat(cache.load(WarmStartCache.NETWORK_INFORMATION_LEGACY))
+            .hasValueSatisfying(
+                entry -> assertThat(entry.getContent().openInputStream()).hasBinaryContent("new".getBytes(StandardCharsets.UTF_8))
+            );
+    }
+
+    @Test
+    public void testLoad_missing_returnsEmpty() {
+        // Arrange
+        WarmStartCache cache = new WarmStartCache(tempDirectory);
+
+        // Act
+        Optional<WarmStartCache.Entry> result = cache.load(WarmStartCache.ONLINE_TRANSCEIVERS);
+
+        // Assert
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    public void testStoreGzipped_loaded_decompressesToOriginalContent() throws Exception {
+        // Arrange
+        WarmStartCache cache = new WarmStartCache(tempDirectory);
+        byte[] content = "[{\"callsign\":\"EDDT_TWR\",\"transceivers\":[]}]".getBytes(StandardCharsets.UTF_8);
+
+        // Act
+        boolean result = cache.storeGzipped(
+            WarmStartCache.ONLINE_TRANSCEIVERS,
+            new ByteArrayInputStream(content),
+            Instant.now()
+        );
+
+        // Assert
+        assertThat(result).isTrue();
+        WarmStartCache.Entry entry = cache.load(WarmStartCache.ONLINE_TRANSCEIVERS).orElseThrow(AssertionError::new);
+        try (InputStream is = new GZIPInputStream(entry.getContent().openInputStream())) {
+            assertThat(is).hasBinaryContent(content);
+        }
+    }
+}
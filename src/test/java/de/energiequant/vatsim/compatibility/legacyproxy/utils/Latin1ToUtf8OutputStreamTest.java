@@ -0,0 +1,84 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class Latin1ToUtf8OutputStreamTest {
+    private static final String MIXED_CONTENT = "EDDF_TWR:1234567:Jürgen Müller:ATC:118.500:50.0:8.5\n"
+        + "FRA123:7654321:François Lefèvre ¿¡ © ÿ:PILOT::49.5:7.2\n";
+
+    private static byte[] allLatin1Bytes() {
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < 256; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+
+    @ValueSource(ints = {2, 3, 7, 16, 8192})
+    @ParameterizedTest
+    public void testWrite_allBytesAtOnce_recodesAsJdk(int bufferSize) throws IOException {
+        // Arrange
+        byte[] input = allLatin1Bytes();
+        byte[] expected = new String(input, StandardCharsets.ISO_8859_1).getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        // Act
+        try (Latin1ToUtf8OutputStream os = new Latin1ToUtf8OutputStream(baos, bufferSize)) {
+            os.write(input);
+        }
+
+        // Assert
+        assertThat(baos.toByteArray()).containsExactly(expected);
+    }
+
+    @CsvSource({
+        "2, 1",
+        "3, 5",
+        "16, 7",
+        "16, 100",
+        "8192, 3",
+    })
+    @ParameterizedTest
+    public void testWrite_mixedContentInPieces_recodesAsJdk(int bufferSize, int pieceLength) throws IOException {
+        // Arrange
+        byte[] input = MIXED_CONTENT.getBytes(StandardCharsets.ISO_8859_1);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        // Act
+        try (Latin1ToUtf8OutputStream os = new Latin1ToUtf8OutputStream(baos, bufferSize)) {
+            for (int offset = 0; offset < input.length; offset += pieceLength) {
+                os.write(input, offset, Math.min(pieceLength, input.length - offset));
+            }
+        }
+
+        // Assert
+        assertThat(baos.toByteArray()).asString(StandardCharsets.UTF_8).isEqualTo(MIXED_CONTENT);
+    }
+
+    @Test
+    public void testWrite_singleBytes_recodesAsJdk() throws IOException {
+        // Arrange
+        byte[] input = allLatin1Bytes();
+        byte[] expected = new String(input, StandardCharsets.ISO_8859_1).getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        // Act
+        try (Latin1ToUtf8OutputStream os = new Latin1ToUtf8OutputStream(baos, 3)) {
+            for (byte b : input) {
+                os.write(b);
+            }
+        }
+
+        // Assert
+        assertThat(baos.toByteArray()).containsExactly(expected);
+    }
+}
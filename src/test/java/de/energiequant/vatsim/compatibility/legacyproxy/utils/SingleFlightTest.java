@@ -0,0 +1,111 @@
+package de.energiequant.vatsim.compatibility.legacyproxy.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class SingleFlightTest {
+    @Test
+    public void testRequest_concurrentSameKey_startsActionOnlyOnce() {
+        // Arrange
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CompletableFuture<String> execution = new CompletableFuture<>();
+        AtomicInteger numStarted = new AtomicInteger();
+
+        // Act
+        CompletableFuture<String> first = singleFlight.request("a", () -> {
+            numStarted.incrementAndGet();
+            return execution;
+        });
+        CompletableFuture<String> second = singleFlight.request("a", () -> {
+            numStarted.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+        execution.complete("result");
+
+        // Assert
+        assertThat(numStarted).hasValue(1);
+        assertThat(first).isCompletedWithValue("result");
+        assertThat(second).isCompletedWithValue("result");
+    }
+
+    @Test
+    public void testRequest_differentKeys_startsActionPerKey() {
+        // Arrange
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger numStarted = new AtomicInteger();
+
+        // Act
+        singleFlight.request("a", () -> {
+            numStarted.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+        singleFlight.request("b", () -> {
+            numStarted.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+
+        // Assert
+        assertThat(numStarted).hasValue(2);
+        assertThat(singleFlight.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void testRequest_afterCompletion_startsNewAction() {
+        // Arrange
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger numStarted = new AtomicInteger();
+        singleFlight.request("a", () -> {
+            numStarted.incrementAndGet();
+            return CompletableFuture.completedFuture("first");
+        });
+
+        // Act
+        CompletableFuture<String> result = singleFlight.request("a", () -> {
+            numStarted.incrementAndGet();
+            return CompletableFuture.completedFuture("second");
+        });
+
+        // Assert
+        assertThat(numStarted).hasValue(2);
+        assertThat(result).isCompletedWithValue("second");
+        assertThat(singleFlight.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testRequest_actionFails_allCallersFail() {
+        // Arrange
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CompletableFuture<String> execution = new CompletableFuture<>();
+        CompletableFuture<String> first = singleFlight.request("a", () -> execution);
+        CompletableFuture<String> second = singleFlight.request("a", CompletableFuture::new);
+
+        // Act
+        execution.completeExceptionally(new IllegalStateException("test"));
+
+        // Assert
+        assertThat(first).isCompletedExceptionally();
+        assertThat(second).isCompletedExceptionally();
+        assertThat(singleFlight.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testRequest_callerCancels_otherCallersUnaffected() throws ExecutionException, InterruptedException {
+        // Arrange
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CompletableFuture<String> execution = new CompletableFuture<>();
+        CompletableFuture<String> first = singleFlight.request("a", () -> execution);
+        CompletableFuture<String> second = singleFlight.request("a", CompletableFuture::new);
+
+        // Act
+        first.cancel(true);
+        execution.complete("result");
+
+        // Assert
+        assertThat(second.get()).isEqualTo("result");
+    }
+}